@@ -0,0 +1,53 @@
+package com.siopa.siopa_products.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.cache.ProductCache;
+import com.siopa.siopa_products.cache.RequestCoalescer;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.services.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Builds the objects shared by the benchmarks.
+ */
+final class Fixtures {
+
+    static final String STORE_ID = "store-1";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates a product with realistic field sizes.
+     */
+    static Product product(int index, String storeId, int quantity) {
+        Product product = new Product();
+        product.setProductId(String.format("%024x", index));
+        product.setStoreId(storeId);
+        product.setName("Product " + index);
+        product.setDescription("A reasonably descriptive product description for product number " + index);
+        product.setPrice(1 + index % 500 + 0.99);
+        product.setCategory("category-" + index % 20);
+        product.setQuantity(quantity);
+        product.setAttributes(Map.of("color", "red", "size", String.valueOf(index % 5)));
+        return product;
+    }
+
+    /**
+     * Wires a {@link ProductService} to the given repository with the production cache components.
+     */
+    static ProductService productService(InMemoryProductRepository repository, ObjectMapper objectMapper) {
+        ProductService productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "productRepository", repository.asRepository());
+        ReflectionTestUtils.setField(productService, "productCache", new ProductCache(100_000, Duration.ofMinutes(1)));
+        ReflectionTestUtils.setField(productService, "requestCoalescer", new RequestCoalescer(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(productService, "storeCatalogSnapshots",
+                new StoreCatalogSnapshots(objectMapper, 1000, 100_000, Duration.ofMinutes(1)));
+        return productService;
+    }
+}
@@ -0,0 +1,143 @@
+package com.siopa.siopa_products.benchmarks;
+
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.repositories.ProductRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Map-backed stand-in for {@link ProductRepository}, so benchmarks measure the service logic rather
+ * than a database round trip.
+ * <p>
+ * Only the methods used by the benchmarked paths are implemented; any other call fails with
+ * {@link UnsupportedOperationException}. Identified orders are applied at most once, as by the real
+ * repository, keeping the last {@value #APPLIED_ORDERS_KEPT} order identifiers of each product. A
+ * simulated round trip can be added to every repository call, for benchmarks where the time spent
+ * waiting on the database matters.
+ */
+final class InMemoryProductRepository {
+
+    private static final int APPLIED_ORDERS_KEPT = 512;
+
+    private final Map<String, Product> products = new ConcurrentHashMap<>();
+    private final long roundTripNanos;
+
+    InMemoryProductRepository() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param roundTrip how long every repository call waits before it runs, as on a database round trip.
+     */
+    InMemoryProductRepository(Duration roundTrip) {
+        this.roundTripNanos = roundTrip.toNanos();
+    }
+
+    /**
+     * Stores a product, replacing any product with the same identifier.
+     */
+    void put(Product product) {
+        products.put(product.getProductId(), product);
+    }
+
+    /**
+     * @return a {@link ProductRepository} view of this store.
+     */
+    ProductRepository asRepository() {
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryProductRepository";
+                    default -> {
+                        roundTrip();
+                        yield invoke(method.getName(), args);
+                    }
+                });
+    }
+
+    private Object invoke(String method, Object[] args) {
+        return switch (method) {
+            case "findById" -> Optional.ofNullable(products.get((String) args[0]));
+            case "existsById" -> products.containsKey((String) args[0]);
+            case "findByProductIdAndAppliedOrderIds" -> findApplied((String) args[0], (String) args[1]);
+            case "save" -> {
+                put((Product) args[0]);
+                yield args[0];
+            }
+            case "findByStoreId" -> findByStoreId((String) args[0]);
+            case "decrementQuantityIfAvailable" ->
+                    decrement((String) args[0], (Integer) args[1], args[2] == null ? List.of() : List.of((String) args[2]));
+            case "bulkDecrementQuantities" -> bulkDecrement(castDecrements(args[0]), castOrderIds(args[1]));
+            default -> throw new UnsupportedOperationException(method);
+        };
+    }
+
+    private void roundTrip() {
+        if (roundTripNanos > 0) {
+            LockSupport.parkNanos(roundTripNanos);
+        }
+    }
+
+    private List<Product> findByStoreId(String storeId) {
+        return products.values().stream()
+                .filter(product -> storeId.equals(product.getStoreId()))
+                .toList();
+    }
+
+    private Optional<Product> findApplied(String productId, String orderId) {
+        Product product = products.get(productId);
+        if (product == null) {
+            return Optional.empty();
+        }
+        synchronized (product) {
+            List<String> applied = product.getAppliedOrderIds();
+            return applied != null && applied.contains(orderId) ? Optional.of(product) : Optional.empty();
+        }
+    }
+
+    private Optional<Product> decrement(String productId, int amount, List<String> orderIds) {
+        Product product = products.get(productId);
+        if (product == null) {
+            return Optional.empty();
+        }
+        synchronized (product) {
+            List<String> applied = product.getAppliedOrderIds() == null ? new ArrayList<>() : product.getAppliedOrderIds();
+            if (product.getQuantity() < amount || orderIds.stream().anyMatch(applied::contains)) {
+                return Optional.empty();
+            }
+            product.setQuantity(product.getQuantity() - amount);
+            product.setEventSeq(product.nextEventSeq());
+            applied.addAll(orderIds);
+            if (applied.size() > APPLIED_ORDERS_KEPT) {
+                applied.subList(0, applied.size() - APPLIED_ORDERS_KEPT).clear();
+            }
+            product.setAppliedOrderIds(applied);
+            return Optional.of(product);
+        }
+    }
+
+    private List<Product> bulkDecrement(Map<String, Integer> decrements, Map<String, List<String>> orderIds) {
+        List<Product> applied = new ArrayList<>();
+        decrements.forEach((productId, amount) ->
+                decrement(productId, amount, orderIds.getOrDefault(productId, List.of())).ifPresent(applied::add));
+        return applied;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer> castDecrements(Object decrements) {
+        return (Map<String, Integer>) decrements;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> castOrderIds(Object orderIds) {
+        return (Map<String, List<String>>) orderIds;
+    }
+}
@@ -0,0 +1,114 @@
+package com.siopa.siopa_products.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.kafka.OrderConsumerMetrics;
+import com.siopa.siopa_products.kafka.OrderMessageParser;
+import com.siopa.siopa_products.kafka.ProcessedOrderIds;
+import com.siopa.siopa_products.kafka.ProductConsumer;
+import com.siopa.siopa_products.services.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-record cost of order consumption: parsing a {@link ProductOrderMessage} from the
+ * record bytes, compared with data binding from a decoded {@code String}, and the full
+ * {@link ProductConsumer} path down to an in-memory repository.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderConsumptionBenchmark {
+
+    private static final String MESSAGE = "{\"productId\":\"000000000000000000000001\",\"quantity\":1}";
+    private static final String IDENTIFIED_MESSAGE =
+            "{\"orderId\":\"order-1\",\"productId\":\"000000000000000000000001\",\"quantity\":1}";
+
+    private ObjectMapper objectMapper;
+    private ObjectReader orderReader;
+    private OrderMessageParser orderMessageParser;
+    private ProductOrderMessage holder;
+    private byte[] payload;
+    private ProductConsumer consumer;
+    private ConsumerRecord<String, byte[]> record;
+    private ConsumerRecord<String, byte[]> redeliveredRecord;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        orderReader = objectMapper.readerFor(ProductOrderMessage.class);
+        orderMessageParser = new OrderMessageParser(objectMapper);
+        holder = new ProductOrderMessage();
+        payload = MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(Fixtures.product(1, Fixtures.STORE_ID, Integer.MAX_VALUE));
+        ProductService productService = Fixtures.productService(repository, objectMapper);
+        consumer = new ProductConsumer(productService, orderMessageParser,
+                new OrderConsumerMetrics(new SimpleMeterRegistry(), "single"),
+                new ProcessedOrderIds(100_000, Duration.ofHours(1)));
+        record = new ConsumerRecord<>("orders", 0, 0L, null, payload);
+        redeliveredRecord = new ConsumerRecord<>("orders", 0, 1L, null,
+                IDENTIFIED_MESSAGE.getBytes(StandardCharsets.UTF_8));
+        consumer.consumeOrder(redeliveredRecord);
+    }
+
+    /**
+     * Decodes the record to a {@code String} and binds it with the {@link ObjectMapper}.
+     */
+    @Benchmark
+    public ProductOrderMessage deserializeWithObjectMapper() throws IOException {
+        return objectMapper.readValue(new String(payload, StandardCharsets.UTF_8), ProductOrderMessage.class);
+    }
+
+    /**
+     * Parses an order message with a pre-built reader, as a baseline for the mapper lookup cost.
+     */
+    @Benchmark
+    public ProductOrderMessage deserializeWithObjectReader() throws IOException {
+        return orderReader.readValue(payload);
+    }
+
+    /**
+     * Parses the record bytes with the streaming parser into a reused holder, as the consumer does.
+     */
+    @Benchmark
+    public ProductOrderMessage deserializeWithStreamingParser() throws IOException {
+        return orderMessageParser.parse(payload, holder);
+    }
+
+    /**
+     * Consumes one record end to end: parse, stock decrement, cache eviction and catalog invalidation.
+     */
+    @Benchmark
+    public void consumeOrder() {
+        consumer.consumeOrder(record);
+    }
+
+    /**
+     * Consumes a redelivered record whose order was already applied, skipped by the processed order set.
+     */
+    @Benchmark
+    public void consumeRedeliveredOrder() {
+        consumer.consumeOrder(redeliveredRecord);
+    }
+}
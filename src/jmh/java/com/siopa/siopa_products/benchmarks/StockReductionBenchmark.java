@@ -0,0 +1,108 @@
+package com.siopa.siopa_products.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.dto.StockReductionResult;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.services.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decision logic of {@link ProductService#reduceProductQuantity(String, int)} and
+ * {@link ProductService#reduceProductQuantities(List)} against an in-memory repository.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockReductionBenchmark {
+
+    @Param({"100"})
+    public int batchSize;
+
+    private ProductService productService;
+    private String inStockId;
+    private String outOfStockId;
+    private List<ProductOrderMessage> batch;
+
+    @Setup
+    public void setUp() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        Product inStock = Fixtures.product(1, Fixtures.STORE_ID, Integer.MAX_VALUE);
+        Product outOfStock = Fixtures.product(2, Fixtures.STORE_ID, 0);
+        repository.put(inStock);
+        repository.put(outOfStock);
+        inStockId = inStock.getProductId();
+        outOfStockId = outOfStock.getProductId();
+
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            Product product = Fixtures.product(100 + i % 10, Fixtures.STORE_ID, Integer.MAX_VALUE);
+            repository.put(product);
+            ProductOrderMessage order = new ProductOrderMessage();
+            order.setProductId(product.getProductId());
+            order.setQuantity(1);
+            batch.add(order);
+        }
+        productService = Fixtures.productService(repository, new ObjectMapper());
+    }
+
+    /**
+     * Reduces stock that is available.
+     */
+    @Benchmark
+    public Product reduceApplied() {
+        return productService.reduceProductQuantity(inStockId, 1);
+    }
+
+    /**
+     * Attempts a reduction that is rejected for insufficient stock.
+     */
+    @Benchmark
+    public void reduceInsufficientStock(Blackhole blackhole) {
+        try {
+            productService.reduceProductQuantity(outOfStockId, 1);
+        } catch (InsufficientStockException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    /**
+     * Attempts a reduction for a product that does not exist.
+     */
+    @Benchmark
+    public void reduceNotFound(Blackhole blackhole) {
+        try {
+            productService.reduceProductQuantity("missing", 1);
+        } catch (ProductNotFoundException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    /**
+     * Reduces stock for a batch of orders spread over a few products.
+     */
+    @Benchmark
+    public List<StockReductionResult> reduceBatch() {
+        return productService.reduceProductQuantities(batch);
+    }
+}
@@ -0,0 +1,93 @@
+package com.siopa.siopa_products.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshot;
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.services.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON serialization of large store listings, as served by {@code GET /api/products/store/{storeId}}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreListingSerializationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int storeSize;
+
+    private ObjectMapper objectMapper;
+    private List<Product> products;
+    private List<ProductSummary> summaries;
+    private ProductService productService;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        products = new ArrayList<>(storeSize);
+        summaries = new ArrayList<>(storeSize);
+        for (int i = 0; i < storeSize; i++) {
+            Product product = Fixtures.product(i, Fixtures.STORE_ID, 100);
+            repository.put(product);
+            products.add(product);
+            summaries.add(summaryOf(product));
+        }
+        productService = Fixtures.productService(repository, objectMapper);
+    }
+
+    /**
+     * Serializes complete products.
+     */
+    @Benchmark
+    public byte[] serializeProducts() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(products);
+    }
+
+    /**
+     * Serializes product summaries.
+     */
+    @Benchmark
+    public byte[] serializeSummaries() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaries);
+    }
+
+    /**
+     * Serves the store catalog from its snapshot while the catalog is unchanged.
+     */
+    @Benchmark
+    public StoreCatalogSnapshot getStoreCatalogCached() {
+        return productService.getStoreCatalog(Fixtures.STORE_ID);
+    }
+
+    private static ProductSummary summaryOf(Product product) {
+        ProductSummary summary = new ProductSummary();
+        summary.setProductId(product.getProductId());
+        summary.setStoreId(product.getStoreId());
+        summary.setName(product.getName());
+        summary.setPrice(product.getPrice());
+        summary.setCategory(product.getCategory());
+        summary.setQuantity(product.getQuantity());
+        return summary;
+    }
+}
@@ -0,0 +1,141 @@
+package com.siopa.siopa_products.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.config.MongoBulkhead;
+import com.siopa.siopa_products.kafka.OrderConsumerMetrics;
+import com.siopa.siopa_products.kafka.OrderMessageParser;
+import com.siopa.siopa_products.kafka.ProcessedOrderIds;
+import com.siopa.siopa_products.kafka.ProductConsumer;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import com.siopa.siopa_products.services.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Compares order consumption on a Tomcat-sized platform thread pool with virtual threads, when every
+ * repository call waits on a database round trip.
+ * <p>
+ * Each client submits an order record to the executor and waits for it to be consumed. The record
+ * runs the full {@link ProductConsumer} path: parsing, the processed order check and the stock
+ * decrement through {@link ProductService}, against an in-memory repository that parks for
+ * {@code roundTripMicros} on every call. The repository is wrapped by the production
+ * {@link MongoBulkhead} with {@code connections} permits, so the extra concurrency of virtual threads
+ * queues at the bulkhead as it would in front of the Mongo pool.
+ * <p>
+ * Runs in throughput mode and in sample-time mode, which reports p99 latency. The {@code virtual}
+ * case needs a Java 21 runtime and fails its setup on older ones.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(400)
+@State(Scope.Benchmark)
+public class ThreadingModelBenchmark {
+
+    /**
+     * Tomcat's default {@code server.tomcat.threads.max}, also a generous listener concurrency.
+     */
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    private static final int PRODUCTS = 1000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"100"})
+    public int connections;
+
+    @Param({"2000"})
+    public long roundTripMicros;
+
+    private ExecutorService executor;
+    private ProductConsumer consumer;
+    private List<ConsumerRecord<String, byte[]>> records;
+    private final AtomicLong next = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        InMemoryProductRepository repository =
+                new InMemoryProductRepository(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros)));
+        IntStream.range(0, PRODUCTS)
+                .forEach(i -> repository.put(Fixtures.product(i, Fixtures.STORE_ID, Integer.MAX_VALUE)));
+        ObjectMapper objectMapper = new ObjectMapper();
+        ProductService productService = Fixtures.productService(repository, objectMapper);
+        ReflectionTestUtils.setField(productService, "productRepository", withBulkhead(repository.asRepository()));
+        consumer = new ProductConsumer(productService, new OrderMessageParser(objectMapper),
+                new OrderConsumerMetrics(new SimpleMeterRegistry(), "single"),
+                new ProcessedOrderIds(100_000, Duration.ofHours(1)));
+        records = IntStream.range(0, PRODUCTS)
+                .mapToObj(i -> new ConsumerRecord<String, byte[]>("orders", 0, i, null,
+                        ("{\"productId\":\"" + String.format("%024x", i) + "\",\"quantity\":1}")
+                                .getBytes(StandardCharsets.UTF_8)))
+                .toList();
+
+        executor = switch (threads) {
+            case "platform" -> Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+            case "virtual" -> newVirtualThreadPerTaskExecutor();
+            default -> throw new IllegalArgumentException("Unknown thread model: " + threads);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submits one order record and waits until it has been consumed.
+     */
+    @Benchmark
+    public void consumeOrder() throws InterruptedException, ExecutionException {
+        ConsumerRecord<String, byte[]> record = records.get((int) (next.getAndIncrement() % PRODUCTS));
+        executor.submit(() -> consumer.consumeOrder(record)).get();
+    }
+
+    private ProductRepository withBulkhead(ProductRepository repository) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(repository);
+        proxyFactory.addAspect(new MongoBulkhead(new SimpleMeterRegistry(), connections, Duration.ofSeconds(1)));
+        return proxyFactory.getProxy();
+    }
+
+    /**
+     * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} reflectively so the benchmarks still
+     * compile for Java 17.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() throws ReflectiveOperationException {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.siopa.siopa_products.actuator;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Actuator endpoint ({@code /actuator/queryplans}) that explains the queries issued against the
+ * {@code products} collection and flags any whose winning plan is a {@code COLLSCAN}.
+ * <p>
+ * Plans are requested with {@code queryPlanner} verbosity, so the queries are planned but never run.
+ */
+@Component
+@Endpoint(id = "queryplans")
+public class ProductQueryPlanEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductQueryPlanEndpoint.class);
+
+    private static final String COLLECTION = "products";
+
+    /**
+     * The query shapes issued by the service, with representative values. Each shape must constrain the
+     * leading key of an index declared on {@code Product}; {@code ProductQueryPlanEndpointTest} checks
+     * this against the declared indexes, so a new shape or a changed index cannot silently regress to a
+     * collection scan.
+     */
+    static final List<QueryShape> QUERY_SHAPES = List.of(
+            new QueryShape("findById", Filters.eq("_id", new ObjectId()), null),
+            new QueryShape("decrementQuantityIfAvailable",
+                    Filters.and(Filters.eq("_id", new ObjectId()), Filters.gte("quantity", 1),
+                            Filters.ne("appliedOrderIds", "order")), null),
+            new QueryShape("findByStoreId", Filters.eq("storeId", "store"), null),
+            new QueryShape("findPageAfter", Filters.gt("_id", new ObjectId()), Sorts.ascending("_id")),
+            new QueryShape("searchByCategoryAndPrice",
+                    Filters.and(Filters.eq("category", "category"), Filters.gte("price", 0.0), Filters.lte("price", 100.0)),
+                    Sorts.ascending("price", "_id")),
+            new QueryShape("searchByStoreAndCategory",
+                    Filters.and(Filters.eq("storeId", "store"), Filters.eq("category", "category")),
+                    Sorts.ascending("_id")),
+            searchShape("searchByProductId", "_id", null),
+            searchShape("searchByPrice", "price", null),
+            searchShape("searchByQuantity", "quantity", null),
+            searchShape("searchByPriceAfterCursor", "price", 50.0),
+            searchShape("searchByQuantityAfterCursor", "quantity", 5)
+    );
+
+    /**
+     * A search as {@code ProductRepositoryCustomImpl#search} issues it with every filter set: category,
+     * price range, an attribute and {@code inStock}, sorted by {@code sortField} with the product
+     * identifier as tie-breaker, and on a later page with the keyset condition of the cursor.
+     */
+    private static QueryShape searchShape(String name, String sortField, Object afterSortValue) {
+        List<Bson> filters = new ArrayList<>(List.of(
+                Filters.eq("category", "category"),
+                Filters.gte("price", 0.0),
+                Filters.lte("price", 100.0),
+                Filters.gt("quantity", 0),
+                Filters.in("attributes.color", "red")));
+        if (afterSortValue != null) {
+            filters.add(Filters.or(Filters.gt(sortField, afterSortValue),
+                    Filters.and(Filters.eq(sortField, afterSortValue), Filters.gt("_id", new ObjectId()))));
+        }
+        Bson sort = "_id".equals(sortField) ? Sorts.ascending("_id") : Sorts.ascending(sortField, "_id");
+        return new QueryShape(name, Filters.and(filters), sort);
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    public ProductQueryPlanEndpoint(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Explains every known query shape.
+     *
+     * @return one report per query shape.
+     */
+    @ReadOperation
+    public List<QueryPlanReport> queryPlans() {
+        List<QueryPlanReport> reports = new ArrayList<>(QUERY_SHAPES.size());
+        for (QueryShape shape : QUERY_SHAPES) {
+            reports.add(explain(shape));
+        }
+        return reports;
+    }
+
+    private QueryPlanReport explain(QueryShape shape) {
+        String filter = shape.filter().toBsonDocument().toJson();
+        try {
+            Document explain = mongoTemplate.getCollection(COLLECTION)
+                    .find(shape.filter())
+                    .sort(shape.sort())
+                    .explain(ExplainVerbosity.QUERY_PLANNER);
+            Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+
+            Set<String> stages = new LinkedHashSet<>();
+            Set<String> indexes = new LinkedHashSet<>();
+            collectPlan(winningPlan, stages, indexes);
+            boolean collectionScan = stages.contains("COLLSCAN");
+            if (collectionScan) {
+                logger.warn("Query {} falls back to a collection scan: {}", shape.name(), filter);
+            }
+            return new QueryPlanReport(shape.name(), filter, List.copyOf(stages), List.copyOf(indexes),
+                    collectionScan, null);
+        } catch (RuntimeException e) {
+            logger.error("Failed to explain query {}: {}", shape.name(), e.getMessage());
+            return new QueryPlanReport(shape.name(), filter, List.of(), List.of(), false, e.getMessage());
+        }
+    }
+
+    /**
+     * Walks a plan tree, whatever its nesting ({@code inputStage}, {@code inputStages}, {@code queryPlan}),
+     * collecting stage and index names.
+     */
+    private static void collectPlan(Object node, Set<String> stages, Set<String> indexes) {
+        if (node instanceof Map<?, ?> map) {
+            if (map.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            if (map.get("indexName") instanceof String indexName) {
+                indexes.add(indexName);
+            }
+            for (Object value : map.values()) {
+                collectPlan(value, stages, indexes);
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object value : list) {
+                collectPlan(value, stages, indexes);
+            }
+        }
+    }
+
+    record QueryShape(String name, Bson filter, Bson sort) {
+    }
+}
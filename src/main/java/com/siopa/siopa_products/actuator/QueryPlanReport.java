@@ -0,0 +1,17 @@
+package com.siopa.siopa_products.actuator;
+
+import java.util.List;
+
+/**
+ * The winning plan of one of the service's queries, as reported by {@code explain}.
+ *
+ * @param query the name of the query.
+ * @param filter the filter that was explained, as JSON.
+ * @param stages the stages of the winning plan, outermost first.
+ * @param indexes the indexes used by the winning plan.
+ * @param collectionScan whether the winning plan scans the whole collection.
+ * @param error the reason the query could not be explained, or {@code null}.
+ */
+public record QueryPlanReport(String query, String filter, List<String> stages, List<String> indexes,
+                              boolean collectionScan, String error) {
+}
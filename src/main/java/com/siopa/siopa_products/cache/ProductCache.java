@@ -0,0 +1,105 @@
+package com.siopa.siopa_products.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.siopa.siopa_products.models.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process read-through cache of products keyed by product identifier.
+ * <p>
+ * Entries are evicted once the cache holds {@code siopa.products.cache.max-size} products or an entry is
+ * older than {@code siopa.products.cache.ttl}. Missing products are never cached. Hit, miss, put and
+ * eviction counts are published as the {@code cache.*} metrics tagged {@code cache=products}.
+ */
+@Component
+public class ProductCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "products";
+
+    private final Cache<String, Product> cache;
+
+    public ProductCache(@Value("${siopa.products.cache.max-size:10000}") long maxSize,
+                        @Value("${siopa.products.cache.ttl:60s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached product, loading and caching it on a miss.
+     * <p>
+     * The load runs atomically with the cache entry, so an {@link #evict} for the same product waits
+     * for an in-flight load to finish and then removes its result, rather than being overwritten by a
+     * value read before the write that triggered it. The loader must therefore not access this cache
+     * itself; callers that need concurrent misses to share a load across cache instances can still
+     * coalesce it inside the loader.
+     *
+     * @param productId the unique identifier of the product.
+     * @param loader loads the product from the database on a cache miss.
+     * @return an {@link Optional} containing the product if found, otherwise empty.
+     */
+    public Optional<Product> get(String productId, Function<String, Optional<Product>> loader) {
+        return Optional.ofNullable(cache.get(productId, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Returns the cached product without loading it.
+     *
+     * @param productId the unique identifier of the product.
+     * @return an {@link Optional} containing the cached product, otherwise empty.
+     */
+    public Optional<Product> getIfPresent(String productId) {
+        return Optional.ofNullable(cache.getIfPresent(productId));
+    }
+
+    /**
+     * Stores the latest state of a product after it has been written.
+     *
+     * @param product the product as persisted.
+     */
+    public void put(Product product) {
+        cache.put(product.getProductId(), product);
+    }
+
+    /**
+     * Removes a product from the cache.
+     *
+     * @param productId the unique identifier of the product.
+     */
+    public void evict(String productId) {
+        cache.invalidate(productId);
+    }
+
+    /**
+     * Removes several products from the cache.
+     *
+     * @param productIds the unique identifiers of the products.
+     */
+    public void evictAll(Collection<String> productIds) {
+        cache.invalidateAll(productIds);
+    }
+
+    /**
+     * Removes every product from the cache.
+     */
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+}
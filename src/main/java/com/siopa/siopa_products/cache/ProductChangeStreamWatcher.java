@@ -0,0 +1,360 @@
+package com.siopa.siopa_products.cache;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.mongodb.client.model.changestream.OperationType;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductStockShard;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local {@link ProductCache} and {@link StoreCatalogSnapshots} in step with writes made by any
+ * replica, by following a change stream on the {@code products} and {@code product_stock_shards}
+ * collections.
+ * <p>
+ * Enabled with {@code siopa.products.change-stream.enabled=true}; the database must run as a replica
+ * set (a single-node one is enough). Every write evicts the product and invalidates the snapshots of
+ * the store it belongs to, so the cache and snapshot TTLs only bound staleness while the stream is down.
+ * <p>
+ * Updated documents are not looked up: the stream carries only the document key and, where the event
+ * has them, the new {@code storeId} of an insert, replace or store change. The store a product was in
+ * is taken from the event's pre-image if {@code siopa.products.change-stream.pre-images} is set and the
+ * collection has {@code changeStreamPreAndPostImages} enabled, otherwise from the locally cached
+ * product or the store snapshot that last listed it. A write to a product neither knows is not listed
+ * by any snapshot of this process, so nothing is invalidated for it, except that a product leaving an
+ * unknown store (a store change or a delete) invalidates all snapshots. A write to a stock shard
+ * evicts its product and invalidates the store it is known to be in.
+ * <p>
+ * The resume token is saved per instance in {@code product_change_stream_tokens} every
+ * {@code siopa.products.change-stream.token-save-interval}, so the stream continues where it left off
+ * after a reconnect or restart. If it cannot be resumed, the local caches are cleared and the stream
+ * starts from the present.
+ */
+@Component
+@ConditionalOnProperty(name = "siopa.products.change-stream.enabled", havingValue = "true")
+public class ProductChangeStreamWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeStreamWatcher.class);
+
+    private static final String TOKEN_COLLECTION = "product_change_stream_tokens";
+    private static final String STORE_ID = "storeId";
+
+    /**
+     * Server errors after which the stream cannot be resumed from its token.
+     */
+    private static final Set<Integer> UNRESUMABLE_ERRORS = Set.of(
+            260,  // InvalidResumeToken
+            280,  // ChangeStreamFatalError
+            286); // ChangeStreamHistoryLost
+
+    /**
+     * The {@code $changeStream} stage is only supported on replica sets.
+     */
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductCache productCache;
+    private final StoreCatalogSnapshots storeCatalogSnapshots;
+    private final String instanceId;
+    private final boolean preImages;
+    private final Duration tokenSaveInterval;
+    private final String productCollection;
+    private final String shardCollection;
+
+    private final CountDownLatch opened = new CountDownLatch(1);
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public ProductChangeStreamWatcher(MongoTemplate mongoTemplate, ProductCache productCache,
+                                      StoreCatalogSnapshots storeCatalogSnapshots,
+                                      @Value("${siopa.products.change-stream.instance-id:${spring.application.name}-${HOSTNAME:local}}") String instanceId,
+                                      @Value("${siopa.products.change-stream.pre-images:false}") boolean preImages,
+                                      @Value("${siopa.products.change-stream.token-save-interval:5s}") Duration tokenSaveInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.productCache = productCache;
+        this.storeCatalogSnapshots = storeCatalogSnapshots;
+        this.instanceId = instanceId;
+        this.preImages = preImages;
+        this.tokenSaveInterval = tokenSaveInterval;
+        this.productCollection = mongoTemplate.getCollectionName(Product.class);
+        this.shardCollection = mongoTemplate.getCollectionName(ProductStockShard.class);
+    }
+
+    /**
+     * Starts following the change stream on a background thread.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::watch, "product-change-stream");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching products change stream as {}", instanceId);
+    }
+
+    /**
+     * Stops following the change stream and saves the resume token.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Waits until the change stream has been opened for the first time; writes made after that are
+     * seen by the watcher.
+     *
+     * @param timeout how long to wait.
+     * @return {@code true} if the stream was opened in time.
+     */
+    boolean awaitOpen(Duration timeout) throws InterruptedException {
+        return opened.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void watch() {
+        BsonDocument resumeToken = loadResumeToken();
+        if (resumeToken == null) {
+            clearLocalCaches();
+        }
+        long backoffMillis = 100;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open(resumeToken)) {
+                opened.countDown();
+                backoffMillis = 100;
+                long savedAt = System.nanoTime();
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        apply(change);
+                    }
+                    BsonDocument token = cursor.getResumeToken();
+                    if (token != null) {
+                        resumeToken = token;
+                        if (System.nanoTime() - savedAt >= tokenSaveInterval.toNanos()) {
+                            saveResumeToken(resumeToken);
+                            savedAt = System.nanoTime();
+                        }
+                    }
+                    if (change != null && change.getOperationType() == OperationType.INVALIDATE) {
+                        // The stream is closed after an invalidate event and cannot be resumed from it.
+                        resumeToken = null;
+                        break;
+                    }
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == NOT_A_REPLICA_SET) {
+                    logger.error("Products change stream is not supported by this deployment, cross-node invalidation is off: {}",
+                            e.getErrorMessage());
+                    running = false;
+                } else if (UNRESUMABLE_ERRORS.contains(e.getErrorCode())) {
+                    logger.warn("Products change stream cannot be resumed, clearing local caches: {}", e.getErrorMessage());
+                    resumeToken = null;
+                    clearLocalCaches();
+                } else {
+                    backoffMillis = backOff(e, backoffMillis);
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    break;
+                }
+                backoffMillis = backOff(e, backoffMillis);
+            }
+        }
+        if (resumeToken != null) {
+            // Clear a pending interrupt from stop() so the final save is not aborted by it.
+            Thread.interrupted();
+            saveResumeToken(resumeToken);
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument resumeToken) {
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.in("ns.coll", productCollection, shardCollection),
+                        Filters.in("operationType", "insert", "update", "replace", "delete"))),
+                Aggregates.project(Projections.include("operationType", "ns", "documentKey", "clusterTime",
+                        "fullDocument." + STORE_ID, "fullDocumentBeforeChange." + STORE_ID,
+                        "updateDescription.updatedFields." + STORE_ID)));
+        ChangeStreamIterable<Document> stream = mongoTemplate.getDb()
+                .watch(pipeline, Document.class)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (preImages) {
+            stream = stream.fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        }
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        return stream.cursor();
+    }
+
+    /**
+     * Evicts the changed product and invalidates the snapshots of the stores it was and is in.
+     */
+    void apply(ChangeStreamDocument<Document> change) {
+        BsonDocument documentKey = change.getDocumentKey();
+        if (documentKey == null) {
+            return;
+        }
+        if (shardCollection.equals(collectionOf(change))) {
+            applyToShard(idOf(documentKey.get("_id")));
+            return;
+        }
+        String productId = idOf(documentKey.get("_id"));
+        String previousStoreId = previousStoreOf(change, productId);
+        String currentStoreId = currentStoreOf(change);
+        productCache.evict(productId);
+
+        boolean leavesStore = switch (change.getOperationType()) {
+            case DELETE -> true;
+            case UPDATE -> updatedStoreOf(change) != null;
+            default -> false;
+        };
+        if (leavesStore && previousStoreId == null) {
+            logger.debug("Product ID {} left an unknown store, invalidating all snapshots", productId);
+            storeCatalogSnapshots.invalidateAll();
+        } else {
+            storeCatalogSnapshots.invalidate(previousStoreId);
+        }
+        if (currentStoreId != null && !currentStoreId.equals(previousStoreId)) {
+            storeCatalogSnapshots.invalidate(currentStoreId);
+        }
+    }
+
+    /**
+     * Evicts the product whose stock shard changed and invalidates the snapshots of its store. A shard
+     * never moves a product between stores.
+     */
+    private void applyToShard(String shardId) {
+        int separator = shardId.lastIndexOf(':');
+        if (separator < 0) {
+            return;
+        }
+        String productId = shardId.substring(0, separator);
+        String storeId = productCache.getIfPresent(productId)
+                .map(Product::getStoreId)
+                .or(() -> storeCatalogSnapshots.storeOf(productId))
+                .orElse(null);
+        productCache.evict(productId);
+        storeCatalogSnapshots.invalidate(storeId);
+    }
+
+    private String previousStoreOf(ChangeStreamDocument<Document> change, String productId) {
+        if (change.getFullDocumentBeforeChange() != null) {
+            return change.getFullDocumentBeforeChange().getString(STORE_ID);
+        }
+        return productCache.getIfPresent(productId)
+                .map(Product::getStoreId)
+                .or(() -> storeCatalogSnapshots.storeOf(productId))
+                .orElse(null);
+    }
+
+    /**
+     * Returns the store the product is in after the change, if the event carries it: the full document
+     * of an insert or replace, or the new {@code storeId} of an update that changed it.
+     */
+    private static String currentStoreOf(ChangeStreamDocument<Document> change) {
+        if (change.getFullDocument() != null) {
+            return change.getFullDocument().getString(STORE_ID);
+        }
+        BsonValue updated = updatedStoreOf(change);
+        return updated != null && updated.isString() ? updated.asString().getValue() : null;
+    }
+
+    private static BsonValue updatedStoreOf(ChangeStreamDocument<Document> change) {
+        if (change.getOperationType() != OperationType.UPDATE || change.getUpdateDescription() == null
+                || change.getUpdateDescription().getUpdatedFields() == null) {
+            return null;
+        }
+        return change.getUpdateDescription().getUpdatedFields().get(STORE_ID);
+    }
+
+    private long backOff(MongoException e, long backoffMillis) {
+        logger.warn("Products change stream failed, reconnecting in {} ms: {}", backoffMillis, e.getMessage());
+        try {
+            Thread.sleep(backoffMillis);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        return Math.min(backoffMillis * 2, MAX_BACKOFF.toMillis());
+    }
+
+    private void clearLocalCaches() {
+        productCache.evictAll();
+        storeCatalogSnapshots.invalidateAll();
+    }
+
+    private BsonDocument loadResumeToken() {
+        try {
+            Document saved = tokens().find(Filters.eq("_id", instanceId)).first();
+            if (saved == null) {
+                return null;
+            }
+            logger.info("Resuming products change stream from token saved at {}", saved.getDate("savedAt"));
+            return new BsonDocument("_data", new BsonString(saved.getString("token")));
+        } catch (MongoException e) {
+            logger.warn("Failed to load products change stream resume token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveResumeToken(BsonDocument resumeToken) {
+        try {
+            Document saved = new Document("_id", instanceId)
+                    .append("token", resumeToken.getString("_data").getValue())
+                    .append("savedAt", new Date());
+            tokens().replaceOne(Filters.eq("_id", instanceId), saved, new ReplaceOptions().upsert(true));
+        } catch (MongoException e) {
+            logger.warn("Failed to save products change stream resume token: {}", e.getMessage());
+        }
+    }
+
+    private static String collectionOf(ChangeStreamDocument<Document> change) {
+        BsonDocument namespace = change.getNamespaceDocument();
+        return namespace == null || !namespace.isString("coll") ? null : namespace.getString("coll").getValue();
+    }
+
+    private MongoCollection<Document> tokens() {
+        return mongoTemplate.getCollection(TOKEN_COLLECTION);
+    }
+
+    private static String idOf(BsonValue id) {
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
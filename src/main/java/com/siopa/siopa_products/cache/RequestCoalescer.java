@@ -0,0 +1,89 @@
+package com.siopa.siopa_products.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent lookups of the same key into a single in-flight call ("single flight").
+ * <p>
+ * The first caller for a key runs the loader; callers that arrive while it is still running wait for
+ * and share its result, or its exception. Nothing is retained once the call completes, so this only
+ * deduplicates truly concurrent work and never serves stale data.
+ * <p>
+ * Every call is counted in {@code siopa.products.lookups}, tagged with the {@code operation} and a
+ * {@code result} of {@code executed} or {@code coalesced}.
+ */
+@Component
+public class RequestCoalescer {
+
+    private static final String METRIC_NAME = "siopa.products.lookups";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<InFlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs {@code loader} for the key unless an identical call is already in flight, in which case
+     * its result is awaited and shared.
+     *
+     * @param operation the name of the lookup, used to separate key spaces and tag metrics.
+     * @param key the key being looked up.
+     * @param loader performs the actual lookup.
+     * @param <V> the type of the lookup result.
+     * @return the result of the in-flight or newly started lookup.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V coalesce(String operation, String key, Supplier<V> loader) {
+        InFlightKey inFlightKey = new InFlightKey(operation, key);
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(inFlightKey, call);
+        Counter[] operationCounters = countersFor(operation);
+
+        if (existing != null) {
+            operationCounters[1].increment();
+            try {
+                return (V) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        operationCounters[0].increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(inFlightKey, call);
+        }
+    }
+
+    private Counter[] countersFor(String operation) {
+        return counters.computeIfAbsent(operation, op -> new Counter[]{
+                Counter.builder(METRIC_NAME).tag("operation", op).tag("result", "executed")
+                        .description("Lookups that ran against the database").register(meterRegistry),
+                Counter.builder(METRIC_NAME).tag("operation", op).tag("result", "coalesced")
+                        .description("Lookups that shared the result of an identical in-flight call").register(meterRegistry)
+        });
+    }
+
+    private record InFlightKey(String operation, String key) {
+    }
+}
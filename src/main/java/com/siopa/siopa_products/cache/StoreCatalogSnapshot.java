@@ -0,0 +1,11 @@
+package com.siopa.siopa_products.cache;
+
+/**
+ * A pre-serialized JSON listing of a store's products.
+ *
+ * @param version the store catalog version the snapshot was built from.
+ * @param body the serialized product list.
+ * @param etag the strong entity tag of {@code body}, already quoted.
+ */
+public record StoreCatalogSnapshot(long version, byte[] body, String etag) {
+}
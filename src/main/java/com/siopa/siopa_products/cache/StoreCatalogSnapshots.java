@@ -0,0 +1,135 @@
+package com.siopa.siopa_products.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.models.ProductListing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Versioned, pre-serialized snapshots of each store's product catalog.
+ * <p>
+ * Every snapshotted store carries a catalog version that is discarded by {@link #invalidate(String)}
+ * whenever one of its products is written; the next snapshot of the store is then built under a new
+ * version. A snapshot is only served while its version is still current, so a snapshot built from a
+ * read that raced with a write is discarded on the next request rather than served. Versions are
+ * drawn from a single counter, so a version that is dropped, by invalidation or because the store
+ * fell out of the bounded version table, is never handed out again. The entity tag is derived from
+ * the serialized body, not the version, so replicas holding the same data hand out the same tag.
+ * <p>
+ * Versions are tracked per process. {@code siopa.products.catalog.snapshot-ttl} bounds how long a
+ * snapshot can miss writes made by other replicas.
+ * <p>
+ * The store each listed product was last snapshotted under is remembered for up to
+ * {@code siopa.products.catalog.max-listed-products} products, so a write that only names the product
+ * can still be traced to the snapshots that list it.
+ */
+@Component
+public class StoreCatalogSnapshots {
+
+    private final ObjectMapper objectMapper;
+    private final AtomicLong nextVersion = new AtomicLong();
+    private final Cache<String, Long> versions;
+    private final Cache<SnapshotKey, StoreCatalogSnapshot> snapshots;
+    private final Cache<String, String> listedIn;
+
+    public StoreCatalogSnapshots(ObjectMapper objectMapper,
+                                 @Value("${siopa.products.catalog.max-stores:1000}") long maxStores,
+                                 @Value("${siopa.products.catalog.max-listed-products:100000}") long maxListedProducts,
+                                 @Value("${siopa.products.catalog.snapshot-ttl:30s}") Duration ttl) {
+        this.objectMapper = objectMapper;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxStores)
+                .build();
+        this.listedIn = Caffeine.newBuilder()
+                .maximumSize(maxListedProducts)
+                .build();
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxStores * ProductView.values().length)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the current snapshot of a store's catalog, rebuilding it if the catalog has changed.
+     *
+     * @param storeId the unique identifier of the store.
+     * @param view the representation of the listed products; each view is snapshotted separately.
+     * @param loader loads the store's products in that view when the snapshot has to be rebuilt.
+     * @return a snapshot that is at least as recent as the last write to the store seen by this process.
+     */
+    public StoreCatalogSnapshot get(String storeId, ProductView view, Supplier<? extends List<?>> loader) {
+        SnapshotKey key = new SnapshotKey(storeId, view);
+        long version = versions.get(storeId, id -> nextVersion.incrementAndGet());
+        StoreCatalogSnapshot snapshot = snapshots.getIfPresent(key);
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+
+        List<?> products = loader.get();
+        for (Object product : products) {
+            if (product instanceof ProductListing listing) {
+                listedIn.put(listing.getProductId(), storeId);
+            }
+        }
+        byte[] body = serialize(storeId, products);
+        snapshot = new StoreCatalogSnapshot(version, body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        snapshots.put(key, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Returns the store whose snapshot last listed a product.
+     *
+     * @param productId the unique identifier of the product.
+     * @return an {@link Optional} containing the store, or empty if no snapshot built by this process
+     *         listed the product, or it was forgotten once more products were listed.
+     */
+    public Optional<String> storeOf(String productId) {
+        return Optional.ofNullable(listedIn.getIfPresent(productId));
+    }
+
+    /**
+     * Retires the catalog version of a store so its current snapshot is no longer served.
+     *
+     * @param storeId the unique identifier of the store; ignored if {@code null}.
+     */
+    public void invalidate(String storeId) {
+        if (storeId == null) {
+            return;
+        }
+        versions.invalidate(storeId);
+        for (ProductView view : ProductView.values()) {
+            snapshots.invalidate(new SnapshotKey(storeId, view));
+        }
+    }
+
+    /**
+     * Retires the catalog version of every store, for when a write cannot be attributed to a store.
+     */
+    public void invalidateAll() {
+        versions.invalidateAll();
+        snapshots.invalidateAll();
+    }
+
+    private byte[] serialize(String storeId, List<?> products) {
+        try {
+            return objectMapper.writeValueAsBytes(products);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog for store " + storeId, e);
+        }
+    }
+
+    private record SnapshotKey(String storeId, ProductView view) {
+    }
+}
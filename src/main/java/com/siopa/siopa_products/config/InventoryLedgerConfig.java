@@ -0,0 +1,29 @@
+package com.siopa.siopa_products.config;
+
+import com.siopa.siopa_products.inventory.InventoryLedger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ContainerCustomizer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+/**
+ * Ties the {@link InventoryLedger} to the order topic assignment of this instance.
+ */
+@Configuration
+@ConditionalOnProperty(name = "siopa.inventory.ledger.enabled", havingValue = "true")
+public class InventoryLedgerConfig {
+
+    /**
+     * Registers the ledger as the rebalance listener of every listener container, so it only holds the
+     * products of the order topic partitions this instance consumes. Containers of other topics are
+     * ignored by the ledger.
+     *
+     * @return the customizer applied to the listener containers.
+     */
+    @Bean
+    public ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>>
+            inventoryLedgerRebalanceCustomizer(InventoryLedger inventoryLedger) {
+        return container -> container.getContainerProperties().setConsumerRebalanceListener(inventoryLedger);
+    }
+}
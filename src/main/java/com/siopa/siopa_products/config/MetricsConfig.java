@@ -0,0 +1,21 @@
+package com.siopa.siopa_products.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables {@link io.micrometer.core.annotation.Timed @Timed} on Spring beans.
+ * <p>
+ * Timed classes record one timer per public method, tagged with {@code class}, {@code method} and
+ * {@code exception}. Calls a bean makes to itself bypass the proxy and are not timed separately.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,90 @@
+package com.siopa.siopa_products.config;
+
+import com.siopa.siopa_products.exceptions.DatabaseBusyException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of database calls in flight at once.
+ * <p>
+ * With virtual threads the number of concurrent requests is no longer bounded by the Tomcat pool, so
+ * without a limit every request would queue inside the Mongo driver's connection pool. Here callers
+ * wait up to {@code siopa.mongo.bulkhead.max-wait} for one of {@code siopa.mongo.bulkhead.max-concurrent}
+ * permits and are otherwise rejected with {@link DatabaseBusyException}, answered with
+ * {@code 503 Service Unavailable}. Keep the limit at or below {@code siopa.mongo.pool.max-size}.
+ * <p>
+ * Both {@code ProductRepository} methods and every {@link MongoOperations} call are limited, so
+ * services and components that use the {@code MongoTemplate} directly share the same permits. A
+ * permit is held for the duration of the outermost call; template calls made while a repository
+ * method already holds one run under it rather than taking a second, so nested calls cannot deadlock
+ * the bulkhead. Accessors and factories such as {@code getCollection} or {@code bulkOps} are not
+ * limited, and neither is I/O done later through what they return, nor cursors returned as a
+ * {@code Stream} that keep reading after the call returns; the long-lived change stream is therefore
+ * never counted.
+ */
+@Aspect
+@Component
+public class MongoBulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoBulkhead.class);
+
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    public MongoBulkhead(MeterRegistry meterRegistry,
+                         @Value("${siopa.mongo.bulkhead.max-concurrent:100}") int maxConcurrent,
+                         @Value("${siopa.mongo.bulkhead.max-wait:1s}") Duration maxWait) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        Gauge.builder("siopa.mongo.bulkhead.available", permits, Semaphore::availablePermits)
+                .description("Free slots for concurrent repository calls")
+                .register(meterRegistry);
+        Gauge.builder("siopa.mongo.bulkhead.queued", permits, Semaphore::getQueueLength)
+                .description("Callers waiting for a repository call slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a database call once a permit is available, or under the permit the calling thread
+     * already holds.
+     *
+     * @param joinPoint the repository or template call.
+     * @return the result of the call.
+     * @throws DatabaseBusyException if no permit became available within the maximum wait.
+     */
+    @Around("execution(* com.siopa.siopa_products.repositories.ProductRepository+.*(..))"
+            + " || (execution(* org.springframework.data.mongodb.core.MongoOperations+.*(..))"
+            + " && !execution(* org.springframework.data.mongodb.core.MongoOperations+.get*(..))"
+            + " && !execution(* org.springframework.data.mongodb.core.MongoOperations+.*Ops(..)))")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        int[] held = depth.get();
+        if (held[0] == 0 && !permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            String operation = joinPoint.getSignature().getName();
+            logger.warn("Rejected {}: no database slot free within {} ms", operation,
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            throw new DatabaseBusyException(operation);
+        }
+        held[0]++;
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (--held[0] == 0) {
+                depth.remove();
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.siopa.siopa_products.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the Mongo driver's connection pool.
+ * <p>
+ * The driver's default wait for a free connection is two minutes; callers beyond the pool size should
+ * instead be held back by {@link MongoBulkhead} and fail fast if the pool is still exhausted.
+ */
+@Configuration
+public class MongoPoolConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer(
+            @Value("${siopa.mongo.pool.max-size:100}") int maxSize,
+            @Value("${siopa.mongo.pool.max-wait:2s}") Duration maxWait) {
+        return settings -> settings.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxSize)
+                .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,128 @@
+package com.siopa.siopa_products.config;
+
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.kafka.OrderConsumerMetrics;
+import com.siopa.siopa_products.kafka.OrderDeadLetters;
+import com.siopa.siopa_products.kafka.OrderMessageParseException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.ContainerCustomizer;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+import org.springframework.kafka.retrytopic.RetryTopicSchedulerWrapper;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Infrastructure for the order retry and dead-letter topics.
+ * <p>
+ * Order records are consumed as raw bytes, so they are republished with a byte array template rather
+ * than the application's default one. Every republished record gets an
+ * {@value OrderDeadLetters#REASON_HEADER} header classifying its latest failure; the last one on a
+ * dead-lettered record tells why it was given up.
+ * <p>
+ * The batch and parallel consumers, which cannot use retry topics, run in containers whose error
+ * handler retries a failed poll in place with the same {@code siopa.kafka.order.retry.*} back-off.
+ */
+@Configuration
+public class OrderRetryTopicConfig extends RetryTopicConfigurationSupport {
+
+    /**
+     * @return the template used to republish order records to the retry and dead-letter topics.
+     */
+    @Bean
+    public KafkaTemplate<String, byte[]> orderKafkaTemplate(KafkaProperties kafkaProperties,
+                                                            ObjectProvider<SslBundles> sslBundles) {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable()),
+                new StringSerializer(), new ByteArraySerializer()));
+    }
+
+    /**
+     * @return the scheduler that resumes retry topic partitions once their back-off has elapsed.
+     */
+    @Bean
+    public RetryTopicSchedulerWrapper retryTopicSchedulerWrapper() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("order-retry-");
+        scheduler.initialize();
+        return new RetryTopicSchedulerWrapper(scheduler);
+    }
+
+    /**
+     * Listener container factory of the batch and parallel order consumers.
+     * <p>
+     * A poll that fails with an unexpected error is redelivered and retried with exponential back-off.
+     * Once the attempts are used up the failed records are published to the dead-letter topic and
+     * counted in {@code siopa.orders.dead_lettered}: only the failed record when the listener names it
+     * with a {@link org.springframework.kafka.listener.BatchListenerFailedException}, the records after it
+     * being redelivered, otherwise every record of the poll. Orders of such a poll that were applied are dead-lettered as
+     * well; they carry their {@code orderId}, so replaying them does not apply them twice.
+     *
+     * @return the factory named by the {@code containerFactory} of the batch and parallel listeners.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> orderBatchContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            ObjectProvider<ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>>> containerCustomizer,
+            @Qualifier("orderKafkaTemplate") KafkaTemplate<String, byte[]> orderKafkaTemplate,
+            OrderConsumerMetrics metrics,
+            @Value("${siopa.kafka.order.retry.attempts:4}") int attempts,
+            @Value("${siopa.kafka.order.retry.initial-delay:1000}") long initialDelay,
+            @Value("${siopa.kafka.order.retry.multiplier:2.0}") double multiplier,
+            @Value("${siopa.kafka.order.retry.max-delay:30000}") long maxDelay) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        containerCustomizer.ifAvailable(factory::setContainerCustomizer);
+
+        DeadLetterPublishingRecoverer deadLetters = new DeadLetterPublishingRecoverer(orderKafkaTemplate,
+                (record, exception) -> new TopicPartition(record.topic() + OrderDeadLetters.TOPIC_SUFFIX, -1));
+        deadLetters.setHeadersFunction(OrderRetryTopicConfig::reasonHeaders);
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(attempts - 1);
+        backOff.setInitialInterval(initialDelay);
+        backOff.setMultiplier(multiplier);
+        backOff.setMaxInterval(maxDelay);
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, exception) -> {
+            metrics.recordDeadLetter(OrderDeadLetters.reasonOf(exception));
+            deadLetters.accept(record, exception);
+        }, backOff);
+        errorHandler.addNotRetryableExceptions(OrderMessageParseException.class, ProductNotFoundException.class,
+                InsufficientStockException.class);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+
+    @Override
+    protected void configureCustomizers(CustomizersConfigurer customizersConfigurer) {
+        customizersConfigurer.customizeDeadLetterPublishingRecoverer(recoverer ->
+                recoverer.setHeadersFunction(OrderRetryTopicConfig::reasonHeaders));
+    }
+
+    private static Headers reasonHeaders(ConsumerRecord<?, ?> record, Exception exception) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(OrderDeadLetters.REASON_HEADER, OrderDeadLetters.reasonOf(exception).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
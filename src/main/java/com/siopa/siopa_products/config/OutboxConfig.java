@@ -0,0 +1,56 @@
+package com.siopa.siopa_products.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.Map;
+
+/**
+ * Infrastructure for the product change outbox: the Mongo transaction manager that writes a change and
+ * its outbox event together, and the producer that relays the events.
+ * <p>
+ * The relay sends a whole batch of events before flushing, so the producer is tuned for throughput:
+ * records for the same partition are packed into batches of up to {@code siopa.outbox.producer.batch-size}
+ * bytes and compressed with {@code siopa.outbox.producer.compression}. Idempotence keeps the events of a
+ * product in order across producer retries.
+ */
+@Configuration
+@ConditionalOnProperty(name = "siopa.outbox.enabled", havingValue = "true")
+public class OutboxConfig {
+
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
+
+    /**
+     * @return the template used to publish outbox events.
+     */
+    @Bean
+    public KafkaTemplate<String, byte[]> outboxKafkaTemplate(
+            KafkaProperties kafkaProperties, ObjectProvider<SslBundles> sslBundles,
+            @Value("${siopa.outbox.producer.compression:zstd}") String compression,
+            @Value("${siopa.outbox.producer.batch-size:262144}") int batchSize,
+            @Value("${siopa.outbox.producer.linger-ms:20}") int lingerMs) {
+        Map<String, Object> properties = kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable());
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(properties,
+                new StringSerializer(), new ByteArraySerializer()));
+    }
+}
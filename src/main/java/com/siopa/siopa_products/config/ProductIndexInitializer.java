@@ -0,0 +1,100 @@
+package com.siopa.siopa_products.config;
+
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.models.ProductStockShard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the indexes declared on {@link Product}, {@link ProductStockShard} and {@link ProductChangeEvent}
+ * at startup and verifies them against the live collections.
+ * <p>
+ * Automatic index creation is disabled by default in Spring Data MongoDB, so the indexes are created
+ * explicitly here. Creating an index that already exists is a no-op. Indexes that could not be
+ * created, or that are missing afterwards, are logged as errors rather than failing startup.
+ * <p>
+ * Indexes that have been replaced by a declared index are dropped once their replacement exists, so
+ * existing deployments do not keep maintaining them on every write.
+ */
+@Component
+public class ProductIndexInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductIndexInitializer.class);
+
+    /**
+     * Indexes on the {@code products} collection that are no longer declared, keyed by the index that
+     * replaced them.
+     */
+    private static final Map<String, String> RETIRED_PRODUCT_INDEXES = Map.of(
+            "category_price", "category_price_id"
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    public ProductIndexInitializer(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Ensures every declared index exists once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        ensureIndexes(Product.class, RETIRED_PRODUCT_INDEXES);
+        ensureIndexes(ProductStockShard.class, Map.of());
+        ensureIndexes(ProductChangeEvent.class, Map.of());
+    }
+
+    private void ensureIndexes(Class<?> entityType, Map<String, String> retired) {
+        String collection = mongoTemplate.getCollectionName(entityType);
+        IndexOperations indexOps = mongoTemplate.indexOps(entityType);
+        MongoPersistentEntityIndexResolver resolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+
+        List<String> declared = new ArrayList<>();
+        for (IndexDefinition index : resolver.resolveIndexFor(entityType)) {
+            String name = index.getIndexOptions().getString("name");
+            declared.add(name);
+            try {
+                indexOps.ensureIndex(index);
+            } catch (RuntimeException e) {
+                logger.error("Failed to create index {} on {}: {}", name, collection, e.getMessage(), e);
+            }
+        }
+
+        Set<String> live = indexOps.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet());
+        retired.forEach((name, replacement) -> {
+            if (live.contains(name) && live.contains(replacement)) {
+                try {
+                    indexOps.dropIndex(name);
+                    logger.info("Dropped index {} on {}, replaced by {}", name, collection, replacement);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to drop index {} on {}: {}", name, collection, e.getMessage(), e);
+                }
+            }
+        });
+        List<String> missing = declared.stream().filter(name -> !live.contains(name)).toList();
+        if (missing.isEmpty()) {
+            logger.info("Verified {} declared indexes on {}: {}", declared.size(), collection, declared);
+        } else {
+            logger.error("Declared indexes missing from {} collection: {}", collection, missing);
+        }
+    }
+}
@@ -1,13 +1,39 @@
 package com.siopa.siopa_products.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshot;
+import com.siopa.siopa_products.dto.BulkItemResult;
+import com.siopa.siopa_products.dto.ProductPage;
 import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.dto.ProductUpdateRequest;
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.exceptions.InvalidSearchException;
+import com.siopa.siopa_products.imports.ImportFormat;
+import com.siopa.siopa_products.imports.ImportJob;
 import com.siopa.siopa_products.models.Product;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import com.siopa.siopa_products.services.ProductBulkService;
+import com.siopa.siopa_products.services.ProductExportService;
+import com.siopa.siopa_products.services.ProductImportService;
 import com.siopa.siopa_products.services.ProductService;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -17,17 +43,168 @@ import java.util.Optional;
 @RequestMapping("/api/products")
 public class ProductController {
 
+    /**
+     * Prefix of the search parameters that filter on product attributes, e.g. {@code attr.color=red}.
+     */
+    private static final String ATTRIBUTE_PARAM_PREFIX = "attr.";
+
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductBulkService productBulkService;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Retrieves a list of all products.
      *
-     * @return a list of all products.
+     * @param view {@code full} for complete products or {@code summary} for lightweight summaries.
+     * @return a list of all products in the requested view.
      */
     @GetMapping
-    public List<Product> getAllProducts() {
-        return productService.getAllProducts();
+    public List<?> getAllProducts(@RequestParam(defaultValue = "full") String view) {
+        return switch (ProductView.from(view)) {
+            case FULL -> productService.getAllProducts();
+            case SUMMARY -> productService.getAllProductSummaries();
+        };
+    }
+
+    /**
+     * Retrieves a page of products using keyset pagination.
+     *
+     * @param cursor the continuation token returned with the previous page; omit for the first page.
+     * @param limit the maximum number of products to return, capped server-side.
+     * @param view {@code full} for complete products or {@code summary} for lightweight summaries.
+     * @return the requested page and the cursor for the next one.
+     */
+    @GetMapping("/page")
+    public ProductPage<?> getProductsPage(@RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "50") int limit,
+                                          @RequestParam(defaultValue = "full") String view) {
+        return switch (ProductView.from(view)) {
+            case FULL -> productService.getProductsPage(cursor, limit);
+            case SUMMARY -> productService.getProductSummariesPage(cursor, limit);
+        };
+    }
+
+    /**
+     * Searches products by store, category, price range, stock and attribute values.
+     * <p>
+     * Attribute filters are passed as {@code attr.<name>=<value>} parameters. Results are paged by
+     * keyset; pass the returned cursor to fetch the next page with the same filters and sort order.
+     *
+     * @param storeId only return products of this store.
+     * @param category only return products in this category.
+     * @param minPrice only return products costing at least this much.
+     * @param maxPrice only return products costing at most this much.
+     * @param inStock only return products with a positive quantity.
+     * @param sort the field to sort by: {@code productId}, {@code price} or {@code quantity}.
+     * @param order the sort order: {@code asc} or {@code desc}.
+     * @param cursor the continuation token returned with the previous page; omit for the first page.
+     * @param limit the maximum number of products to return, capped server-side.
+     * @param view {@code full} for complete products or {@code summary} for lightweight summaries.
+     * @param params all request parameters, from which the {@code attr.*} filters are read.
+     * @return the requested page of matching products and the cursor for the next one.
+     */
+    @GetMapping("/search")
+    public ProductPage<?> searchProducts(@RequestParam(required = false) String storeId,
+                                         @RequestParam(required = false) String category,
+                                         @RequestParam(required = false) Double minPrice,
+                                         @RequestParam(required = false) Double maxPrice,
+                                         @RequestParam(defaultValue = "false") boolean inStock,
+                                         @RequestParam(defaultValue = "productId") String sort,
+                                         @RequestParam(defaultValue = "asc") String order,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "50") int limit,
+                                         @RequestParam(defaultValue = "full") String view,
+                                         @RequestParam Map<String, String> params) {
+        ProductView productView = ProductView.from(view);
+        if (!"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+            throw new InvalidSearchException("Unsupported sort order: " + order);
+        }
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setStoreId(storeId);
+        criteria.setCategory(category);
+        criteria.setMinPrice(minPrice);
+        criteria.setMaxPrice(maxPrice);
+        criteria.setInStockOnly(inStock);
+        criteria.setSortField(sort);
+        criteria.setDescending("desc".equalsIgnoreCase(order));
+        params.forEach((name, value) -> {
+            if (name.startsWith(ATTRIBUTE_PARAM_PREFIX)) {
+                criteria.getAttributes().put(name.substring(ATTRIBUTE_PARAM_PREFIX.length()), value);
+            }
+        });
+        return switch (productView) {
+            case FULL -> productService.searchProducts(criteria, cursor, limit);
+            case SUMMARY -> productService.searchProductSummaries(criteria, cursor, limit);
+        };
+    }
+
+    /**
+     * Streams all products as newline-delimited JSON, one product per line.
+     * <p>
+     * Products are written as they are read from the database cursor, so memory use does not grow
+     * with the size of the catalog.
+     *
+     * @return a streaming NDJSON response body.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // Records are separated by the newline written below, not by Jackson's default space.
+                generator.setRootValueSeparator(null);
+                productService.streamAllProducts(product -> {
+                    try {
+                        writer.writeValue(generator, product);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Exports a store's products, or all products, as a gzip-compressed NDJSON attachment.
+     * <p>
+     * Products are streamed from a database cursor through the compressor, so neither the catalog nor
+     * its serialized form is held in memory. Responds with {@code 429 Too Many Requests} when the
+     * maximum number of exports is already running.
+     *
+     * @param storeId the unique identifier of the store to export; omit to export all products.
+     * @param fields the product fields to write; omit for all of them.
+     * @return a streaming gzip response body.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(required = false) String storeId,
+                                                                @RequestParam(required = false) List<String> fields) {
+        List<String> exportFields = productExportService.resolveFields(fields);
+        String filename = (storeId == null ? "products" : "products-" + storeId) + ".ndjson.gz";
+        Runnable releaseSlot = productExportService.reserveSlot();
+        StreamingResponseBody body = outputStream -> {
+            try {
+                productExportService.exportProducts(storeId, exportFields, outputStream);
+            } finally {
+                releaseSlot.run();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
     }
 
     /**
@@ -43,13 +220,25 @@ public class ProductController {
 
     /**
      * Retrieves all products belonging to a specific store.
+     * <p>
+     * The response carries a strong {@code ETag}; a request whose {@code If-None-Match} matches the
+     * current catalog is answered with {@code 304 Not Modified}.
      *
      * @param storeId the unique identifier of the store.
-     * @return a list of products associated with the specified store.
+     * @param view {@code full} for complete products or {@code summary} for lightweight summaries.
+     * @return the JSON list of products associated with the specified store.
      */
     @GetMapping("/store/{storeId}")
-    public List<Product> getProductsByStoreId(@PathVariable String storeId) {
-        return productService.getProductsByStoreId(storeId);
+    public ResponseEntity<byte[]> getProductsByStoreId(@PathVariable String storeId,
+                                                       @RequestParam(defaultValue = "full") String view) {
+        StoreCatalogSnapshot catalog = switch (ProductView.from(view)) {
+            case FULL -> productService.getStoreCatalog(storeId);
+            case SUMMARY -> productService.getStoreCatalogSummary(storeId);
+        };
+        return ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.body());
     }
 
     /**
@@ -63,6 +252,68 @@ public class ProductController {
         return productService.createProduct(productRequest);
     }
 
+    /**
+     * Creates many products in one call.
+     *
+     * @param productRequests the products to create.
+     * @return one result per product, in request order.
+     */
+    @PostMapping("/bulk")
+    public List<BulkItemResult> createProducts(@RequestBody List<ProductRequest> productRequests) {
+        return productBulkService.createProducts(productRequests);
+    }
+
+    /**
+     * Updates many existing products in one call.
+     *
+     * @param updateRequests the new state of the products, each addressed by its product identifier.
+     * @return one result per product, in request order.
+     */
+    @PutMapping("/bulk")
+    public List<BulkItemResult> updateProducts(@RequestBody List<ProductUpdateRequest> updateRequests) {
+        return productBulkService.updateProducts(updateRequests);
+    }
+
+    /**
+     * Imports a catalog file of any size, streamed from the request body.
+     * <p>
+     * CSV files need a header row naming the product fields; {@code attr.<name>} columns become
+     * attributes. NDJSON files hold one product per line. Progress can be followed through
+     * {@code GET /api/products/imports} while the upload runs.
+     *
+     * @param contentType {@code text/csv} or {@code application/x-ndjson}.
+     * @param body the file contents.
+     * @return the finished import, with its counts and the first row errors.
+     */
+    @PostMapping(value = "/imports",
+            consumes = {ImportFormat.CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE, ImportFormat.X_NDJSON_VALUE})
+    public ResponseEntity<ImportJob> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                    InputStream body) {
+        ImportJob job = productImportService.importProducts(body, ImportFormat.from(contentType));
+        return ResponseEntity.created(URI.create("/api/products/imports/" + job.getImportId())).body(job);
+    }
+
+    /**
+     * Lists the catalog imports of this instance.
+     *
+     * @return the retained imports, most recently started first.
+     */
+    @GetMapping("/imports")
+    public List<ImportJob> getImports() {
+        return productImportService.getImports();
+    }
+
+    /**
+     * Retrieves the progress or outcome of a catalog import.
+     *
+     * @param importId the unique identifier of the import.
+     * @return the import.
+     */
+    @GetMapping("/imports/{importId}")
+    public ImportJob getImport(@PathVariable String importId) {
+        return productImportService.getImport(importId);
+    }
+
     /**
      * Updates an existing product with new details.
      *
@@ -96,4 +347,29 @@ public class ProductController {
     public Product updateProductQuantity(@PathVariable String id, @RequestParam int quantity) {
         return productService.updateProductQuantity(id, quantity);
     }
+
+    /**
+     * Partially updates a product with a JSON merge patch: supplied fields are set, {@code null} fields
+     * are removed and all other fields are left as they are.
+     *
+     * @param id the unique identifier of the product.
+     * @param patch the merge patch document.
+     * @return the patched product.
+     */
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public Product patchProduct(@PathVariable String id, @RequestBody Map<String, Object> patch) {
+        return productService.patchProduct(id, patch);
+    }
+
+    /**
+     * Splits a product's stock across several shards, or merges it back when {@code count} is 0.
+     *
+     * @param id the unique identifier of the product.
+     * @param count the number of stock shards.
+     * @return the product after resharding.
+     */
+    @PutMapping("/{id}/stock-shards")
+    public Product updateStockShards(@PathVariable String id, @RequestParam int count) {
+        return productService.updateStockShards(id, count);
+    }
 }
@@ -0,0 +1,78 @@
+package com.siopa.siopa_products.controllers;
+
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.services.ReactiveProductService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking, read-only REST API for products.
+ * <p>
+ * Handlers return publishers from the reactive repository, so no request thread waits on the database.
+ * Listings requested as {@code application/x-ndjson} are streamed one product per line with
+ * backpressure: the next document is only requested from the cursor once the previous one has been
+ * written. Requested as {@code application/json} they are collected into a single array.
+ */
+@RestController
+@RequestMapping("/api/reactive/products")
+public class ReactiveProductController {
+
+    @Autowired
+    private ReactiveProductService reactiveProductService;
+
+    /**
+     * Retrieves all products.
+     *
+     * @param view {@code full} for complete products or {@code summary} for lightweight summaries.
+     * @return all products in the requested view.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<?> getAllProducts(@RequestParam(defaultValue = "full") String view) {
+        return reactiveProductService.getAllProducts(ProductView.from(view));
+    }
+
+    /**
+     * Retrieves many products by identifier in one query.
+     *
+     * @param ids the unique identifiers of the products, e.g. {@code ?ids=1,2,3}.
+     * @return the products found; unknown identifiers are skipped.
+     */
+    @GetMapping(value = "/batch", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<Product> getProductsByIds(@RequestParam List<String> ids) {
+        return reactiveProductService.getProductsByIds(ids);
+    }
+
+    /**
+     * Retrieves a product by its unique identifier.
+     *
+     * @param id the unique identifier of the product.
+     * @return the product, or {@code 404 Not Found}.
+     */
+    @GetMapping("/{id}")
+    public Mono<Product> getProductById(@PathVariable String id) {
+        return reactiveProductService.getProductById(id);
+    }
+
+    /**
+     * Retrieves all products belonging to a specific store.
+     *
+     * @param storeId the unique identifier of the store.
+     * @param view {@code full} for complete products or {@code summary} for lightweight summaries.
+     * @return the store's products in the requested view.
+     */
+    @GetMapping(value = "/store/{storeId}", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<?> getProductsByStoreId(@PathVariable String storeId,
+                                        @RequestParam(defaultValue = "full") String view) {
+        return reactiveProductService.getProductsByStoreId(storeId, ProductView.from(view));
+    }
+}
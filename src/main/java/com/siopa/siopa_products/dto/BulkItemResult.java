@@ -0,0 +1,44 @@
+package com.siopa.siopa_products.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of a single item of a bulk product operation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult {
+
+    /**
+     * Possible outcomes of a bulk item.
+     */
+    public enum Status {
+        CREATED,
+        UPDATED,
+        INVALID,
+        NOT_FOUND,
+        FAILED
+    }
+
+    /**
+     * Position of the item in the request array.
+     */
+    private int index;
+
+    /**
+     * Identifier of the created or updated product, if known.
+     */
+    private String productId;
+
+    private Status status;
+
+    /**
+     * Validation or write errors for the item; empty when it succeeded.
+     */
+    private List<String> errors;
+}
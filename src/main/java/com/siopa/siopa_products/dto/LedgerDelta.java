@@ -0,0 +1,14 @@
+package com.siopa.siopa_products.dto;
+
+import java.util.List;
+
+/**
+ * Net stock change of one product, written behind by the inventory ledger.
+ *
+ * @param productId the unique identifier of the product.
+ * @param amount the number of units to remove from stock.
+ * @param seq the ledger sequence number the change is complete up to.
+ * @param orderIds the identifiers of the orders the change applies, oldest first.
+ */
+public record LedgerDelta(String productId, long amount, long seq, List<String> orderIds) {
+}
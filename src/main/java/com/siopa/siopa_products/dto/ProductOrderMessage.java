@@ -6,6 +6,9 @@ import lombok.NoArgsConstructor;
 
 /**
  * Represents the product order message received from Kafka.
+ * <p>
+ * {@code orderId} identifies the order line and is optional; when present, redeliveries of the same
+ * line are applied only once.
  */
 @Data
 @NoArgsConstructor
@@ -13,4 +16,9 @@ import lombok.NoArgsConstructor;
 public class ProductOrderMessage {
     private String productId;
     private int quantity;
+    private String orderId;
+
+    public ProductOrderMessage(String productId, int quantity) {
+        this(productId, quantity, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.siopa.siopa_products.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single page of a keyset-paginated product listing.
+ *
+ * @param <T> the type of the items in the page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPage<T> {
+
+    /**
+     * The items in this page, in listing order.
+     */
+    private List<T> items;
+
+    /**
+     * Opaque token to pass back to fetch the next page, or {@code null} if this is the last page.
+     */
+    private String nextCursor;
+}
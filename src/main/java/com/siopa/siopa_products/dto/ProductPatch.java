@@ -0,0 +1,170 @@
+package com.siopa.siopa_products.dto;
+
+import com.siopa.siopa_products.exceptions.InvalidPatchException;
+import com.siopa.siopa_products.models.Product;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The field changes of a JSON merge patch (RFC 7386) of a product, as database field paths.
+ * <p>
+ * Supplied members become entries of {@code set} and {@code null} members entries of {@code unset}.
+ * Objects under {@code attributes} are merged member by member, so {@code {"attributes":{"color":"red"}}}
+ * sets {@code attributes.color} and leaves the other attributes alone. An empty object nested under
+ * {@code attributes} replaces the member with an empty object; {@code "attributes":{}} itself changes
+ * nothing. Members that are not supplied are not touched.
+ *
+ * @param set the values to set, keyed by field path.
+ * @param unset the field paths to remove.
+ */
+public record ProductPatch(Map<String, Object> set, Set<String> unset) {
+
+    private static final Set<String> REQUIRED_FIELDS = Set.of("name", "price", "category", "storeId");
+    private static final Set<String> TEXT_FIELDS = Set.of("name", "description", "category", "storeId");
+    private static final Pattern ATTRIBUTE_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    /**
+     * Translates a merge patch document into field changes.
+     *
+     * @param patch the parsed merge patch document.
+     * @return the field changes of the patch.
+     * @throws InvalidPatchException if the patch names an unknown field, removes a required one or
+     * supplies a value of the wrong type.
+     */
+    public static ProductPatch fromMergePatch(Map<String, Object> patch) {
+        Map<String, Object> set = new LinkedHashMap<>();
+        Set<String> unset = new LinkedHashSet<>();
+        patch.forEach((field, value) -> {
+            if (value == null) {
+                if (REQUIRED_FIELDS.contains(field)) {
+                    throw new InvalidPatchException("Field cannot be removed: " + field);
+                }
+                if (field.equals("quantity")) {
+                    throw new InvalidPatchException("Quantity cannot be removed");
+                }
+            }
+            if (TEXT_FIELDS.contains(field)) {
+                if (value == null) {
+                    unset.add(field);
+                } else if (value instanceof String text && !(REQUIRED_FIELDS.contains(field) && text.isBlank())) {
+                    set.put(field, text);
+                } else {
+                    throw new InvalidPatchException("Invalid value for " + field + ": " + value);
+                }
+                return;
+            }
+            switch (field) {
+                case "price" -> {
+                    if (!(value instanceof Number price) || price.doubleValue() < 0) {
+                        throw new InvalidPatchException("Price must be a positive number");
+                    }
+                    set.put(field, price.doubleValue());
+                }
+                case "quantity" -> {
+                    if (!isInteger(value)) {
+                        throw new InvalidPatchException("Quantity must be a whole number");
+                    }
+                    set.put(field, ((Number) value).intValue());
+                }
+                case "attributes" -> {
+                    if (value == null) {
+                        unset.add(field);
+                    } else if (value instanceof Map<?, ?> attributes) {
+                        merge(field, attributes, set, unset);
+                    } else {
+                        throw new InvalidPatchException("Attributes must be an object");
+                    }
+                }
+                default -> throw new InvalidPatchException("Unsupported field: " + field);
+            }
+        });
+        return new ProductPatch(set, unset);
+    }
+
+    /**
+     * @return whether the patch changes nothing.
+     */
+    public boolean isEmpty() {
+        return set.isEmpty() && unset.isEmpty();
+    }
+
+    /**
+     * Applies the field changes to a product in memory, as the database applies them.
+     *
+     * @param product the product to change.
+     * @return {@code product}.
+     */
+    @SuppressWarnings("unchecked")
+    public Product applyTo(Product product) {
+        set.forEach((path, value) -> {
+            switch (path) {
+                case "name" -> product.setName((String) value);
+                case "description" -> product.setDescription((String) value);
+                case "category" -> product.setCategory((String) value);
+                case "storeId" -> product.setStoreId((String) value);
+                case "price" -> product.setPrice((Double) value);
+                case "quantity" -> product.setQuantity((Integer) value);
+                default -> {
+                    if (product.getAttributes() == null) {
+                        product.setAttributes(new LinkedHashMap<>());
+                    }
+                    String[] keys = path.split("\\.");
+                    Map<String, Object> parent = product.getAttributes();
+                    for (int i = 1; i < keys.length - 1; i++) {
+                        Object child = parent.get(keys[i]);
+                        if (!(child instanceof Map)) {
+                            child = new LinkedHashMap<String, Object>();
+                            parent.put(keys[i], child);
+                        }
+                        parent = (Map<String, Object>) child;
+                    }
+                    parent.put(keys[keys.length - 1], value);
+                }
+            }
+        });
+        for (String path : unset) {
+            switch (path) {
+                case "description" -> product.setDescription(null);
+                case "attributes" -> product.setAttributes(null);
+                default -> {
+                    String[] keys = path.split("\\.");
+                    Object parent = product.getAttributes();
+                    for (int i = 1; i < keys.length - 1 && parent instanceof Map; i++) {
+                        parent = ((Map<String, Object>) parent).get(keys[i]);
+                    }
+                    if (parent instanceof Map) {
+                        ((Map<String, Object>) parent).remove(keys[keys.length - 1]);
+                    }
+                }
+            }
+        }
+        return product;
+    }
+
+    private static void merge(String path, Map<?, ?> patch, Map<String, Object> set, Set<String> unset) {
+        patch.forEach((key, value) -> {
+            if (!(key instanceof String name) || !ATTRIBUTE_NAME.matcher(name).matches()) {
+                throw new InvalidPatchException("Unsupported attribute name: " + key);
+            }
+            String childPath = path + "." + name;
+            if (value == null) {
+                unset.add(childPath);
+            } else if (value instanceof Map<?, ?> child && child.isEmpty()) {
+                set.put(childPath, new LinkedHashMap<String, Object>());
+            } else if (value instanceof Map<?, ?> child) {
+                merge(childPath, child, set, unset);
+            } else {
+                set.put(childPath, value);
+            }
+        });
+    }
+
+    private static boolean isInteger(Object value) {
+        return value instanceof Integer
+                || value instanceof Long number && number == number.intValue();
+    }
+}
@@ -0,0 +1,42 @@
+package com.siopa.siopa_products.dto;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filters and ordering for a product search. Every filter is optional; unset filters match all products.
+ */
+@Data
+public class ProductSearchCriteria {
+
+    /**
+     * Fields a search can be sorted by. Each is always present on a product, which keeps keyset
+     * paging well defined.
+     */
+    public static final Set<String> SORTABLE_FIELDS = Set.of("productId", "price", "quantity");
+
+    private String storeId;
+
+    private String category;
+
+    private Double minPrice;
+
+    private Double maxPrice;
+
+    /**
+     * When {@code true}, only products with a positive quantity match.
+     */
+    private boolean inStockOnly;
+
+    /**
+     * Attribute values the product must have, keyed by attribute name.
+     */
+    private Map<String, String> attributes = new LinkedHashMap<>();
+
+    private String sortField = "productId";
+
+    private boolean descending;
+}
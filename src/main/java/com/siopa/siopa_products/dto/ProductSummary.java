@@ -0,0 +1,40 @@
+package com.siopa.siopa_products.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.siopa.siopa_products.models.ProductListing;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Lightweight view of a product for listings, without its description and attributes.
+ * <p>
+ * Read directly from the {@code products} collection with a field projection, so the omitted fields
+ * are never transferred from the database.
+ */
+@Data
+public class ProductSummary implements ProductListing {
+
+    /**
+     * The fields read from the database for a summary.
+     */
+    public static final String[] FIELDS = {"productId", "storeId", "name", "price", "category", "quantity", "stockShards"};
+
+    @Id
+    private String productId;
+
+    private String storeId;
+
+    private String name;
+
+    private double price;
+
+    private String category;
+
+    private int quantity;
+
+    /**
+     * See {@link com.siopa.siopa_products.models.Product#getStockShards()}.
+     */
+    @JsonIgnore
+    private Integer stockShards;
+}
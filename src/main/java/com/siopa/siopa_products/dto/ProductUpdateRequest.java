@@ -0,0 +1,17 @@
+package com.siopa.siopa_products.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * A {@link ProductRequest} addressed to an existing product, used by bulk updates.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ProductUpdateRequest extends ProductRequest {
+
+    @NotBlank(message = "Product ID is required")
+    private String productId;
+}
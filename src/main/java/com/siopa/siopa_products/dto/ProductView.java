@@ -0,0 +1,36 @@
+package com.siopa.siopa_products.dto;
+
+import com.siopa.siopa_products.exceptions.InvalidSearchException;
+
+import java.util.Locale;
+
+/**
+ * The representation a product listing is returned in.
+ */
+public enum ProductView {
+
+    /**
+     * Complete {@link com.siopa.siopa_products.models.Product} documents.
+     */
+    FULL,
+
+    /**
+     * {@link ProductSummary} projections.
+     */
+    SUMMARY;
+
+    /**
+     * Parses the {@code view} request parameter.
+     *
+     * @param value the parameter value, case-insensitive.
+     * @return the matching view.
+     * @throws InvalidSearchException if the value names no view.
+     */
+    public static ProductView from(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchException("Unsupported view: " + value);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.siopa.siopa_products.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of applying a single {@link ProductOrderMessage} to the product inventory.
+ */
+@Data
+@AllArgsConstructor
+public class StockReductionResult {
+
+    /**
+     * Possible outcomes of a stock reduction.
+     */
+    public enum Outcome {
+        APPLIED,
+        NOT_FOUND,
+        INSUFFICIENT_STOCK
+    }
+
+    private ProductOrderMessage order;
+    private Outcome outcome;
+
+    /**
+     * @return {@code true} if the stock of the ordered product was reduced.
+     */
+    public boolean isApplied() {
+        return outcome == Outcome.APPLIED;
+    }
+}
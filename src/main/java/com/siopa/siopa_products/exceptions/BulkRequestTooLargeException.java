@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a bulk request contains more items than a single call may process.
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class BulkRequestTooLargeException extends RuntimeException {
+
+    public BulkRequestTooLargeException(int size, int maxItems) {
+        super("Bulk request contains " + size + " items, the maximum is " + maxItems);
+    }
+}
@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a database call cannot get a slot in the Mongo bulkhead in time.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DatabaseBusyException extends RuntimeException {
+
+    public DatabaseBusyException(String operation) {
+        super("Database is busy, rejected: " + operation);
+    }
+}
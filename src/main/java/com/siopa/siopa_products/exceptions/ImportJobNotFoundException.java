@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an import job is unknown or no longer retained.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ImportJobNotFoundException extends RuntimeException {
+
+    public ImportJobNotFoundException(String importId) {
+        super("Import not found: " + importId);
+    }
+}
@@ -0,0 +1,25 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a stock reduction requests more units than are currently available.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends RuntimeException {
+
+    private final String productId;
+
+    public InsufficientStockException(String productId) {
+        super("Insufficient stock for product: " + productId);
+        this.productId = productId;
+    }
+
+    /**
+     * @return the identifier of the product that is out of stock.
+     */
+    public String getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a catalog export selects a field that cannot be exported.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidExportException extends RuntimeException {
+
+    public InvalidExportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a product's stock is to be split into an unsupported number of shards.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidShardCountException extends RuntimeException {
+
+    public InvalidShardCountException(int shards, int maxShards) {
+        super("Invalid stock shard count " + shards + ", must be between 0 and " + maxShards);
+    }
+}
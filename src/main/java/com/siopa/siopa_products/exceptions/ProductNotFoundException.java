@@ -0,0 +1,25 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an operation targets a product that does not exist.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ProductNotFoundException extends RuntimeException {
+
+    private final String productId;
+
+    public ProductNotFoundException(String productId) {
+        super("Product not found");
+        this.productId = productId;
+    }
+
+    /**
+     * @return the identifier of the product that could not be found.
+     */
+    public String getProductId() {
+        return productId;
+    }
+}
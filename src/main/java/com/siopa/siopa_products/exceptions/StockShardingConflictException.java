@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a product's stock keeps changing while it is being split into shards.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StockShardingConflictException extends RuntimeException {
+
+    public StockShardingConflictException(String productId) {
+        super("Stock of product " + productId + " changed while it was being sharded, try again");
+    }
+}
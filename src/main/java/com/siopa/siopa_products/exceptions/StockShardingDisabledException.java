@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a product's stock is to be sharded but stock sharding is not enabled.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StockShardingDisabledException extends RuntimeException {
+
+    public StockShardingDisabledException() {
+        super("Stock sharding is disabled, set siopa.inventory.shards.enabled=true");
+    }
+}
@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a catalog export is started while the maximum number of exports is already running.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyExportsException extends RuntimeException {
+
+    public TooManyExportsException(int maxConcurrent) {
+        super("Already running the maximum of " + maxConcurrent + " exports, retry later");
+    }
+}
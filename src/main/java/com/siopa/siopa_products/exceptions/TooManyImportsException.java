@@ -0,0 +1,15 @@
+package com.siopa.siopa_products.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a catalog import is started while the maximum number of imports is already running.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyImportsException extends RuntimeException {
+
+    public TooManyImportsException(int maxConcurrent) {
+        super("Already running the maximum of " + maxConcurrent + " imports, retry later");
+    }
+}
@@ -0,0 +1,39 @@
+package com.siopa.siopa_products.imports;
+
+import org.springframework.http.MediaType;
+
+/**
+ * The file formats a catalog import accepts.
+ */
+public enum ImportFormat {
+
+    /**
+     * Comma-separated values with a header row naming the {@link com.siopa.siopa_products.dto.ProductRequest}
+     * fields; {@code attr.<name>} columns become attributes.
+     */
+    CSV,
+
+    /**
+     * Newline-delimited JSON, one {@link com.siopa.siopa_products.dto.ProductRequest} per line.
+     */
+    NDJSON;
+
+    public static final String CSV_VALUE = "text/csv";
+    public static final String X_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * @param contentType the content type of the import body.
+     * @return the matching format.
+     * @throws IllegalArgumentException if the content type is not an accepted import format.
+     */
+    public static ImportFormat from(MediaType contentType) {
+        if (contentType.isCompatibleWith(MediaType.parseMediaType(CSV_VALUE))) {
+            return CSV;
+        }
+        if (contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                || contentType.isCompatibleWith(MediaType.parseMediaType(X_NDJSON_VALUE))) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported import content type: " + contentType);
+    }
+}
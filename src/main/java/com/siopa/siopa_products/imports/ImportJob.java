@@ -0,0 +1,160 @@
+package com.siopa.siopa_products.imports;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and outcome of one catalog import, updated while it runs and serialized as its status.
+ * <p>
+ * Only the first {@value #MAX_ERRORS} row errors are kept, so the status of a large import with many
+ * bad rows stays small; the counters still cover every row.
+ */
+public class ImportJob {
+
+    /**
+     * The lifecycle of an import.
+     */
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * Why a row was not imported.
+     *
+     * @param row the 1-based number of the record in the file, not counting a CSV header.
+     * @param errors the validation or write errors of the row.
+     */
+    public record RowError(long row, List<String> errors) {
+    }
+
+    static final int MAX_ERRORS = 100;
+
+    private final String importId;
+    private final ImportFormat format;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Queue<RowError> errors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private volatile State state = State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String failure;
+
+    ImportJob(String importId, ImportFormat format) {
+        this.importId = importId;
+        this.format = format;
+    }
+
+    /**
+     * Counts a row read from the file.
+     */
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    /**
+     * Counts rows written to the database.
+     *
+     * @param count the number of rows.
+     */
+    public void rowsImported(int count) {
+        imported.addAndGet(count);
+    }
+
+    /**
+     * Counts a row rejected by validation.
+     *
+     * @param row the number of the row.
+     * @param rowErrors why the row is invalid.
+     */
+    public void rowInvalid(long row, List<String> rowErrors) {
+        invalid.incrementAndGet();
+        addError(row, rowErrors);
+    }
+
+    /**
+     * Counts a valid row the database rejected.
+     *
+     * @param row the number of the row.
+     * @param error the write error.
+     */
+    public void rowFailed(long row, String error) {
+        failed.incrementAndGet();
+        addError(row, List.of(error));
+    }
+
+    /**
+     * Marks the import as finished after the last row.
+     */
+    public void complete() {
+        finishedAt = Instant.now();
+        state = State.COMPLETED;
+    }
+
+    /**
+     * Marks the import as stopped part-way; the rows imported before stay imported.
+     *
+     * @param reason why the import stopped.
+     */
+    public void fail(String reason) {
+        failure = reason;
+        finishedAt = Instant.now();
+        state = State.FAILED;
+    }
+
+    private void addError(long row, List<String> rowErrors) {
+        if (errorCount.getAndIncrement() < MAX_ERRORS) {
+            errors.add(new RowError(row, rowErrors));
+        }
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public List<RowError> getErrors() {
+        return List.copyOf(errors);
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+}
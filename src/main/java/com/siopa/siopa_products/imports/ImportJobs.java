@@ -0,0 +1,62 @@
+package com.siopa.siopa_products.imports;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The catalog imports of this instance, kept for {@code siopa.products.import.retention} after they
+ * start so clients can follow their progress and read their outcome.
+ * <p>
+ * At most {@code siopa.products.import.max-jobs} imports are kept; the registry is in memory, so an
+ * import's status is only available from the instance that ran it.
+ */
+@Component
+public class ImportJobs {
+
+    private final Cache<String, ImportJob> jobs;
+
+    public ImportJobs(@Value("${siopa.products.import.max-jobs:1000}") long maxJobs,
+                      @Value("${siopa.products.import.retention:24h}") Duration retention) {
+        this.jobs = Caffeine.newBuilder()
+                .maximumSize(maxJobs)
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    /**
+     * Registers a new running import.
+     *
+     * @param format the format of the imported file.
+     * @return the new import.
+     */
+    public ImportJob start(ImportFormat format) {
+        ImportJob job = new ImportJob(new ObjectId().toHexString(), format);
+        jobs.put(job.getImportId(), job);
+        return job;
+    }
+
+    /**
+     * @param importId the unique identifier of an import.
+     * @return the import, if it is still retained.
+     */
+    public Optional<ImportJob> get(String importId) {
+        return Optional.ofNullable(jobs.getIfPresent(importId));
+    }
+
+    /**
+     * @return the retained imports, most recently started first.
+     */
+    public List<ImportJob> list() {
+        return jobs.asMap().values().stream()
+                .sorted(Comparator.comparing(ImportJob::getStartedAt).reversed())
+                .toList();
+    }
+}
@@ -0,0 +1,174 @@
+package com.siopa.siopa_products.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.siopa.siopa_products.dto.ProductRequest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the rows of a catalog import one at a time, so only the current row is held in memory.
+ * <p>
+ * A row that cannot be turned into a {@link ProductRequest}, such as a malformed JSON line or a
+ * non-numeric price, is returned with an error rather than failing the import. Structural errors that
+ * make the rest of the file unreadable are thrown.
+ */
+public abstract class ProductImportReader implements Closeable {
+
+    /**
+     * Prefix of the CSV columns that hold attribute values, e.g. {@code attr.color}.
+     */
+    public static final String ATTRIBUTE_COLUMN_PREFIX = "attr.";
+
+    private static final ObjectReader CSV_READER = new CsvMapper()
+            .readerForMapOf(String.class)
+            .with(CsvSchema.emptySchema().withHeader());
+
+    /**
+     * One record of the file.
+     *
+     * @param number the 1-based number of the record, not counting a CSV header or blank NDJSON lines.
+     * @param request the product, or {@code null} if the record could not be read.
+     * @param error why the record could not be read, or {@code null}.
+     */
+    public record Row(long number, ProductRequest request, String error) {
+    }
+
+    /**
+     * @return the next row, or {@code null} at the end of the file.
+     * @throws IOException if the file cannot be read any further.
+     */
+    public abstract Row next() throws IOException;
+
+    /**
+     * @param body the file contents; closed with the reader.
+     * @param format the file format.
+     * @param objectMapper the mapper NDJSON lines are read with.
+     * @return a reader of the file's rows.
+     */
+    public static ProductImportReader open(InputStream body, ImportFormat format, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format) {
+            case CSV -> new Csv(CSV_READER.readValues(body));
+            case NDJSON -> new Ndjson(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)),
+                    objectMapper.readerFor(ProductRequest.class));
+        };
+    }
+
+    private static final class Ndjson extends ProductImportReader {
+
+        private final BufferedReader lines;
+        private final ObjectReader reader;
+        private long rows;
+
+        Ndjson(BufferedReader lines, ObjectReader reader) {
+            this.lines = lines;
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line;
+            do {
+                line = lines.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            long number = ++rows;
+            try {
+                return new Row(number, reader.readValue(line), null);
+            } catch (JsonProcessingException e) {
+                return new Row(number, null, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lines.close();
+        }
+    }
+
+    private static final class Csv extends ProductImportReader {
+
+        private final MappingIterator<Map<String, String>> records;
+        private long rows;
+
+        Csv(MappingIterator<Map<String, String>> records) {
+            this.records = records;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            if (!records.hasNextValue()) {
+                return null;
+            }
+            Map<String, String> values = records.nextValue();
+            long number = ++rows;
+            try {
+                return new Row(number, toRequest(values), null);
+            } catch (IllegalArgumentException e) {
+                return new Row(number, null, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            records.close();
+        }
+
+        private static ProductRequest toRequest(Map<String, String> values) {
+            ProductRequest request = new ProductRequest();
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            values.forEach((column, value) -> {
+                String name = column.trim();
+                String trimmed = value == null ? "" : value.trim();
+                switch (name) {
+                    case "name" -> request.setName(value);
+                    case "price" -> request.setPrice(trimmed.isEmpty() ? null : parseDouble(name, trimmed));
+                    case "description" -> request.setDescription(trimmed.isEmpty() ? null : value);
+                    case "category" -> request.setCategory(value);
+                    case "storeId" -> request.setStoreId(trimmed);
+                    case "quantity" -> request.setQuantity(trimmed.isEmpty() ? 0 : parseInt(name, trimmed));
+                    default -> {
+                        if (name.startsWith(ATTRIBUTE_COLUMN_PREFIX) && !trimmed.isEmpty()) {
+                            attributes.put(name.substring(ATTRIBUTE_COLUMN_PREFIX.length()), value);
+                        }
+                    }
+                }
+            });
+            if (!attributes.isEmpty()) {
+                request.setAttributes(attributes);
+            }
+            return request;
+        }
+
+        private static double parseDouble(String column, String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Column " + column + " must be a number: " + value);
+            }
+        }
+
+        private static int parseInt(String column, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Column " + column + " must be a whole number: " + value);
+            }
+        }
+    }
+}
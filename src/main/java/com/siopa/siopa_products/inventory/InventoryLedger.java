@@ -0,0 +1,530 @@
+package com.siopa.siopa_products.inventory;
+
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.dto.LedgerDelta;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.outbox.ProductOutbox;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stock counters for hot products, written behind to the {@code products} collection.
+ * <p>
+ * Enabled with {@code siopa.inventory.ledger.enabled=true} for the products listed in
+ * {@code siopa.inventory.ledger.products}. The stock of such a product is loaded once and then held in
+ * an {@link AtomicLong}; a decrement is approved or rejected with a compare-and-set, without touching
+ * the database. Approved decrements are appended to a {@link LedgerJournal} and acknowledged only once
+ * the journal has been forced to disk, so a crash cannot lose them. Every
+ * {@code siopa.inventory.ledger.flush-interval} the net decrement of each product is written to the
+ * database in one bulk write, stamped with the journal sequence number it is complete up to. On startup,
+ * journal entries newer than a product's stamp are replayed before any decrement is accepted.
+ * <p>
+ * Every instance numbers its journal with its own sequence, so when a product is loaded the sequence is
+ * first raised above the product's stamp, which may have been written by the instance that held the
+ * product before. A flush fails if a product that still exists did not take its change, so a stamp
+ * ahead of this ledger can never make it drop acknowledged decrements silently.
+ * <p>
+ * The ledger assumes it is the only writer of its products' stock. It relies on the order topic being
+ * keyed by product, and only holds a product while this instance is assigned the order topic partition
+ * the product's key maps to. It is registered as the order listener containers' rebalance listener: when
+ * a partition is revoked or lost, pending decrements are flushed and the partition's products released
+ * before the offsets are committed, so the next owner loads them from the database. Orders retried
+ * through the retry topics may be consumed by another instance and are then written to the database
+ * directly, bypassing the owner's counter until it next loads the product. Other writes to a managed
+ * product must go through {@link #release(String)} first. Catalog listings read from the database, so
+ * they lag the ledger by up to one flush interval.
+ * <p>
+ * Identified orders are applied at most once. Each product's counter remembers the identifiers of its
+ * last {@code siopa.kafka.order.dedupe.applied-window} orders, loaded from the product's applied-order
+ * history. Order identifiers are journaled with their decrements and written to that history by the
+ * flush that writes the decrements, and by the replay after a crash.
+ * <p>
+ * With the {@link ProductOutbox} enabled, each flush records one stock change event per product, carrying
+ * its stock after the write, in the same transaction as the write.
+ */
+@Component
+@ConditionalOnProperty(name = "siopa.inventory.ledger.enabled", havingValue = "true")
+public class InventoryLedger implements ConsumerAwareRebalanceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private final ProductRepository productRepository;
+    private final StoreCatalogSnapshots storeCatalogSnapshots;
+    private final ProductOutbox productOutbox;
+    private final Set<String> managedProducts;
+    private final Duration flushInterval;
+    private final Path journalDirectory;
+    private final int appliedWindow;
+    private final String orderTopic;
+
+    private final Set<Integer> assignedPartitions = ConcurrentHashMap.newKeySet();
+    private volatile int partitionCount;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Object journalLock = new Object();
+    private LedgerJournal journal;
+    // Guarded by journalLock.
+    private long seq;
+    // Guarded by this; the last cut whose write has not succeeded yet.
+    private List<LedgerDelta> unflushed;
+    private ScheduledExecutorService flusher;
+
+    public InventoryLedger(ProductRepository productRepository, StoreCatalogSnapshots storeCatalogSnapshots,
+                           ObjectProvider<ProductOutbox> productOutbox,
+                           @Value("${siopa.inventory.ledger.products:}") Set<String> managedProducts,
+                           @Value("${siopa.inventory.ledger.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${siopa.inventory.ledger.journal-dir:inventory-journal}") Path journalDirectory,
+                           @Value("${siopa.kafka.order.dedupe.applied-window:512}") int appliedWindow,
+                           @Value("${spring.kafka.topic.order}") String orderTopic) {
+        this.productRepository = productRepository;
+        this.storeCatalogSnapshots = storeCatalogSnapshots;
+        this.productOutbox = productOutbox.getIfAvailable();
+        this.managedProducts = Set.copyOf(managedProducts);
+        this.flushInterval = flushInterval;
+        this.journalDirectory = journalDirectory;
+        this.appliedWindow = appliedWindow;
+        this.orderTopic = orderTopic;
+    }
+
+    /**
+     * Replays the journal into the database, then starts the periodic flush.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        journal = new LedgerJournal(journalDirectory);
+        long journalSeq = replay();
+        synchronized (journalLock) {
+            seq = Math.max(journalSeq, productRepository.findMaxLedgerSeq());
+            journal.roll(seq + 1);
+        }
+        journal.deleteRolledSegments();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("inventory-ledger-"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        logger.info("Inventory ledger started for {} products, journal at {}, sequence {}",
+                managedProducts.size(), journalDirectory.toAbsolutePath(), seq);
+    }
+
+    /**
+     * @param productId the unique identifier of a product.
+     * @return whether the product's stock is held by the ledger: it is listed as a ledger product and this
+     * instance is assigned the order topic partition its orders are keyed to.
+     */
+    public boolean manages(String productId) {
+        int partitions = partitionCount;
+        return managedProducts.contains(productId) && partitions > 0
+                && assignedPartitions.contains(partitionOf(productId, partitions));
+    }
+
+    /**
+     * @param productId the unique identifier of a product.
+     * @return the product's stock in the ledger, if the ledger holds it and has loaded it.
+     */
+    public OptionalInt quantityOf(String productId) {
+        Entry entry = entries.get(productId);
+        if (entry == null || !manages(productId)) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(Math.toIntExact(entry.available.get()));
+    }
+
+    /**
+     * Removes stock from a managed product, at most once per identified order.
+     *
+     * @param productId the unique identifier of the product.
+     * @param amount the number of units to remove.
+     * @param orderId the identifier of the order, or {@code null} to apply it unconditionally.
+     * @return a copy of the product carrying the remaining stock; its current stock if the order was
+     * already applied.
+     * @throws ProductNotFoundException if the product does not exist.
+     * @throws InsufficientStockException if the product has less than {@code amount} in stock.
+     */
+    public Product reduce(String productId, int amount, String orderId) {
+        while (true) {
+            Entry entry = entries.computeIfAbsent(productId, this::load);
+            long current;
+            do {
+                current = entry.available.get();
+                if (current < amount) {
+                    synchronized (journalLock) {
+                        if (orderId != null && entry.appliedOrderIds.contains(orderId)) {
+                            return alreadyApplied(entry, orderId);
+                        }
+                    }
+                    throw new InsufficientStockException(productId);
+                }
+            } while (!entry.available.compareAndSet(current, current - amount));
+
+            LedgerJournal.Position position;
+            synchronized (journalLock) {
+                if (entry.retired) {
+                    entry.available.addAndGet(amount);
+                    continue;
+                }
+                if (orderId != null && entry.appliedOrderIds.contains(orderId)) {
+                    entry.available.addAndGet(amount);
+                    return alreadyApplied(entry, orderId);
+                }
+                try {
+                    position = journal.append(++seq, productId, amount, orderId);
+                } catch (IOException e) {
+                    entry.available.addAndGet(amount);
+                    throw new UncheckedIOException("Failed to journal stock decrement of " + productId, e);
+                }
+                entry.pending += amount;
+                if (orderId != null) {
+                    entry.pendingOrderIds.add(orderId);
+                    entry.remember(orderId, appliedWindow);
+                }
+            }
+            try {
+                journal.sync(position);
+            } catch (IOException e) {
+                // The decrement is already queued for the database, so it cannot be rolled back here.
+                throw new IllegalStateException("Failed to sync inventory journal; decrement of " + productId
+                        + " is pending but not durable", e);
+            }
+            return entry.withQuantity(current - amount);
+        }
+    }
+
+    /**
+     * Flushes and releases the products of order topic partitions that are being taken away from this
+     * instance, before their offsets are committed.
+     */
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        handOver(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        handOver(partitions);
+    }
+
+    /**
+     * Starts holding the products of order topic partitions assigned to this instance. Their stock is
+     * loaded from the database on their first decrement.
+     */
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Set<Integer> assigned = orderPartitions(partitions);
+        if (assigned.isEmpty()) {
+            return;
+        }
+        partitionCount = consumer.partitionsFor(orderTopic).size();
+        assignedPartitions.addAll(assigned);
+        logger.info("Inventory ledger holds products of {} partitions {}", orderTopic, assignedPartitions);
+    }
+
+    /**
+     * @return the partition the default partitioner assigns to records keyed by the product identifier.
+     */
+    static int partitionOf(String productId, int partitions) {
+        return Utils.toPositive(Utils.murmur2(productId.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+
+    /**
+     * Writes a product's pending decrements to the database and stops holding its stock in memory,
+     * so it can be written directly. The next decrement loads it again.
+     *
+     * @param productId the unique identifier of the product.
+     */
+    public synchronized void release(String productId) {
+        Entry entry = entries.get(productId);
+        if (entry == null) {
+            return;
+        }
+        synchronized (journalLock) {
+            entry.retired = true;
+        }
+        flush();
+        entries.remove(productId, entry);
+        logger.info("Released Product ID {} from the inventory ledger", productId);
+    }
+
+    /**
+     * Writes the net decrements since the last flush to the database.
+     * <p>
+     * A cut whose write fails is retried as it is on the next flush, before any new decrements are cut;
+     * the sequence stamp makes the retry idempotent.
+     *
+     * @throws org.springframework.dao.DataAccessException if the write fails.
+     */
+    public synchronized void flush() {
+        if (unflushed == null) {
+            synchronized (journalLock) {
+                long cut = seq;
+                List<LedgerDelta> deltas = new ArrayList<>();
+                entries.forEach((productId, entry) -> {
+                    if (entry.pending != 0) {
+                        deltas.add(new LedgerDelta(productId, entry.pending, cut, entry.pendingOrderIds));
+                        entry.pending = 0;
+                        entry.pendingOrderIds = new ArrayList<>();
+                    }
+                });
+                if (deltas.isEmpty()) {
+                    return;
+                }
+                try {
+                    journal.roll(cut + 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to roll inventory journal", e);
+                }
+                unflushed = deltas;
+            }
+        }
+
+        Set<String> storeIds = new HashSet<>();
+        for (LedgerDelta delta : unflushed) {
+            Entry entry = entries.get(delta.productId());
+            if (entry != null) {
+                storeIds.add(entry.product.getStoreId());
+            }
+        }
+        applyDeltas(unflushed);
+        storeIds.forEach(storeCatalogSnapshots::invalidate);
+        logger.debug("Flushed inventory ledger deltas of {} products", unflushed.size());
+        unflushed = null;
+        try {
+            journal.deleteRolledSegments();
+        } catch (IOException e) {
+            logger.warn("Failed to delete flushed inventory journal segments", e);
+        }
+    }
+
+    /**
+     * Stops the periodic flush and writes any remaining decrements. Whatever cannot be written stays in
+     * the journal and is replayed on the next start.
+     */
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+        journal.close();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Failed to flush inventory ledger, will retry", e);
+        }
+    }
+
+    /**
+     * Applies the journal entries that are newer than their product's ledger sequence number.
+     *
+     * @return the highest sequence number in the journal.
+     */
+    private long replay() throws IOException {
+        Map<String, List<LedgerJournal.Entry>> byProduct = new HashMap<>();
+        long maxSeq = journal.replay(entry ->
+                byProduct.computeIfAbsent(entry.productId(), id -> new ArrayList<>()).add(entry));
+        if (byProduct.isEmpty()) {
+            return maxSeq;
+        }
+
+        Map<String, Long> persistedSeqs = productRepository.findLedgerSeqs(byProduct.keySet());
+        List<LedgerDelta> deltas = new ArrayList<>();
+        byProduct.forEach((productId, journalEntries) -> {
+            long persisted = persistedSeqs.getOrDefault(productId, 0L);
+            long amount = 0;
+            long lastSeq = 0;
+            List<String> orderIds = new ArrayList<>();
+            for (LedgerJournal.Entry entry : journalEntries) {
+                if (entry.seq() > persisted) {
+                    amount += entry.amount();
+                    lastSeq = Math.max(lastSeq, entry.seq());
+                    if (entry.orderId() != null) {
+                        orderIds.add(entry.orderId());
+                    }
+                }
+            }
+            if (amount != 0) {
+                deltas.add(new LedgerDelta(productId, amount, lastSeq, orderIds));
+            }
+        });
+        applyDeltas(deltas);
+        logger.info("Replayed inventory journal: {} products had unflushed decrements", deltas.size());
+        return maxSeq;
+    }
+
+    /**
+     * Writes ledger deltas to the database, together with their stock change events when the outbox is
+     * enabled. The events carry the products as read back in the same transaction.
+     */
+    private void applyDeltas(List<LedgerDelta> deltas) {
+        if (productOutbox == null) {
+            writeDeltas(deltas);
+            return;
+        }
+        productOutbox.write(() -> {
+            writeDeltas(deltas);
+            return productRepository.findAllById(deltas.stream().map(LedgerDelta::productId).toList());
+        }, products -> products.stream()
+                .map(product -> ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product))
+                .toList());
+    }
+
+    /**
+     * Writes ledger deltas and checks that every product that still exists carries their stamp. A
+     * product stamped exactly at its delta's sequence number took the delta, now or on an earlier
+     * attempt of the same cut.
+     *
+     * @throws IllegalStateException if an existing product did not take its delta.
+     */
+    private void writeDeltas(List<LedgerDelta> deltas) {
+        if (productRepository.applyLedgerDeltas(deltas) == deltas.size()) {
+            return;
+        }
+        Set<String> productIds = new HashSet<>();
+        deltas.forEach(delta -> productIds.add(delta.productId()));
+        Map<String, Long> stamps = productRepository.findLedgerSeqs(productIds);
+        List<String> rejected = new ArrayList<>();
+        for (LedgerDelta delta : deltas) {
+            Long stamp = stamps.get(delta.productId());
+            if (stamp == null) {
+                logger.warn("Dropping inventory ledger delta of {} units for deleted Product ID {}",
+                        delta.amount(), delta.productId());
+            } else if (stamp != delta.seq()) {
+                rejected.add(delta.productId() + " (stamped " + stamp + ", delta " + delta.seq() + ")");
+            }
+        }
+        if (!rejected.isEmpty()) {
+            throw new IllegalStateException("Inventory ledger deltas were not applied to products " + rejected);
+        }
+    }
+
+    private Entry load(String productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+        if (product.getLedgerSeq() != null) {
+            // The product may have been stamped by another instance numbering its journal further ahead.
+            synchronized (journalLock) {
+                seq = Math.max(seq, product.getLedgerSeq());
+            }
+        }
+        logger.info("Loaded Product ID {} into the inventory ledger with quantity {}", productId, product.getQuantity());
+        Entry entry = new Entry(product);
+        if (product.getAppliedOrderIds() != null) {
+            product.getAppliedOrderIds().forEach(orderId -> entry.remember(orderId, appliedWindow));
+        }
+        return entry;
+    }
+
+    private Product alreadyApplied(Entry entry, String orderId) {
+        logger.info("Order {} was already applied to Product ID {} in the inventory ledger, skipping",
+                orderId, entry.product.getProductId());
+        return entry.withQuantity(entry.available.get());
+    }
+
+    private Set<Integer> orderPartitions(Collection<TopicPartition> partitions) {
+        Set<Integer> orderPartitions = new HashSet<>();
+        for (TopicPartition partition : partitions) {
+            if (partition.topic().equals(orderTopic)) {
+                orderPartitions.add(partition.partition());
+            }
+        }
+        return orderPartitions;
+    }
+
+    /**
+     * Stops holding the products of revoked or lost order topic partitions. Decrements that cannot be
+     * flushed stay in the journal and are replayed on the next start of this instance.
+     */
+    private void handOver(Collection<TopicPartition> partitions) {
+        Set<Integer> revoked = orderPartitions(partitions);
+        if (revoked.isEmpty()) {
+            return;
+        }
+        assignedPartitions.removeAll(revoked);
+        int count = partitionCount;
+        for (String productId : managedProducts) {
+            if (count > 0 && revoked.contains(partitionOf(productId, count))) {
+                try {
+                    release(productId);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to hand over Product ID {} from the inventory ledger", productId, e);
+                }
+            }
+        }
+        logger.info("Inventory ledger handed over products of {} partitions {}", orderTopic, revoked);
+    }
+
+    /**
+     * The in-memory stock of one product.
+     */
+    private static final class Entry {
+
+        // The product as loaded; only its quantity goes stale.
+        final Product product;
+        final AtomicLong available;
+        // Guarded by journalLock: identifiers of the last orders applied, oldest first.
+        final Set<String> appliedOrderIds = new LinkedHashSet<>();
+        // Guarded by journalLock: units and orders approved but not yet cut into a flush.
+        long pending;
+        List<String> pendingOrderIds = new ArrayList<>();
+        // Guarded by journalLock: set once the entry has been released.
+        boolean retired;
+
+        Entry(Product product) {
+            this.product = product;
+            this.available = new AtomicLong(product.getQuantity());
+        }
+
+        void remember(String orderId, int window) {
+            appliedOrderIds.add(orderId);
+            Iterator<String> oldest = appliedOrderIds.iterator();
+            while (appliedOrderIds.size() > window) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+
+        /**
+         * @return a copy of the product's API representation, carrying the given stock.
+         */
+        Product withQuantity(long quantity) {
+            return product.withQuantity(Math.toIntExact(quantity));
+        }
+    }
+}
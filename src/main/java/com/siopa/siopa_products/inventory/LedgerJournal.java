@@ -0,0 +1,223 @@
+package com.siopa.siopa_products.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented journal of the stock decrements approved by the {@link InventoryLedger}.
+ * <p>
+ * Each decrement is one line, {@code seq,productId,amount,@orderId,crc}, where the order identifier is
+ * Base64url-encoded, and empty for orders without one, and the CRC covers the rest of the line. Lines
+ * written before order identifiers were journaled, {@code seq,productId,amount,crc}, are still read. A new segment is started whenever the ledger cuts a flush, so segments that only hold flushed
+ * decrements can be deleted as a whole. Lines are written without forcing; {@link #sync(Position)} forces
+ * the segment to disk and is shared by concurrent callers (group commit): a caller whose line was
+ * already covered by another caller's force returns without forcing again.
+ * <p>
+ * A line that is torn or fails its CRC can only come from a write that was never synced, and so never
+ * acknowledged; it is skipped on replay.
+ */
+class LedgerJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerJournal.class);
+
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String ORDER_MARKER = "@";
+    private static final Base64.Encoder ORDER_ID_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder ORDER_ID_DECODER = Base64.getUrlDecoder();
+
+    /**
+     * A decrement read back from the journal.
+     */
+    record Entry(long seq, String productId, long amount, String orderId) {
+    }
+
+    private final Path directory;
+    private final Object syncLock = new Object();
+
+    // Guarded by this.
+    private FileChannel segment;
+    private Path segmentPath;
+    private long written;
+    // Guarded by syncLock.
+    private FileChannel syncedSegment;
+    private long synced;
+
+    LedgerJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Replays every entry of every segment, oldest first.
+     *
+     * @param sink receives the valid entries.
+     * @return the highest sequence number found, or {@code 0} if the journal is empty.
+     */
+    long replay(Consumer<Entry> sink) throws IOException {
+        long maxSeq = 0;
+        for (Path path : segments()) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Entry entry = parse(line);
+                    if (entry == null) {
+                        logger.warn("Skipping torn journal line in {}: {}", path.getFileName(), line);
+                        continue;
+                    }
+                    maxSeq = Math.max(maxSeq, entry.seq());
+                    sink.accept(entry);
+                }
+            }
+        }
+        return maxSeq;
+    }
+
+    /**
+     * Starts a new segment; later appends go to it. The ledger calls this while holding its journal
+     * lock, so no append can land in the old segment afterwards.
+     *
+     * @param firstSeq the sequence number of the first entry the segment will hold.
+     */
+    synchronized void roll(long firstSeq) throws IOException {
+        FileChannel previous = segment;
+        segmentPath = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        written = 0;
+        if (previous != null) {
+            previous.force(false);
+            previous.close();
+        }
+    }
+
+    /**
+     * Appends an entry to the current segment without forcing it to disk.
+     *
+     * @param orderId the identifier of the order the decrement belongs to, or {@code null}.
+     * @return a position to pass to {@link #sync(Position)}.
+     */
+    synchronized Position append(long seq, String productId, long amount, String orderId) throws IOException {
+        String body = seq + "," + productId + "," + amount + "," + ORDER_MARKER + (orderId == null ? ""
+                : ORDER_ID_ENCODER.encodeToString(orderId.getBytes(StandardCharsets.UTF_8)));
+        ByteBuffer line = ByteBuffer.wrap((body + "," + crc(body) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            written += segment.write(line);
+        }
+        return new Position(segment, written);
+    }
+
+    /**
+     * Forces the journal to disk up to at least the given position.
+     */
+    void sync(Position position) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSegment == position.segment() && synced >= position.offset()) {
+                return;
+            }
+            long target;
+            synchronized (this) {
+                target = segment == position.segment() ? written : position.offset();
+            }
+            try {
+                position.segment().force(false);
+            } catch (ClosedChannelException e) {
+                // Rolled since the append; roll() forced the old segment before closing it.
+                return;
+            }
+            syncedSegment = position.segment();
+            synced = target;
+        }
+    }
+
+    /**
+     * Deletes the segments that were rolled before the current one.
+     */
+    synchronized void deleteRolledSegments() throws IOException {
+        for (Path path : segments()) {
+            if (!path.equals(segmentPath)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force(false);
+            segment.close();
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private static Entry parse(String line) {
+        int crcStart = line.lastIndexOf(',');
+        if (crcStart < 0) {
+            return null;
+        }
+        String body = line.substring(0, crcStart);
+        String orderId = null;
+        int end = body.length();
+        int lastField = body.lastIndexOf(',');
+        if (lastField >= 0 && body.startsWith(ORDER_MARKER, lastField + 1)) {
+            end = lastField;
+        }
+        int productStart = body.indexOf(',');
+        int amountStart = body.lastIndexOf(',', end - 1);
+        if (productStart < 0 || amountStart <= productStart) {
+            return null;
+        }
+        try {
+            if (Long.parseLong(line.substring(crcStart + 1)) != crc(body)) {
+                return null;
+            }
+            if (end < body.length() && end + 1 + ORDER_MARKER.length() < body.length()) {
+                orderId = new String(ORDER_ID_DECODER.decode(body.substring(end + 1 + ORDER_MARKER.length())),
+                        StandardCharsets.UTF_8);
+            }
+            return new Entry(Long.parseLong(body.substring(0, productStart)),
+                    body.substring(productStart + 1, amountStart), Long.parseLong(body.substring(amountStart + 1, end)),
+                    orderId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long crc(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * The end of an appended entry within its segment.
+     */
+    record Position(FileChannel segment, long offset) {
+    }
+}
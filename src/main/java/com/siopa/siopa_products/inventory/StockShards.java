@@ -0,0 +1,299 @@
+package com.siopa.siopa_products.inventory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.InvalidShardCountException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.exceptions.StockShardingConflictException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductStockShard;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import com.siopa.siopa_products.repositories.ProductStockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stock of contended products split across several {@link ProductStockShard} documents.
+ * <p>
+ * Enabled with {@code siopa.inventory.shards.enabled=true}. A decrement starts at a random shard and
+ * moves on to the next one until a shard holds enough units, so concurrent decrements of one product
+ * spread over its shards instead of queueing on a single document. When no single shard can cover a
+ * decrement but the shards together can, the shards are rebalanced: each is drained, the decrement is
+ * taken from the drained units and the rest is spread evenly again.
+ * <p>
+ * Rebalancing debits the shards before crediting them back, so a crash in between loses the drained
+ * units from the stock; it never oversells. Decrements of the same product on this instance wait for a
+ * running rebalance, but decrements on other instances may fail with insufficient stock while it runs.
+ * Shard counts are cached for {@code siopa.inventory.shards.count-ttl}, so other instances pick up a
+ * product being sharded or merged back only after that long.
+ * <p>
+ * The product's own quantity keeps a copy of the shards' total so searches can filter and sort on it.
+ * Decrements leave it alone, or they would contend on the product document again; it is written when
+ * the stock is sharded, assigned or rebalanced, and when a decrement leaves the shards empty. In
+ * between it can be above the stock in hand.
+ * <p>
+ * An identified order is recorded on the shard it is taken from, in the same write, and a shard that
+ * recorded it is never decremented for it again. Callers check {@link #hasApplied} before a decrement,
+ * so a redelivered order is skipped whichever shard took it; only two deliveries of the same order
+ * racing each other can both be taken.
+ */
+@Component
+@ConditionalOnProperty(name = "siopa.inventory.shards.enabled", havingValue = "true")
+public class StockShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockShards.class);
+
+    private static final int MAX_SHARDING_ATTEMPTS = 5;
+
+    private final ProductRepository productRepository;
+    private final ProductStockShardRepository shardRepository;
+    private final int maxShards;
+    private final LoadingCache<String, Integer> shardCounts;
+    private final Cache<String, Object> rebalanceLocks = Caffeine.newBuilder()
+            .weakValues()
+            .build();
+
+    public StockShards(ProductRepository productRepository, ProductStockShardRepository shardRepository,
+                       @Value("${siopa.inventory.shards.max-count:64}") int maxShards,
+                       @Value("${siopa.inventory.shards.count-ttl:10s}") Duration countTtl) {
+        this.productRepository = productRepository;
+        this.shardRepository = shardRepository;
+        this.maxShards = maxShards;
+        this.shardCounts = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(countTtl)
+                .build(productId -> productRepository.findById(productId)
+                        .map(Product::getStockShards)
+                        .orElse(0));
+    }
+
+    /**
+     * @param productId the unique identifier of a product.
+     * @return whether the product's stock is split across shards.
+     */
+    public boolean manages(String productId) {
+        return shardCounts.get(productId) > 0;
+    }
+
+    /**
+     * Removes stock from a sharded product.
+     *
+     * @param productId the unique identifier of the product.
+     * @param amount the number of units to remove.
+     * @param orderId the identifier of the order, or {@code null} to apply it unconditionally.
+     * @return the total stock left in the shards, or empty if the product is not sharded after all and
+     * must be decremented directly.
+     * @throws InsufficientStockException if the shards together hold less than {@code amount}.
+     */
+    public OptionalInt reduce(String productId, int amount, String orderId) {
+        int shards = shardCounts.get(productId);
+        if (shards == 0) {
+            return OptionalInt.empty();
+        }
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        if (takeFromAny(productId, shards, start, amount, orderId)) {
+            return OptionalInt.of(remaining(productId));
+        }
+
+        synchronized (rebalanceLock(productId)) {
+            // Another caller may have rebalanced the shards while this one waited.
+            if (takeFromAny(productId, shards, start, amount, orderId)) {
+                return OptionalInt.of(remaining(productId));
+            }
+            OptionalInt rebalanced = rebalance(productId, shards, amount, orderId);
+            if (rebalanced.isPresent()) {
+                return rebalanced;
+            }
+        }
+
+        shardCounts.invalidate(productId);
+        int currentShards = shardCounts.get(productId);
+        if (currentShards != shards) {
+            logger.info("Stock shards of Product ID {} changed from {} to {}, retrying", productId, shards, currentShards);
+            return reduce(productId, amount, orderId);
+        }
+        logger.error("Insufficient sharded stock for Product ID: {}. Requested: {}", productId, amount);
+        throw new InsufficientStockException(productId);
+    }
+
+    /**
+     * @param productId the unique identifier of a sharded product.
+     * @param orderId the identifier of an order.
+     * @return whether the order was already taken from one of the product's shards.
+     */
+    public boolean hasApplied(String productId, String orderId) {
+        return shardRepository.hasAppliedOrder(productId, orderId);
+    }
+
+    /**
+     * Splits a product's stock across the given number of shards, or merges it back into the product
+     * when {@code shards} is {@code 0}. A product that is already sharded is merged back first.
+     *
+     * @param productId the unique identifier of the product.
+     * @param shards the number of shards, or {@code 0} to stop sharding.
+     * @throws InvalidShardCountException if {@code shards} is negative or above {@code siopa.inventory.shards.max-count}.
+     * @throws ProductNotFoundException if the product does not exist.
+     * @throws StockShardingConflictException if the product's quantity kept changing while it was split.
+     */
+    public void reshard(String productId, int shards) {
+        if (shards < 0 || shards > maxShards) {
+            throw new InvalidShardCountException(shards, maxShards);
+        }
+        synchronized (rebalanceLock(productId)) {
+            try {
+                Product product = findProduct(productId);
+                if (product.getStockShards() != null) {
+                    int drained = drainAll(productId, product.getStockShards());
+                    productRepository.unmarkStockSharded(productId, drained);
+                    shardRepository.deleteByProductId(productId);
+                    logger.info("Merged {} units of Product ID {} back from {} shards", drained, productId,
+                            product.getStockShards());
+                }
+                if (shards == 0) {
+                    return;
+                }
+
+                for (int attempt = 0; attempt < MAX_SHARDING_ATTEMPTS; attempt++) {
+                    int quantity = findProduct(productId).getQuantity();
+                    spread(productId, shards, quantity);
+                    if (productRepository.markStockSharded(productId, quantity, shards)) {
+                        logger.info("Split {} units of Product ID {} across {} shards", quantity, productId, shards);
+                        return;
+                    }
+                    shardRepository.deleteByProductId(productId);
+                }
+                throw new StockShardingConflictException(productId);
+            } finally {
+                shardCounts.invalidate(productId);
+            }
+        }
+    }
+
+    /**
+     * Sets the total stock of a sharded product, spreading it evenly across its shards.
+     *
+     * @param productId the unique identifier of the product.
+     * @param shards the number of shards of the product.
+     * @param quantity the new total stock.
+     */
+    public void assign(String productId, int shards, int quantity) {
+        synchronized (rebalanceLock(productId)) {
+            drainAll(productId, shards);
+            spread(productId, shards, quantity);
+            productRepository.setShardedQuantity(productId, quantity);
+        }
+    }
+
+    /**
+     * Deletes the shards of a product that was replaced or deleted, discarding their stock.
+     *
+     * @param productId the unique identifier of the product.
+     */
+    public void discard(String productId) {
+        shardRepository.deleteByProductId(productId);
+        shardCounts.invalidate(productId);
+    }
+
+    /**
+     * Deletes the shards of several products that were replaced, discarding their stock.
+     *
+     * @param productIds the unique identifiers of the products.
+     */
+    public void discardAll(Collection<String> productIds) {
+        shardRepository.deleteByProductIdIn(productIds);
+        shardCounts.invalidateAll(productIds);
+    }
+
+    /**
+     * @param productIds the unique identifiers of sharded products.
+     * @return the total stock of each product that has shards, keyed by product identifier.
+     */
+    public Map<String, Integer> totals(Collection<String> productIds) {
+        return shardRepository.sumQuantities(productIds);
+    }
+
+    private int total(String productId) {
+        return totals(List.of(productId)).getOrDefault(productId, 0);
+    }
+
+    /**
+     * @return the total stock left after a decrement, copied to the product once the shards are empty.
+     */
+    private int remaining(String productId) {
+        int total = total(productId);
+        if (total == 0) {
+            productRepository.setShardedQuantity(productId, 0);
+        }
+        return total;
+    }
+
+    private boolean takeFromAny(String productId, int shards, int start, int amount, String orderId) {
+        for (int i = 0; i < shards; i++) {
+            if (shardRepository.takeFromShard(productId, (start + i) % shards, amount, orderId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drains every shard, takes the decrement out of the drained units and spreads the rest evenly.
+     *
+     * @return the total stock left in the shards, or empty if the decrement was not taken.
+     */
+    private OptionalInt rebalance(String productId, int shards, int amount, String orderId) {
+        if (total(productId) < amount) {
+            return OptionalInt.empty();
+        }
+        int drained = drainAll(productId, shards);
+        boolean taken = drained >= amount;
+        int remaining = taken ? drained - amount : drained;
+        spread(productId, shards, remaining);
+        productRepository.setShardedQuantity(productId, remaining);
+        logger.debug("Rebalanced {} units of Product ID {} across {} shards", drained, productId, shards);
+        if (!taken) {
+            return OptionalInt.empty();
+        }
+        if (orderId != null) {
+            // Taking no units records the order on the first shard.
+            shardRepository.takeFromShard(productId, 0, 0, orderId);
+        }
+        return OptionalInt.of(remaining);
+    }
+
+    private int drainAll(String productId, int shards) {
+        int drained = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            drained += shardRepository.drainShard(productId, shard);
+        }
+        return drained;
+    }
+
+    private void spread(String productId, int shards, int quantity) {
+        for (int shard = 0; shard < shards; shard++) {
+            int share = quantity / shards + (shard < quantity % shards ? 1 : 0);
+            shardRepository.addToShard(productId, shard, share);
+        }
+    }
+
+    private Product findProduct(String productId) {
+        return productRepository.findById(productId).orElseThrow(() -> new ProductNotFoundException(productId));
+    }
+
+    private Object rebalanceLock(String productId) {
+        // Weakly held, so the lock of a product is dropped once no caller holds or waits on it.
+        return rebalanceLocks.get(productId, id -> new Object());
+    }
+}
@@ -0,0 +1,138 @@
+package com.siopa.siopa_products.kafka;
+
+import com.siopa.siopa_products.dto.StockReductionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics shared by the order consumers, whichever consumption mode is active.
+ * <p>
+ * Orders that are not applied are counted in {@code siopa.orders.failed}, tagged with a {@code reason}
+ * of {@code insufficient_stock}, {@code not_found} or {@code parse_error}. {@code siopa.orders.lag}
+ * reports how long the most recently processed record waited between being produced and being
+ * processed. Redelivered orders skipped by the consumer are counted in {@code siopa.orders.duplicates},
+ * and orders sent to the dead-letter topic in {@code siopa.orders.dead_lettered}, tagged with their
+ * {@code reason}. All meters carry the consumption {@code mode}.
+ */
+@Component
+public class OrderConsumerMetrics {
+
+    private static final String FAILED_METRIC = "siopa.orders.failed";
+
+    private final Counter insufficientStock;
+    private final Counter notFound;
+    private final Counter parseErrors;
+    private final Counter duplicates;
+    private final Map<String, Counter> deadLettered = new ConcurrentHashMap<>();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final String mode;
+    private final Clock clock;
+
+    public OrderConsumerMetrics(MeterRegistry meterRegistry,
+                                @Value("${siopa.kafka.order.mode:single}") String mode) {
+        this(meterRegistry, mode, Clock.systemUTC());
+    }
+
+    OrderConsumerMetrics(MeterRegistry meterRegistry, String mode, Clock clock) {
+        this.meterRegistry = meterRegistry;
+        this.mode = mode;
+        this.clock = clock;
+        this.insufficientStock = failureCounter(meterRegistry, mode, "insufficient_stock");
+        this.notFound = failureCounter(meterRegistry, mode, "not_found");
+        this.parseErrors = failureCounter(meterRegistry, mode, "parse_error");
+        this.duplicates = Counter.builder("siopa.orders.duplicates")
+                .description("Redelivered order messages that were skipped")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        Gauge.builder("siopa.orders.lag", lagMillis, AtomicLong::get)
+                .description("Time between an order record being produced and being processed")
+                .baseUnit("milliseconds")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the processing lag of a record from its producer timestamp.
+     *
+     * @param record the record being processed; ignored if it carries no timestamp.
+     */
+    public void recordLag(ConsumerRecord<?, ?> record) {
+        if (record.timestamp() >= 0) {
+            lagMillis.set(Math.max(0, clock.millis() - record.timestamp()));
+        }
+    }
+
+    /**
+     * Counts an order whose product did not have enough stock.
+     */
+    public void recordInsufficientStock() {
+        insufficientStock.increment();
+    }
+
+    /**
+     * Counts an order for a product that does not exist.
+     */
+    public void recordNotFound() {
+        notFound.increment();
+    }
+
+    /**
+     * Counts an order message that could not be parsed.
+     */
+    public void recordParseError() {
+        parseErrors.increment();
+    }
+
+    /**
+     * Counts a redelivered order that was skipped.
+     */
+    public void recordDuplicate() {
+        duplicates.increment();
+    }
+
+    /**
+     * Counts an order sent to the dead-letter topic.
+     *
+     * @param reason the dead-letter reason, see {@link OrderDeadLetters}.
+     */
+    public void recordDeadLetter(String reason) {
+        deadLettered.computeIfAbsent(reason, key -> Counter.builder("siopa.orders.dead_lettered")
+                        .description("Order messages sent to the dead-letter topic")
+                        .tag("mode", mode)
+                        .tag("reason", key)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Counts the outcome of an order that was not applied.
+     *
+     * @param outcome the outcome of the order; {@code APPLIED} is not counted.
+     */
+    public void recordOutcome(StockReductionResult.Outcome outcome) {
+        switch (outcome) {
+            case INSUFFICIENT_STOCK -> recordInsufficientStock();
+            case NOT_FOUND -> recordNotFound();
+            case APPLIED -> {
+            }
+        }
+    }
+
+    private static Counter failureCounter(MeterRegistry meterRegistry, String mode, String reason) {
+        return Counter.builder(FAILED_METRIC)
+                .description("Order messages that were not applied to the inventory")
+                .tag("mode", mode)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
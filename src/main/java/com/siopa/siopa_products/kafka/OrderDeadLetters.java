@@ -0,0 +1,116 @@
+package com.siopa.siopa_products.kafka;
+
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes order records that can never be applied to the order dead-letter topic,
+ * {@code <order topic>-dlt}.
+ * <p>
+ * The single-record consumer reaches the topic through its retry topics; the batch and parallel
+ * consumers publish here directly, and through their container's error handler once the retries of an
+ * unexpected failure are used up. Either way a dead letter keeps the original key, value and headers
+ * and carries the standard {@code kafka_dlt-*} headers plus a {@value #REASON_HEADER} header holding
+ * one of {@code parse_error}, {@code not_found}, {@code insufficient_stock} or {@code retries_exhausted}.
+ */
+@Component
+public class OrderDeadLetters {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderDeadLetters.class);
+
+    /**
+     * Header carrying the reason a record was dead-lettered.
+     */
+    public static final String REASON_HEADER = "siopa-dlt-reason";
+
+    public static final String PARSE_ERROR = "parse_error";
+    public static final String NOT_FOUND = "not_found";
+    public static final String INSUFFICIENT_STOCK = "insufficient_stock";
+    public static final String RETRIES_EXHAUSTED = "retries_exhausted";
+
+    /**
+     * Suffix of the dead-letter topic after the order topic, shared with the retry topic configuration.
+     */
+    public static final String TOPIC_SUFFIX = "-dlt";
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final OrderConsumerMetrics metrics;
+    private final String topic;
+
+    public OrderDeadLetters(@Qualifier("orderKafkaTemplate") KafkaTemplate<String, byte[]> kafkaTemplate,
+                            OrderConsumerMetrics metrics,
+                            @Value("${spring.kafka.topic.order}") String orderTopic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.topic = orderTopic + TOPIC_SUFFIX;
+    }
+
+    /**
+     * Publishes a record to the dead-letter topic.
+     *
+     * @param record the record that cannot be applied.
+     * @param reason the reason, one of the constants of this class.
+     * @param message a description of the failure.
+     * @return completes once the broker has acknowledged the dead letter; the record's offset must not be
+     * committed before then.
+     */
+    public CompletableFuture<Void> publish(ConsumerRecord<String, byte[]> record, String reason, String message) {
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        headers.add(REASON_HEADER, reason.getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, record.topic().getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(record.partition()).array());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(record.offset()).array());
+
+        metrics.recordDeadLetter(reason);
+        logger.warn("Dead-lettering order at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), reason);
+        return kafkaTemplate.send(new ProducerRecord<>(topic, null, record.key(), record.value(), headers))
+                .thenAccept(result -> { });
+    }
+
+    /**
+     * Classifies a failure into a dead-letter reason, looking through wrapping exceptions.
+     *
+     * @param failure the exception a record failed with.
+     * @return the dead-letter reason; {@value #RETRIES_EXHAUSTED} for failures that were retryable.
+     */
+    public static String reasonOf(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OrderMessageParseException) {
+                return PARSE_ERROR;
+            }
+            if (cause instanceof ProductNotFoundException) {
+                return NOT_FOUND;
+            }
+            if (cause instanceof InsufficientStockException) {
+                return INSUFFICIENT_STOCK;
+            }
+        }
+        return RETRIES_EXHAUSTED;
+    }
+
+    /**
+     * @param record a dead-lettered record.
+     * @return the reason it was dead-lettered, or {@value #RETRIES_EXHAUSTED} if it carries none.
+     */
+    public static String reasonOf(ConsumerRecord<?, ?> record) {
+        Header reason = record.headers().lastHeader(REASON_HEADER);
+        return reason == null ? RETRIES_EXHAUSTED : new String(reason.value(), StandardCharsets.UTF_8);
+    }
+}
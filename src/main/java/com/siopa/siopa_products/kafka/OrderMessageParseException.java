@@ -0,0 +1,12 @@
+package com.siopa.siopa_products.kafka;
+
+/**
+ * Thrown when an order record's value is not a valid order message. Retrying such a record can never
+ * succeed, so it goes straight to the dead-letter topic.
+ */
+public class OrderMessageParseException extends RuntimeException {
+
+    public OrderMessageParseException(Throwable cause) {
+        super("Failed to parse product order message", cause);
+    }
+}
@@ -0,0 +1,117 @@
+package com.siopa.siopa_products.kafka;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses order messages straight from the raw record bytes with a streaming parser.
+ * <p>
+ * The payload is never decoded into an intermediate {@code String}, and no data-binding machinery is
+ * involved, so a message costs one small parser and, in single-record mode, no new holder. Fields
+ * other than {@code productId}, {@code quantity} and {@code orderId} are skipped. Scalars are coerced
+ * as the {@link ObjectMapper} would: a numeric {@code productId} is read as text, and a quoted or
+ * integral floating-point {@code quantity}, such as {@code 2.0}, as a number. Unlike the
+ * {@link ObjectMapper}, a fractional {@code quantity} is rejected rather than truncated.
+ */
+@Component
+public class OrderMessageParser {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final JsonFactory jsonFactory;
+
+    public OrderMessageParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Parses an order message into a new holder.
+     *
+     * @param payload the UTF-8 JSON payload of the record.
+     * @return the parsed message.
+     * @throws IOException if the payload is not a valid order message.
+     */
+    public ProductOrderMessage parse(byte[] payload) throws IOException {
+        return parse(payload, new ProductOrderMessage());
+    }
+
+    /**
+     * Parses an order message into an existing holder, resetting fields the payload does not set.
+     *
+     * @param payload the UTF-8 JSON payload of the record.
+     * @param target the holder to fill.
+     * @return {@code target}.
+     * @throws IOException if the payload is not a valid order message.
+     */
+    public ProductOrderMessage parse(byte[] payload, ProductOrderMessage target) throws IOException {
+        target.setProductId(null);
+        target.setQuantity(0);
+        target.setOrderId(null);
+        try (JsonParser parser = jsonFactory.createParser(payload == null ? EMPTY : payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an order message object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "productId" -> target.setProductId(readText(parser, value, "productId"));
+                    case "orderId" -> target.setOrderId(readText(parser, value, "orderId"));
+                    case "quantity" -> target.setQuantity(readQuantity(parser, value));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Decodes a payload for logging.
+     *
+     * @param payload the raw record value, possibly {@code null}.
+     * @return the payload as UTF-8 text.
+     */
+    public static String toText(byte[] payload) {
+        return payload == null ? "null" : new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static String readText(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!value.isScalarValue()) {
+            throw new JsonParseException(parser, field + " must be a scalar value");
+        }
+        return parser.getText();
+    }
+
+    private static int readQuantity(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NUMBER_INT -> parser.getIntValue();
+            case VALUE_NUMBER_FLOAT -> {
+                double quantity = parser.getDoubleValue();
+                if (quantity != Math.rint(quantity) || quantity < Integer.MIN_VALUE || quantity > Integer.MAX_VALUE) {
+                    throw new JsonParseException(parser, "quantity is not an integer: " + parser.getText());
+                }
+                yield (int) quantity;
+            }
+            case VALUE_NULL -> 0;
+            case VALUE_STRING -> {
+                try {
+                    yield Integer.parseInt(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "quantity is not an integer: " + parser.getText());
+                }
+            }
+            default -> throw new JsonParseException(parser, "quantity must be an integer");
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.siopa.siopa_products.kafka;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded, expiring set of the order identifiers this consumer has already processed.
+ * <p>
+ * Lets redeliveries after a rebalance or retry be skipped without a database call. It is only a fast
+ * path: it remembers orders processed by this instance since it started, so orders first processed
+ * elsewhere, or before a restart, are caught by the applied-order window on the product document,
+ * sized by {@code siopa.kafka.order.dedupe.applied-window}, instead.
+ */
+@Component
+public class ProcessedOrderIds {
+
+    private final Cache<String, Boolean> orderIds;
+
+    public ProcessedOrderIds(@Value("${siopa.kafka.order.dedupe.max-size:100000}") long maxSize,
+                             @Value("${siopa.kafka.order.dedupe.ttl:1h}") Duration ttl) {
+        this.orderIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * @param orderId the identifier of an order, possibly {@code null}.
+     * @return whether the order has been processed; always {@code false} for orders without an identifier.
+     */
+    public boolean contains(String orderId) {
+        return orderId != null && orderIds.getIfPresent(orderId) != null;
+    }
+
+    /**
+     * Remembers that an order has been processed.
+     *
+     * @param orderId the identifier of the order; ignored if {@code null}.
+     */
+    public void add(String orderId) {
+        if (orderId != null) {
+            orderIds.put(orderId, Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.siopa.siopa_products.kafka;
+
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.dto.StockReductionResult;
+import com.siopa.siopa_products.services.ProductService;
+import io.micrometer.core.annotation.Timed;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Kafka Consumer that processes product order messages a poll at a time.
+ * <p>
+ * Enabled with {@code siopa.kafka.order.mode=batch}. Each poll is applied to the inventory with one
+ * bulk write instead of a database round trip per message. The batch size is bounded by
+ * {@code siopa.kafka.order.batch.max-records}, and the broker waits up to
+ * {@code siopa.kafka.order.batch.linger-ms} for {@code siopa.kafka.order.batch.min-bytes} to accumulate.
+ * <p>
+ * Records that can never be applied are published to the dead-letter topic by {@link OrderDeadLetters}.
+ * Any other failure fails the whole poll, which is then redelivered with exponential back-off; orders of
+ * it that were already applied are skipped by their {@code orderId}. Once the retries are used up the
+ * records of the poll are dead-lettered by the container, see
+ * {@link com.siopa.siopa_products.config.OrderRetryTopicConfig#orderBatchContainerFactory}.
+ */
+@Service
+@ConditionalOnProperty(name = "siopa.kafka.order.mode", havingValue = "batch")
+public class ProductBatchConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductBatchConsumer.class);
+
+    private final ProductService productService;
+    private final OrderMessageParser orderMessageParser;
+    private final OrderConsumerMetrics metrics;
+    private final ProcessedOrderIds processedOrderIds;
+    private final OrderDeadLetters deadLetters;
+
+    public ProductBatchConsumer(ProductService productService, OrderMessageParser orderMessageParser,
+                                OrderConsumerMetrics metrics, ProcessedOrderIds processedOrderIds,
+                                OrderDeadLetters deadLetters) {
+        this.productService = productService;
+        this.orderMessageParser = orderMessageParser;
+        this.metrics = metrics;
+        this.processedOrderIds = processedOrderIds;
+        this.deadLetters = deadLetters;
+    }
+
+    /**
+     * Listens for batches of Kafka messages containing product ID and quantity in JSON format.
+     * <p>
+     * Records that cannot be parsed, or whose order cannot be applied, are logged with their
+     * partition and offset and dead-lettered, and do not prevent the rest of the batch from being
+     * applied. The listener returns once the dead letters are acknowledged. Orders whose
+     * {@code orderId} was already processed, by an earlier poll or earlier in the same poll, are skipped.
+     *
+     * @param records the records returned by a single poll
+     */
+    @KafkaListener(topics = "${spring.kafka.topic.order}", groupId = "product-group", batch = "true",
+            containerFactory = "orderBatchContainerFactory",
+            properties = {
+                    "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer",
+                    "max.poll.records=${siopa.kafka.order.batch.max-records:500}",
+                    "fetch.max.wait.ms=${siopa.kafka.order.batch.linger-ms:100}",
+                    "fetch.min.bytes=${siopa.kafka.order.batch.min-bytes:65536}"
+            })
+    @Timed(value = "siopa.orders.consume", histogram = true)
+    public void consumeOrders(List<ConsumerRecord<String, byte[]>> records) {
+        logger.info("Consuming batch of {} Kafka messages", records.size());
+        if (!records.isEmpty()) {
+            metrics.recordLag(records.get(records.size() - 1));
+        }
+
+        List<ProductOrderMessage> orders = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, byte[]>> orderRecords = new ArrayList<>(records.size());
+        Set<String> batchOrderIds = new HashSet<>();
+        List<CompletableFuture<Void>> published = new ArrayList<>();
+        int skipped = 0;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                ProductOrderMessage order = orderMessageParser.parse(record.value());
+                String orderId = order.getOrderId();
+                if (processedOrderIds.contains(orderId) || (orderId != null && !batchOrderIds.add(orderId))) {
+                    metrics.recordDuplicate();
+                    skipped++;
+                    logger.info("Skipping redelivered order {} at {}-{}@{}",
+                            orderId, record.topic(), record.partition(), record.offset());
+                    continue;
+                }
+                orders.add(order);
+                orderRecords.add(record);
+            } catch (IOException e) {
+                metrics.recordParseError();
+                logger.error("Failed to parse product order message at {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(),
+                        OrderMessageParser.toText(record.value()), e);
+                published.add(deadLetters.publish(record, OrderDeadLetters.PARSE_ERROR, e.getMessage()));
+            }
+        }
+        if (orders.isEmpty()) {
+            awaitDeadLetters(published);
+            return;
+        }
+
+        List<StockReductionResult> results = productService.reduceProductQuantities(orders);
+        int applied = 0;
+        for (int i = 0; i < results.size(); i++) {
+            StockReductionResult result = results.get(i);
+            if (result.isApplied()) {
+                processedOrderIds.add(result.getOrder().getOrderId());
+                applied++;
+                continue;
+            }
+            metrics.recordOutcome(result.getOutcome());
+            ConsumerRecord<String, byte[]> record = orderRecords.get(i);
+            logger.error("Order at {}-{}@{} for productId {} was not applied: {}",
+                    record.topic(), record.partition(), record.offset(),
+                    result.getOrder().getProductId(), result.getOutcome());
+            published.add(deadLetters.publish(record, reasonOf(result.getOutcome()),
+                    "Order for productId " + result.getOrder().getProductId() + " was not applied: " + result.getOutcome()));
+        }
+        awaitDeadLetters(published);
+        logger.info("Processed batch of {} order messages: {} applied, {} skipped, {} failed",
+                records.size(), applied, skipped, records.size() - applied - skipped);
+    }
+
+    /**
+     * Waits for the dead letters of the poll, failing it if any could not be published.
+     */
+    private static void awaitDeadLetters(List<CompletableFuture<Void>> published) {
+        CompletableFuture.allOf(published.toArray(new CompletableFuture[0])).join();
+    }
+
+    private static String reasonOf(StockReductionResult.Outcome outcome) {
+        return outcome == StockReductionResult.Outcome.NOT_FOUND
+                ? OrderDeadLetters.NOT_FOUND
+                : OrderDeadLetters.INSUFFICIENT_STOCK;
+    }
+}
@@ -1,48 +1,119 @@
 package com.siopa.siopa_products.kafka;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
 import com.siopa.siopa_products.services.ProductService;
+import io.micrometer.core.annotation.Timed;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+
 /**
  * Kafka Consumer that listens for product order messages and updates inventory.
+ * <p>
+ * This is the default record-at-a-time mode ({@code siopa.kafka.order.mode=single}). Records are read as
+ * raw bytes and parsed by {@link OrderMessageParser} into a holder reused by each listener thread.
+ * Payloads are only logged at DEBUG, or when they cannot be parsed.
+ * <p>
+ * Orders carrying an {@code orderId} are applied at most once: redeliveries of orders this instance
+ * has already applied are skipped from memory, and any others are stopped by the applied-order guard
+ * on the product.
+ * <p>
+ * A failed record does not hold up its partition. Orders that can never succeed (unparseable messages,
+ * unknown products and insufficient stock) go straight to the dead-letter topic; any other failure is
+ * retried from delayed retry topics with exponential back-off, configured by
+ * {@code siopa.kafka.order.retry.*}, and dead-lettered once the attempts are used up.
  */
 @Service
+@ConditionalOnProperty(name = "siopa.kafka.order.mode", havingValue = "single", matchIfMissing = true)
 public class ProductConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductConsumer.class);
 
     private final ProductService productService;
-    private final ObjectMapper objectMapper;
+    private final OrderMessageParser orderMessageParser;
+    private final OrderConsumerMetrics metrics;
+    private final ProcessedOrderIds processedOrderIds;
+    private final ThreadLocal<ProductOrderMessage> holder = ThreadLocal.withInitial(ProductOrderMessage::new);
 
-    public ProductConsumer(ProductService productService, ObjectMapper objectMapper) {
+    public ProductConsumer(ProductService productService, OrderMessageParser orderMessageParser,
+                           OrderConsumerMetrics metrics, ProcessedOrderIds processedOrderIds) {
         this.productService = productService;
-        this.objectMapper = objectMapper;
+        this.orderMessageParser = orderMessageParser;
+        this.metrics = metrics;
+        this.processedOrderIds = processedOrderIds;
     }
 
     /**
      * Listens for Kafka messages containing product ID and quantity in JSON format.
      *
-     * @param message the JSON message containing product ID and quantity
+     * @param record the record whose value is the JSON message containing product ID and quantity
      */
-    @KafkaListener(topics = "${spring.kafka.topic.order}", groupId = "product-group")
-    public void consumeOrder(String message) {
-        logger.info("Consuming Kafka Message: {}", message);
+    @KafkaListener(topics = "${spring.kafka.topic.order}", groupId = "product-group",
+            properties = "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer")
+    @RetryableTopic(
+            attempts = "${siopa.kafka.order.retry.attempts:4}",
+            backoff = @Backoff(
+                    delayExpression = "${siopa.kafka.order.retry.initial-delay:1000}",
+                    multiplierExpression = "${siopa.kafka.order.retry.multiplier:2.0}",
+                    maxDelayExpression = "${siopa.kafka.order.retry.max-delay:30000}"),
+            exclude = {OrderMessageParseException.class, ProductNotFoundException.class,
+                    InsufficientStockException.class},
+            dltTopicSuffix = OrderDeadLetters.TOPIC_SUFFIX,
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            kafkaTemplate = "orderKafkaTemplate")
+    @Timed(value = "siopa.orders.consume", histogram = true)
+    public void consumeOrder(ConsumerRecord<String, byte[]> record) {
+        byte[] message = record.value();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Consuming Kafka Message: {}", OrderMessageParser.toText(message));
+        }
+        metrics.recordLag(record);
         try {
-            ProductOrderMessage orderMessage = objectMapper.readValue(message, ProductOrderMessage.class);
-            logger.debug("Parsed ProductOrderMessage: productId={}, quantity={}",
-                    orderMessage.getProductId(), orderMessage.getQuantity());
-            productService.reduceProductQuantity(orderMessage.getProductId(), orderMessage.getQuantity());
-            logger.info("Updated inventory for productId {} after consuming order message",
+            ProductOrderMessage orderMessage = orderMessageParser.parse(message, holder.get());
+            if (processedOrderIds.contains(orderMessage.getOrderId())) {
+                metrics.recordDuplicate();
+                logger.info("Skipping redelivered order {} for productId {}",
+                        orderMessage.getOrderId(), orderMessage.getProductId());
+                return;
+            }
+            productService.reduceProductQuantity(orderMessage.getProductId(), orderMessage.getQuantity(),
+                    orderMessage.getOrderId());
+            processedOrderIds.add(orderMessage.getOrderId());
+            logger.debug("Updated inventory for productId {} after consuming order message",
                     orderMessage.getProductId());
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to parse product order message: {}", message, e);
-            throw new RuntimeException("Failed to parse product order message", e);
+        } catch (ProductNotFoundException e) {
+            metrics.recordNotFound();
+            throw e;
+        } catch (InsufficientStockException e) {
+            metrics.recordInsufficientStock();
+            throw e;
+        } catch (IOException e) {
+            metrics.recordParseError();
+            logger.error("Failed to parse product order message: {}", OrderMessageParser.toText(message), e);
+            throw new OrderMessageParseException(e);
         }
     }
+
+    /**
+     * Logs and counts an order that was sent to the dead-letter topic.
+     *
+     * @param record the dead-lettered record
+     */
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, byte[]> record) {
+        String reason = OrderDeadLetters.reasonOf(record);
+        metrics.recordDeadLetter(reason);
+        logger.error("Order message was dead-lettered ({}): {}", reason, OrderMessageParser.toText(record.value()));
+    }
 }
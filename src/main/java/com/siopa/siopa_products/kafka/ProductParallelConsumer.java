@@ -0,0 +1,176 @@
+package com.siopa.siopa_products.kafka;
+
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.services.ProductService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Kafka Consumer that processes the records of a poll concurrently while keeping per-product ordering.
+ * <p>
+ * Enabled with {@code siopa.kafka.order.mode=parallel}. Records are routed to one of
+ * {@code siopa.kafka.order.parallel.concurrency} single-threaded lanes by the hash of their
+ * {@code productId}, so orders for the same product are always applied one after another, in offset
+ * order, while orders for different products run in parallel.
+ * <p>
+ * The listener only returns once every record of the poll has finished, so the container never commits
+ * an offset ahead of unfinished work. If a record fails with an unexpected error, only the contiguous
+ * prefix of records before it, all of which have finished, is committed and the poll is redelivered
+ * from that record onwards, with exponential back-off. Later records of the same product are not run,
+ * so they are applied after it on redelivery. Records of other products that had already been applied
+ * are then skipped by their {@code orderId}. Once the retries are used up the failed record is
+ * dead-lettered by the container, see
+ * {@link com.siopa.siopa_products.config.OrderRetryTopicConfig#orderBatchContainerFactory}.
+ * <p>
+ * Those records past the committed offset are only skipped by this instance while it remembers them in
+ * {@link ProcessedOrderIds}. If the poll is redelivered after a restart, a rebalance or a switch to
+ * another {@code siopa.kafka.order.mode}, they are caught by the applied-order window on the product
+ * document instead, so {@code siopa.kafka.order.dedupe.applied-window} must be at least
+ * {@code siopa.kafka.order.parallel.max-records}; orders without an {@code orderId} are applied again.
+ * <p>
+ * Records that can never be applied are published to the dead-letter topic by {@link OrderDeadLetters},
+ * and count as finished once the broker has acknowledged them.
+ */
+@Service
+@ConditionalOnProperty(name = "siopa.kafka.order.mode", havingValue = "parallel")
+public class ProductParallelConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductParallelConsumer.class);
+
+    private final ProductService productService;
+    private final OrderMessageParser orderMessageParser;
+    private final OrderConsumerMetrics metrics;
+    private final ProcessedOrderIds processedOrderIds;
+    private final OrderDeadLetters deadLetters;
+    private final ExecutorService[] lanes;
+
+    public ProductParallelConsumer(ProductService productService, OrderMessageParser orderMessageParser,
+                                   OrderConsumerMetrics metrics, ProcessedOrderIds processedOrderIds,
+                                   OrderDeadLetters deadLetters,
+                                   @Value("${siopa.kafka.order.parallel.concurrency:16}") int concurrency) {
+        this.productService = productService;
+        this.orderMessageParser = orderMessageParser;
+        this.metrics = metrics;
+        this.processedOrderIds = processedOrderIds;
+        this.deadLetters = deadLetters;
+        this.lanes = new ExecutorService[concurrency];
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("order-lane-");
+        for (int i = 0; i < concurrency; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    /**
+     * Listens for batches of Kafka messages containing product ID and quantity in JSON format and
+     * fans them out to the worker lanes.
+     *
+     * @param records the records returned by a single poll
+     */
+    @KafkaListener(topics = "${spring.kafka.topic.order}", groupId = "product-group", batch = "true",
+            containerFactory = "orderBatchContainerFactory",
+            properties = {
+                    "value.deserializer=org.apache.kafka.common.serialization.ByteArrayDeserializer",
+                    "max.poll.records=${siopa.kafka.order.parallel.max-records:500}"
+            })
+    @Timed(value = "siopa.orders.consume", histogram = true)
+    public void consumeOrders(List<ConsumerRecord<String, byte[]>> records) {
+        logger.info("Consuming batch of {} Kafka messages across {} lanes", records.size(), lanes.length);
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(records.size());
+        Map<String, CompletableFuture<Void>> lastByProduct = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            ProductOrderMessage orderMessage;
+            try {
+                orderMessage = orderMessageParser.parse(record.value());
+            } catch (IOException e) {
+                metrics.recordParseError();
+                logger.error("Failed to parse product order message at {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(),
+                        OrderMessageParser.toText(record.value()), e);
+                pending.add(deadLetters.publish(record, OrderDeadLetters.PARSE_ERROR, e.getMessage()));
+                continue;
+            }
+            // Chained on the product's previous record, so a failure stops its later records from running.
+            Runnable task = () -> applyOrder(record, orderMessage);
+            ExecutorService lane = laneFor(orderMessage.getProductId());
+            CompletableFuture<Void> previous = lastByProduct.get(orderMessage.getProductId());
+            CompletableFuture<Void> future = previous == null
+                    ? CompletableFuture.runAsync(task, lane)
+                    : previous.thenRunAsync(task, lane);
+            lastByProduct.put(orderMessage.getProductId(), future);
+            pending.add(future);
+        }
+
+        // Joined in offset order, so the failed index is the first unfinished record and every record
+        // before it has been applied.
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                pending.get(i).join();
+            } catch (CompletionException e) {
+                // Let the remaining lanes drain before handing the failure back to the container.
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(ex -> null).join();
+                throw new BatchListenerFailedException("Failed to apply product order message", e.getCause(), i);
+            }
+        }
+    }
+
+    /**
+     * Reduces the stock for a single order. Business failures are logged and dead-lettered and do not
+     * fail the poll.
+     */
+    private void applyOrder(ConsumerRecord<String, byte[]> record, ProductOrderMessage orderMessage) {
+        metrics.recordLag(record);
+        if (processedOrderIds.contains(orderMessage.getOrderId())) {
+            metrics.recordDuplicate();
+            logger.info("Skipping redelivered order {} at {}-{}@{}",
+                    orderMessage.getOrderId(), record.topic(), record.partition(), record.offset());
+            return;
+        }
+        try {
+            productService.reduceProductQuantity(orderMessage.getProductId(), orderMessage.getQuantity(),
+                    orderMessage.getOrderId());
+            processedOrderIds.add(orderMessage.getOrderId());
+        } catch (ProductNotFoundException | InsufficientStockException e) {
+            if (e instanceof ProductNotFoundException) {
+                metrics.recordNotFound();
+            } else {
+                metrics.recordInsufficientStock();
+            }
+            logger.error("Order at {}-{}@{} for productId {} was not applied: {}",
+                    record.topic(), record.partition(), record.offset(), orderMessage.getProductId(), e.getMessage());
+            deadLetters.publish(record, OrderDeadLetters.reasonOf(e), e.getMessage()).join();
+        }
+    }
+
+    private ExecutorService laneFor(String productId) {
+        return lanes[Math.floorMod(productId == null ? 0 : productId.hashCode(), lanes.length)];
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.siopa.siopa_products.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.List;
 import java.util.Map;
 
 /**
  * Represents a product entity stored in the MongoDB database.
+ * <p>
+ * The {@code storeId_category} index also serves queries on {@code storeId} alone, so no separate
+ * single-field index is declared for it.
  */
 @Data
 @Document(collection = "products")
-public class Product {
+@CompoundIndexes({
+        @CompoundIndex(name = "storeId_category", def = "{'storeId': 1, 'category': 1}"),
+        @CompoundIndex(name = "category_price_id", def = "{'category': 1, 'price': 1, '_id': 1}")
+})
+public class Product implements ProductListing {
 
     /**
      * Unique identifier for the product.
@@ -53,4 +64,67 @@ public class Product {
      * Additional attributes of the product as key-value pairs.
      */
     private Map<String, Object> attributes;
+
+    /**
+     * Identifiers of the most recent orders applied to the stock, used to skip redelivered orders.
+     * Maintained by the stock decrement queries; not part of the API representation.
+     */
+    @JsonIgnore
+    private List<String> appliedOrderIds;
+
+    /**
+     * Markers of the last few bulk decrements applied to the stock, used by a bulk decrement to read
+     * back which of its updates matched. Kept apart from {@link #appliedOrderIds} so they take no room
+     * in the redelivery window; not part of the API representation.
+     */
+    @JsonIgnore
+    private List<String> bulkDecrementIds;
+
+    /**
+     * Sequence number of the last inventory ledger flush applied to the stock, used to make
+     * journal replay idempotent. Only set for products managed by the ledger.
+     */
+    @JsonIgnore
+    private Long ledgerSeq;
+
+    /**
+     * Number of {@link ProductStockShard stock shards} the stock is split across, or {@code null} if it is
+     * kept in {@link #quantity}. While set, the stored quantity is only a copy of the shards' total for
+     * searches, and reads fill it in with the sum of the shards.
+     */
+    @JsonIgnore
+    private Integer stockShards;
+
+    /**
+     * Version of the product, incremented by every write that records a {@link ProductChangeEvent} in
+     * the same update, so the events of one product can be ordered. Not part of the API representation.
+     */
+    @JsonIgnore
+    private Long eventSeq;
+
+    /**
+     * @return the event sequence number of the product after its next recorded write.
+     */
+    public long nextEventSeq() {
+        return eventSeq == null ? 1 : eventSeq + 1;
+    }
+
+    /**
+     * @param quantity the stock of the copy.
+     * @return a copy of the fields of the product's API representation and its stock shard count,
+     * carrying the given stock.
+     */
+    public Product withQuantity(int quantity) {
+        Product copy = new Product();
+        copy.setProductId(productId);
+        copy.setStoreId(storeId);
+        copy.setName(name);
+        copy.setPrice(price);
+        copy.setDescription(description);
+        copy.setCategory(category);
+        copy.setAttributes(attributes);
+        copy.setStockShards(stockShards);
+        copy.setQuantity(quantity);
+        return copy;
+    }
 }
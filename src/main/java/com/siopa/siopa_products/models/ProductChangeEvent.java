@@ -0,0 +1,79 @@
+package com.siopa.siopa_products.models;
+
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A change to a product, recorded in the {@code product_outbox} collection and published to Kafka by
+ * the outbox relay. Every event carries the product's state after the change, versioned by {@link #seq}.
+ * <p>
+ * The {@code productId_seq} index serves the relay's look-up of the events that precede a batch.
+ */
+@Data
+@Document(collection = "product_outbox")
+@CompoundIndex(name = "productId_seq", def = "{'productId': 1, 'seq': 1}")
+public class ProductChangeEvent {
+
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED, STOCK_CHANGED
+    }
+
+    /**
+     * Unique identifier of the event; ordered by creation time on the instance that recorded it.
+     */
+    @Id
+    private String eventId;
+
+    private Type type;
+
+    private String productId;
+
+    private String storeId;
+
+    /**
+     * The {@link Product#getEventSeq() event sequence number} of the product after the change, which
+     * orders the events of one product. Decrements of sharded stock increment it on the product document
+     * for their event.
+     */
+    private Long seq;
+
+    /**
+     * The product's price after the change, if known.
+     */
+    private Double price;
+
+    /**
+     * The product's stock after the change, if known.
+     */
+    private Integer quantity;
+
+    private Instant occurredAt;
+
+    /**
+     * @param type the kind of change.
+     * @param product the product after the change.
+     * @return an event carrying the product's new state.
+     */
+    public static ProductChangeEvent of(Type type, Product product) {
+        ProductChangeEvent event = new ProductChangeEvent();
+        event.setEventId(new ObjectId().toHexString());
+        event.setType(type);
+        event.setProductId(product.getProductId());
+        event.setStoreId(product.getStoreId());
+        event.setSeq(product.getEventSeq());
+        if (type != Type.DELETED) {
+            event.setPrice(product.getPrice());
+            event.setQuantity(product.getQuantity());
+        }
+        event.setOccurredAt(Instant.now());
+        return event;
+    }
+}
@@ -0,0 +1,21 @@
+package com.siopa.siopa_products.models;
+
+/**
+ * The properties shared by {@link Product} and {@link com.siopa.siopa_products.dto.ProductSummary} that
+ * listings page on and fill in from the stock shards.
+ */
+public interface ProductListing {
+
+    String getProductId();
+
+    double getPrice();
+
+    int getQuantity();
+
+    void setQuantity(int quantity);
+
+    /**
+     * @return the number of stock shards, or {@code null} if the stock is not sharded.
+     */
+    Integer getStockShards();
+}
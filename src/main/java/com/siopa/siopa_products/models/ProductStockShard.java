@@ -0,0 +1,57 @@
+package com.siopa.siopa_products.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * One slice of a sharded product's stock, stored in the MongoDB database.
+ * <p>
+ * A product whose {@link Product#getStockShards() stockShards} is set keeps its stock in that many
+ * shard documents instead of its own {@code quantity}, so concurrent decrements of the product land on
+ * different documents. The shard identifier is derived from the product identifier and the shard
+ * number, so a shard is addressed without a lookup.
+ */
+@Data
+@Document(collection = "product_stock_shards")
+public class ProductStockShard {
+
+    /**
+     * Unique identifier of the shard, see {@link #idOf(String, int)}.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Identifier of the product the stock belongs to.
+     */
+    @Indexed
+    private String productId;
+
+    /**
+     * Number of the shard, from {@code 0} to the product's shard count minus one.
+     */
+    private int shard;
+
+    /**
+     * Quantity of the product held by this shard.
+     */
+    private int quantity;
+
+    /**
+     * Identifiers of the most recent orders taken from this shard, used to skip redelivered orders.
+     */
+    private List<String> appliedOrderIds;
+
+    /**
+     * @param productId the unique identifier of the product.
+     * @param shard the number of the shard.
+     * @return the identifier of the shard document.
+     */
+    public static String idOf(String productId, int shard) {
+        return productId + ":" + shard;
+    }
+}
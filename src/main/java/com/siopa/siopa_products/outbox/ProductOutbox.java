@@ -0,0 +1,175 @@
+package com.siopa.siopa_products.outbox;
+
+import com.mongodb.MongoException;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records product change events in the {@code product_outbox} collection in the same transaction as
+ * the change, for the {@link ProductOutboxRelay} to publish.
+ * <p>
+ * Enabled with {@code siopa.outbox.enabled=true}; needs a replica set for transactions. Transactions
+ * aborted by a write conflict with a concurrent one, as concurrent stock decrements of one product
+ * are, are retried after a short random back-off for up to {@code siopa.outbox.retry-timeout}, so the
+ * write passed to {@link #write(Supplier, Function)} must only consist of database operations.
+ */
+@Component
+@ConditionalOnProperty(name = "siopa.outbox.enabled", havingValue = "true")
+public class ProductOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductOutbox.class);
+
+    /**
+     * Upper bound of the random back-off before a retry, which doubles from one millisecond.
+     */
+    static final long MAX_BACKOFF_MILLIS = 64;
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long retryTimeoutNanos;
+
+    public ProductOutbox(MongoTemplate mongoTemplate, MongoTransactionManager transactionManager,
+                         @Value("${siopa.outbox.retry-timeout:5s}") Duration retryTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryTimeoutNanos = retryTimeout.toNanos();
+    }
+
+    /**
+     * Performs a write and records the events describing it in one transaction.
+     * <p>
+     * Joins the surrounding transaction if there is one.
+     *
+     * @param write the database write; its exceptions roll the transaction back and are rethrown.
+     * @param events the events describing the write's result; may be empty.
+     * @return the write's result.
+     * @throws DataAccessException if the write fails, or still conflicts once the retry timeout elapsed.
+     */
+    public <T> T write(Supplier<T> write, Function<? super T, List<ProductChangeEvent>> events) {
+        long deadline = System.nanoTime() + retryTimeoutNanos;
+        long backoffMillis = 1;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    T result = write.get();
+                    insert(events.apply(result));
+                    return result;
+                });
+            } catch (DataAccessException e) {
+                if (!isTransient(e) || System.nanoTime() - deadline >= 0) {
+                    throw e;
+                }
+                logger.debug("Outbox transaction aborted by a transient error, retrying (attempt {})", attempt, e);
+                backOff(backoffMillis, e);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Performs a bulk write whose items can fail one by one, and records the events of the items
+     * written in the same transaction.
+     * <p>
+     * A failed item aborts the whole transaction, so the write is run again without the items that
+     * failed until it goes through without failures; only then are its events recorded.
+     *
+     * @param items the items to write.
+     * @param bulkWrite writes the given items, returning the failures keyed by index into them.
+     * @param events the events describing the given written items.
+     * @return the failures, keyed by index into {@code items}.
+     */
+    public <T> Map<Integer, String> writeEach(List<T> items, Function<List<T>, Map<Integer, String>> bulkWrite,
+                                              Function<List<T>, List<ProductChangeEvent>> events) {
+        Map<Integer, String> failures = new HashMap<>();
+        List<Integer> remaining = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            remaining.add(i);
+        }
+        while (!remaining.isEmpty()) {
+            List<T> attempt = remaining.stream().map(items::get).toList();
+            try {
+                write(() -> {
+                    Map<Integer, String> failed = bulkWrite.apply(attempt);
+                    if (!failed.isEmpty()) {
+                        throw new ItemsFailedException(failed);
+                    }
+                    return attempt;
+                }, events);
+                return failures;
+            } catch (ItemsFailedException e) {
+                List<Integer> retried = new ArrayList<>(remaining.size() - e.failures.size());
+                for (int i = 0; i < remaining.size(); i++) {
+                    String failure = e.failures.get(i);
+                    if (failure == null) {
+                        retried.add(remaining.get(i));
+                    } else {
+                        failures.put(remaining.get(i), failure);
+                    }
+                }
+                logger.debug("Outbox bulk write rolled back for {} failed items, retrying {} items",
+                        e.failures.size(), retried.size());
+                remaining = retried;
+            }
+        }
+        return failures;
+    }
+
+    private void insert(List<ProductChangeEvent> events) {
+        if (!events.isEmpty()) {
+            mongoTemplate.insert(events, ProductChangeEvent.class);
+        }
+    }
+
+    private static void backOff(long backoffMillis, DataAccessException cause) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * @return whether the exception was caused by a transaction the server aborted and that can be
+     * run again as a whole.
+     */
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException
+                    && mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rolls back a bulk write that had failed items, carrying their failures.
+     */
+    private static final class ItemsFailedException extends RuntimeException {
+
+        private final transient Map<Integer, String> failures;
+
+        ItemsFailedException(Map<Integer, String> failures) {
+            super(failures.size() + " items failed", null, false, false);
+            this.failures = failures;
+        }
+    }
+}
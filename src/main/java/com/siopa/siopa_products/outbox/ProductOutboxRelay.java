@@ -0,0 +1,243 @@
+package com.siopa.siopa_products.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the events recorded by the {@link ProductOutbox} to {@code siopa.outbox.topic}.
+ * <p>
+ * Every {@code siopa.outbox.poll-interval} the instance holding the relay lease reads the oldest
+ * {@code siopa.outbox.batch-size} events, sends them all keyed by product identifier, flushes the
+ * producer once and deletes the events when every send has been acknowledged. The lease, a document in
+ * {@value #LEASE_COLLECTION} renewed before each batch, ensures a single instance relays at a time.
+ * <p>
+ * Keying by product keeps each product's events in one partition, where they are sent in the order of
+ * their {@link ProductChangeEvent#getSeq() sequence number} rather than of their identifiers, which come
+ * from the clocks of the instances that recorded them. A full batch is completed with the pending events
+ * that precede one of its events in its product's sequence. An event commits in the same transaction as
+ * its product's write, so an event is never recorded after a later one of the same product.
+ * <p>
+ * Delivery is at least once: a batch that fails part-way is sent again, so consumers should
+ * deduplicate by {@code eventId}.
+ */
+@Component
+@ConditionalOnProperty(name = "siopa.outbox.enabled", havingValue = "true")
+public class ProductOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductOutboxRelay.class);
+
+    static final String LEASE_COLLECTION = "product_outbox_lease";
+    static final String LEASE_ID = "relay";
+
+    /**
+     * Sends each product's events in sequence order. Events without a sequence number keep the order
+     * of their identifiers, ahead of the others.
+     */
+    private static final Comparator<ProductChangeEvent> SEND_ORDER = Comparator
+            .comparing(ProductChangeEvent::getSeq, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ProductChangeEvent::getEventId);
+
+    private final MongoTemplate mongoTemplate;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String topic;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lease;
+    private final Counter published;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile boolean leader;
+    private ScheduledExecutorService relayer;
+
+    public ProductOutboxRelay(MongoTemplate mongoTemplate,
+                              @Qualifier("outboxKafkaTemplate") KafkaTemplate<String, byte[]> kafkaTemplate,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${siopa.outbox.topic:product-changes}") String topic,
+                              @Value("${siopa.outbox.batch-size:500}") int batchSize,
+                              @Value("${siopa.outbox.poll-interval:200ms}") Duration pollInterval,
+                              @Value("${siopa.outbox.lease:10s}") Duration lease) {
+        this.mongoTemplate = mongoTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        this.published = Counter.builder("siopa.outbox.published")
+                .description("Product change events published from the outbox")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        relayer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("outbox-relay-"));
+        relayer.scheduleWithFixedDelay(this::relayQuietly, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        logger.info("Outbox relay started as {}, publishing to {}", instanceId, topic);
+    }
+
+    /**
+     * Stops relaying and gives up the lease so another instance can take over straight away.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        relayer.shutdown();
+        relayer.awaitTermination(10, TimeUnit.SECONDS);
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(LEASE_ID).and("owner").is(instanceId)),
+                LEASE_COLLECTION);
+    }
+
+    /**
+     * Publishes pending events, batch by batch, for as long as this instance holds the lease and full
+     * batches remain.
+     *
+     * @return the number of events published.
+     * @throws IllegalStateException if a batch could not be published; it stays in the outbox.
+     */
+    public int relay() {
+        int total = 0;
+        while (acquireLease()) {
+            int sent = publishBatch();
+            total += sent;
+            if (sent < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int publishBatch() {
+        List<ProductChangeEvent> events = new ArrayList<>(mongoTemplate.find(
+                new Query().with(Sort.by("eventId")).limit(batchSize), ProductChangeEvent.class));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        if (events.size() == batchSize) {
+            events.addAll(findEarlierEvents(events));
+        }
+        events.sort(SEND_ORDER);
+
+        List<CompletableFuture<?>> sends = new ArrayList<>(events.size());
+        List<String> eventIds = new ArrayList<>(events.size());
+        for (ProductChangeEvent event : events) {
+            sends.add(kafkaTemplate.send(topic, event.getProductId(), serialize(event)));
+            eventIds.add(event.getEventId());
+        }
+        kafkaTemplate.flush();
+        try {
+            // Bounded by half the lease, so a stalled send cannot outlive it.
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(lease.toMillis() / 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing outbox events", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to publish " + events.size() + " outbox events", e);
+        }
+
+        mongoTemplate.remove(new Query(Criteria.where("eventId").in(eventIds)), ProductChangeEvent.class);
+        published.increment(events.size());
+        logger.debug("Published {} outbox events", events.size());
+        return events.size();
+    }
+
+    /**
+     * Finds the pending events that were left out of a batch read in identifier order but precede one
+     * of its events in its product's sequence.
+     */
+    private List<ProductChangeEvent> findEarlierEvents(List<ProductChangeEvent> batch) {
+        Map<String, Long> lastSeqs = new HashMap<>();
+        for (ProductChangeEvent event : batch) {
+            if (event.getSeq() != null) {
+                lastSeqs.merge(event.getProductId(), event.getSeq(), Math::max);
+            }
+        }
+        if (lastSeqs.isEmpty()) {
+            return List.of();
+        }
+        List<Criteria> earlier = new ArrayList<>(lastSeqs.size());
+        lastSeqs.forEach((productId, seq) ->
+                earlier.add(Criteria.where("productId").is(productId).and("seq").lt(seq)));
+        String lastEventId = batch.get(batch.size() - 1).getEventId();
+        return mongoTemplate.find(new Query(Criteria.where("eventId").gt(lastEventId).orOperator(earlier)),
+                ProductChangeEvent.class);
+    }
+
+    /**
+     * Takes or renews the relay lease.
+     *
+     * @return whether this instance holds the lease.
+     */
+    boolean acquireLease() {
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("_id").is(LEASE_ID).orOperator(
+                Criteria.where("owner").is(instanceId),
+                Criteria.where("expiresAt").lt(Date.from(now))));
+        Update update = new Update().set("owner", instanceId).set("expiresAt", Date.from(now.plus(lease)));
+        boolean held;
+        try {
+            // Upserting an expired or missing lease; a live lease of another instance fails on the _id.
+            mongoTemplate.upsert(query, update, LEASE_COLLECTION);
+            held = true;
+        } catch (DuplicateKeyException e) {
+            held = false;
+        }
+        if (held != leader) {
+            logger.info(held ? "Acquired the outbox relay lease" : "Lost the outbox relay lease");
+            leader = held;
+        }
+        return held;
+    }
+
+    private byte[] serialize(ProductChangeEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize outbox event " + event.getEventId(), e);
+        }
+    }
+
+    private void relayQuietly() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            logger.error("Failed to relay outbox events, will retry", e);
+        }
+    }
+}
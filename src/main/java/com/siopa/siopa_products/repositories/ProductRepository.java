@@ -5,12 +5,13 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for performing CRUD operations on the {@link Product} collection in MongoDB.
  */
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
 
     /**
      * Finds all products associated with a specific store.
@@ -19,4 +20,13 @@ public interface ProductRepository extends MongoRepository<Product, String> {
      * @return a list of products belonging to the specified store.
      */
     List<Product> findByStoreId(String storeId);
+
+    /**
+     * Finds a product if the given order is among the orders recently applied to its stock.
+     *
+     * @param productId the unique identifier of the product.
+     * @param appliedOrderId the identifier of the order.
+     * @return the product, or empty if it does not exist or has no record of the order.
+     */
+    Optional<Product> findByProductIdAndAppliedOrderIds(String productId, String appliedOrderId);
 }
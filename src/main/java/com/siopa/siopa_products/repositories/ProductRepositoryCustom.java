@@ -0,0 +1,248 @@
+package com.siopa.siopa_products.repositories;
+
+import com.siopa.siopa_products.dto.LedgerDelta;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.models.Product;
+import org.bson.Document;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/**
+ * Custom repository operations on the {@link Product} collection that cannot be expressed as derived queries.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Atomically decrements the stock of a product, but only if enough units are available.
+     * <p>
+     * Runs as a single {@code findAndModify} guarded by {@code quantity >= amount}, so concurrent
+     * decrements of the same product can never drive the stock below zero.
+     * <p>
+     * When an order identifier is given, the decrement is also guarded by the order not being among the
+     * product's recently applied orders, and records it there in the same write. A redelivered order
+     * then matches nothing and leaves the stock untouched.
+     * <p>
+     * The same write increments the product's {@link Product#getEventSeq() event sequence number}. Only
+     * matches products whose stock is not sharded, since a sharded product's quantity is only a copy of
+     * its shards' total.
+     *
+     * @param productId the unique identifier of the product.
+     * @param amount the number of units to remove from stock.
+     * @param orderId the identifier of the order, or {@code null} if the order cannot be deduplicated.
+     * @return the product after the decrement, or empty if the product does not exist, has sharded or
+     * insufficient stock or has already applied the order.
+     */
+    Optional<Product> decrementQuantityIfAvailable(String productId, int amount, String orderId);
+
+    /**
+     * Applies several guarded stock decrements in one unordered bulk write.
+     * <p>
+     * Each entry is applied independently with the same guards as
+     * {@link #decrementQuantityIfAvailable(String, int, String)}; entries whose product is missing, sharded,
+     * out of stock or has already applied any of the entry's orders are left untouched.
+     *
+     * @param decrements the number of units to remove, keyed by product identifier.
+     * @param orderIds the identifiers of the orders merged into each decrement, keyed by product identifier;
+     *                 products without an entry are not deduplicated.
+     * @return the products whose decrement was applied, read back after the write with only their store,
+     * price, quantity and event sequence number; a product written again in the meantime is read as it
+     * is after that write.
+     */
+    List<Product> bulkDecrementQuantities(Map<String, Integer> decrements, Map<String, List<String>> orderIds);
+
+    /**
+     * Applies stock changes written behind by the inventory ledger in one unordered bulk write.
+     * <p>
+     * Each change is only applied if the product's {@code ledgerSeq} is below the change's sequence
+     * number, and sets it to that number, so applying the same changes again has no effect. The order
+     * identifiers of a change are appended to the product's applied-order history, and its event sequence
+     * number incremented, in the same write.
+     *
+     * @param deltas the changes to apply.
+     * @return the number of products the write matched; fewer than {@code deltas} if some changes were
+     * already applied, or were not applied because their product is gone or stamped at or above them.
+     * @throws org.springframework.dao.DataAccessException if the write fails; retrying it is safe.
+     */
+    long applyLedgerDeltas(Collection<LedgerDelta> deltas);
+
+    /**
+     * Reads the ledger sequence numbers of the given products.
+     *
+     * @param productIds the unique identifiers of the products.
+     * @return the {@code ledgerSeq} of each product, or {@code 0} if it has none, keyed by product identifier.
+     */
+    Map<String, Long> findLedgerSeqs(Collection<String> productIds);
+
+    /**
+     * @return the highest {@code ledgerSeq} of any product, or {@code 0} if no product has one.
+     */
+    long findMaxLedgerSeq();
+
+    /**
+     * Applies field changes to a product in a single {@code $set}/{@code $unset}, without reading it first.
+     * <p>
+     * A change of {@code quantity} only matches products whose stock is not sharded, since a sharded
+     * product's stock does not live in its quantity. A nested path only matches products in which every
+     * field it runs through is missing or an object, so the patch cannot fail on the product's shape.
+     * The update also increments the product's event sequence number.
+     *
+     * @param productId the unique identifier of the product.
+     * @param set the values to set, keyed by field path.
+     * @param unset the field paths to remove.
+     * @return the product as it was before the update, or empty if no product matched.
+     */
+    Optional<Product> patchFields(String productId, Map<String, Object> set, Collection<String> unset);
+
+    /**
+     * Sets the stock of a product in a single {@code $set}, without reading it first, and increments its
+     * event sequence number. Only matches products whose stock is not sharded.
+     *
+     * @param productId the unique identifier of the product.
+     * @param quantity the new quantity.
+     * @return the product after the update, or empty if no product matched.
+     */
+    Optional<Product> setQuantity(String productId, int quantity);
+
+    /**
+     * Increments the event sequence number of a product whose change is written elsewhere, such as to
+     * its stock shards.
+     *
+     * @param productId the unique identifier of the product.
+     * @return the product's event sequence number after the increment, or empty if it does not exist.
+     */
+    OptionalLong nextEventSeq(String productId);
+
+    /**
+     * Marks a product's stock as split across stock shards, but only if the product is not sharded yet
+     * and its quantity is still the one the shards were filled from. The quantity is kept as the shards'
+     * total.
+     *
+     * @param productId the unique identifier of the product.
+     * @param expectedQuantity the quantity moved into the shards.
+     * @param shards the number of shards.
+     * @return whether the product was marked; {@code false} if it changed since it was read.
+     */
+    boolean markStockSharded(String productId, int expectedQuantity, int shards);
+
+    /**
+     * Sets a product's own quantity to the stock drained from its shards and clears its shard count.
+     *
+     * @param productId the unique identifier of the product.
+     * @param quantity the number of units drained from the shards.
+     */
+    void unmarkStockSharded(String productId, int quantity);
+
+    /**
+     * Stores the total stock of a sharded product in its quantity, so searches can filter and sort on
+     * it. Only matches products whose stock is sharded.
+     *
+     * @param productId the unique identifier of the product.
+     * @param quantity the total stock of the product's shards.
+     */
+    void setShardedQuantity(String productId, int quantity);
+
+    /**
+     * Deletes a product and returns it in the same round trip.
+     *
+     * @param productId the unique identifier of the product.
+     * @return the deleted product, or empty if it did not exist.
+     */
+    Optional<Product> findAndRemoveById(String productId);
+
+    /**
+     * Finds the products that follow the given product in identifier order.
+     *
+     * @param afterProductId the identifier of the last product already seen, or {@code null} to start from the beginning.
+     * @param limit the maximum number of products to return.
+     * @param resultType {@link Product} or {@link ProductSummary}; summaries only read their own fields.
+     * @param <T> the type of the results.
+     * @return up to {@code limit} products with an identifier greater than {@code afterProductId}, in identifier order.
+     */
+    <T> List<T> findPageAfter(String afterProductId, int limit, Class<T> resultType);
+
+    /**
+     * Finds the summaries of all products, reading only the summary fields.
+     *
+     * @return the summaries of all products.
+     */
+    List<ProductSummary> findAllSummaries();
+
+    /**
+     * Finds the summaries of a store's products, reading only the summary fields.
+     *
+     * @param storeId the unique identifier of the store.
+     * @return the summaries of the store's products.
+     */
+    List<ProductSummary> findSummariesByStoreId(String storeId);
+
+    /**
+     * Streams every product straight from a database cursor.
+     * <p>
+     * The returned stream holds an open cursor and must be closed by the caller.
+     *
+     * @return a stream over all products.
+     */
+    Stream<Product> streamAll();
+
+    /**
+     * Streams the raw documents of a store's products, or of all products, straight from a database
+     * cursor, reading only the given fields.
+     * <p>
+     * The documents are not mapped to {@link Product}s; the product identifier is in {@code _id}. The
+     * returned stream holds an open cursor and must be closed by the caller.
+     *
+     * @param storeId the unique identifier of the store, or {@code null} for all products.
+     * @param fields the document fields to read; {@code _id} is only read if listed.
+     * @return a stream over the matching documents.
+     */
+    Stream<Document> streamDocuments(String storeId, Collection<String> fields);
+
+    /**
+     * Inserts products with one unordered bulk write. Products must already carry their identifiers.
+     *
+     * @param products the products to insert.
+     * @return the write error of each product that could not be inserted, keyed by its position in {@code products}.
+     */
+    Map<Integer, String> bulkInsert(List<Product> products);
+
+    /**
+     * Updates existing products with one unordered bulk write, matching them by identifier. Only the
+     * fields of a product request and the event sequence number are set, so the stock bookkeeping of
+     * each product, such as its applied-order history and ledger stamp, is kept. Stock shards are
+     * dropped, as the request sets the quantity.
+     *
+     * @param products the new state of the products.
+     * @return the write error of each product that could not be updated, keyed by its position in {@code products}.
+     */
+    Map<Integer, String> bulkUpdate(List<Product> products);
+
+    /**
+     * Looks up which of the given products exist, reading only their store identifiers and event
+     * sequence numbers.
+     *
+     * @param productIds the unique identifiers of the products.
+     * @return each existing product with only those fields, keyed by product identifier.
+     */
+    Map<String, Product> findStoreIdsAndEventSeqs(Collection<String> productIds);
+
+    /**
+     * Finds the products matching a search, ordered by the search's sort field with the product
+     * identifier as tie-breaker.
+     *
+     * @param criteria the filters and sort order of the search.
+     * @param afterSortValue the sort field value of the last product already seen, or {@code null} to start from the beginning.
+     * @param afterProductId the identifier of the last product already seen, or {@code null} to start from the beginning.
+     * @param limit the maximum number of products to return.
+     * @param resultType {@link Product} or {@link ProductSummary}; summaries only read their own fields.
+     * @param <T> the type of the results.
+     * @return up to {@code limit} matching products that follow the given position.
+     */
+    <T> List<T> search(ProductSearchCriteria criteria, Object afterSortValue, String afterProductId, int limit,
+                       Class<T> resultType);
+}
@@ -0,0 +1,433 @@
+package com.siopa.siopa_products.repositories;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.siopa.siopa_products.dto.LedgerDelta;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.models.Product;
+import io.micrometer.core.annotation.Timed;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link MongoTemplate} backed implementation of {@link ProductRepositoryCustom}.
+ * <p>
+ * Each query is timed in {@code siopa.products.repository}, tagged with the {@code method} name. The
+ * individual driver commands are timed separately in {@code mongodb.driver.commands}.
+ */
+@Timed(value = "siopa.products.repository", histogram = true)
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final String COLLECTION = "products";
+
+    /**
+     * Field holding the identifiers of the last {@code siopa.kafka.order.dedupe.applied-window} orders
+     * applied to a product's stock. This is the durable duplicate guard: unlike the consumer's in-memory
+     * set it survives restarts and is shared by every instance.
+     * <p>
+     * The window has to cover the longest redelivery span. The container commits after each poll, so
+     * after a crash or rebalance at most one poll, {@code max.poll.records} records of a partition, is
+     * redelivered; with the order topic keyed by product, that bounds the orders applied to one product
+     * between an order and its redelivery. Orders retried through the retry topics are only applied once
+     * their attempt succeeds, so they need no more room unless a write succeeds but its acknowledgement
+     * is lost, in which case the window also has to cover the orders the product receives during the
+     * retry back-off.
+     */
+    private static final String APPLIED_ORDERS_FIELD = "appliedOrderIds";
+
+    /**
+     * Field holding a marker for each of the last {@value #BULK_DECREMENTS_KEPT} bulk decrements applied
+     * to a product. A bulk write result only reports aggregate counts, so this is how partially applied
+     * batches find out which of their updates matched. The markers are kept apart from
+     * {@link #APPLIED_ORDERS_FIELD} so they take no room in the redelivery window; a batch reads its
+     * marker back straight after its write, so a few are enough.
+     */
+    private static final String BULK_DECREMENTS_FIELD = "bulkDecrementIds";
+    private static final int BULK_DECREMENTS_KEPT = 8;
+
+    private static final String EVENT_SEQ_FIELD = "eventSeq";
+    private static final String LEDGER_SEQ_FIELD = "ledgerSeq";
+    private static final String STOCK_SHARDS_FIELD = "stockShards";
+
+    /**
+     * Number of documents fetched per cursor round trip when streaming.
+     */
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final int appliedOrdersKept;
+
+    public ProductRepositoryCustomImpl(MongoTemplate mongoTemplate,
+                                       @Value("${siopa.kafka.order.dedupe.applied-window:512}") int appliedOrdersKept) {
+        this.mongoTemplate = mongoTemplate;
+        this.appliedOrdersKept = appliedOrdersKept;
+    }
+
+    @Override
+    public Optional<Product> decrementQuantityIfAvailable(String productId, int amount, String orderId) {
+        Query query = new Query(Criteria.where("productId").is(productId).and("quantity").gte(amount)
+                .and(STOCK_SHARDS_FIELD).exists(false));
+        Update update = new Update().inc("quantity", -amount).inc(EVENT_SEQ_FIELD, 1);
+        if (orderId != null) {
+            query.addCriteria(Criteria.where(APPLIED_ORDERS_FIELD).ne(orderId));
+            update.push(APPLIED_ORDERS_FIELD).slice(-appliedOrdersKept).each(orderId);
+        }
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Product.class));
+    }
+
+    @Override
+    public List<Product> bulkDecrementQuantities(Map<String, Integer> decrements,
+                                                 Map<String, List<String>> orderIds) {
+        if (decrements.isEmpty()) {
+            return List.of();
+        }
+
+        String batchMarker = new ObjectId().toHexString();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        decrements.forEach((productId, amount) -> {
+            Query query = new Query(Criteria.where("productId").is(productId).and("quantity").gte(amount)
+                    .and(STOCK_SHARDS_FIELD).exists(false));
+            Update update = new Update().inc("quantity", -amount).inc(EVENT_SEQ_FIELD, 1);
+            update.push(BULK_DECREMENTS_FIELD).slice(-BULK_DECREMENTS_KEPT).each(batchMarker);
+            List<String> productOrderIds = orderIds.getOrDefault(productId, List.of());
+            if (!productOrderIds.isEmpty()) {
+                query.addCriteria(Criteria.where(APPLIED_ORDERS_FIELD).nin(productOrderIds));
+                update.push(APPLIED_ORDERS_FIELD).slice(-appliedOrdersKept).each(productOrderIds.toArray());
+            }
+            bulkOps.updateOne(query, update);
+        });
+        BulkWriteResult result = bulkOps.execute();
+        if (result.getMatchedCount() == 0) {
+            return List.of();
+        }
+
+        // One indexed read-back resolves which updates matched, the stores they touched and the state
+        // their stock change events carry.
+        Query applied = new Query(Criteria.where("productId").in(decrements.keySet())
+                .and(BULK_DECREMENTS_FIELD).is(batchMarker));
+        applied.fields().include("productId", "storeId", "price", "quantity", EVENT_SEQ_FIELD);
+        return mongoTemplate.find(applied, Product.class);
+    }
+
+    @Override
+    public long applyLedgerDeltas(Collection<LedgerDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (LedgerDelta delta : deltas) {
+            Update update = new Update().inc("quantity", -delta.amount()).inc(EVENT_SEQ_FIELD, 1)
+                    .set(LEDGER_SEQ_FIELD, delta.seq());
+            if (!delta.orderIds().isEmpty()) {
+                update.push(APPLIED_ORDERS_FIELD).slice(-appliedOrdersKept).each(delta.orderIds().toArray());
+            }
+            bulkOps.updateOne(
+                    new Query(Criteria.where("productId").is(delta.productId()).orOperator(
+                            Criteria.where(LEDGER_SEQ_FIELD).lt(delta.seq()),
+                            Criteria.where(LEDGER_SEQ_FIELD).exists(false))),
+                    update);
+        }
+        return bulkOps.execute().getMatchedCount();
+    }
+
+    @Override
+    public Map<String, Long> findLedgerSeqs(Collection<String> productIds) {
+        Query query = new Query(Criteria.where("productId").in(productIds));
+        query.fields().include("productId", LEDGER_SEQ_FIELD);
+        Map<String, Long> ledgerSeqs = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            ledgerSeqs.put(product.getProductId(), product.getLedgerSeq() == null ? 0L : product.getLedgerSeq());
+        }
+        return ledgerSeqs;
+    }
+
+    @Override
+    public long findMaxLedgerSeq() {
+        Query query = new Query(Criteria.where(LEDGER_SEQ_FIELD).exists(true))
+                .with(Sort.by(Sort.Direction.DESC, LEDGER_SEQ_FIELD)).limit(1);
+        query.fields().include(LEDGER_SEQ_FIELD);
+        Product product = mongoTemplate.findOne(query, Product.class);
+        return product == null ? 0L : product.getLedgerSeq();
+    }
+
+    @Override
+    public Optional<Product> patchFields(String productId, Map<String, Object> set, Collection<String> unset) {
+        Query query = new Query(Criteria.where("productId").is(productId));
+        if (set.containsKey("quantity")) {
+            query.addCriteria(Criteria.where(STOCK_SHARDS_FIELD).exists(false));
+        }
+        List<Criteria> parentsAreObjects = new ArrayList<>();
+        for (String parent : parentPathsOf(set.keySet())) {
+            parentsAreObjects.add(new Criteria().orOperator(
+                    Criteria.where(parent).exists(false),
+                    Criteria.where(parent).type(JsonSchemaObject.Type.OBJECT)));
+        }
+        if (!parentsAreObjects.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(parentsAreObjects));
+        }
+        Update update = new Update().inc(EVENT_SEQ_FIELD, 1);
+        set.forEach(update::set);
+        unset.forEach(update::unset);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false), Product.class));
+    }
+
+    @Override
+    public Optional<Product> setQuantity(String productId, int quantity) {
+        Query query = new Query(Criteria.where("productId").is(productId).and(STOCK_SHARDS_FIELD).exists(false));
+        Update update = new Update().set("quantity", quantity).inc(EVENT_SEQ_FIELD, 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Product.class));
+    }
+
+    @Override
+    public OptionalLong nextEventSeq(String productId) {
+        Query query = new Query(Criteria.where("productId").is(productId));
+        query.fields().include(EVENT_SEQ_FIELD);
+        Product product = mongoTemplate.findAndModify(query, new Update().inc(EVENT_SEQ_FIELD, 1),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        return product == null ? OptionalLong.empty() : OptionalLong.of(product.getEventSeq());
+    }
+
+    @Override
+    public boolean markStockSharded(String productId, int expectedQuantity, int shards) {
+        Query query = new Query(Criteria.where("productId").is(productId).and("quantity").is(expectedQuantity)
+                .and(STOCK_SHARDS_FIELD).exists(false));
+        Update update = new Update().set(STOCK_SHARDS_FIELD, shards);
+        return mongoTemplate.updateFirst(query, update, Product.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public void unmarkStockSharded(String productId, int quantity) {
+        Query query = new Query(Criteria.where("productId").is(productId));
+        Update update = new Update().set("quantity", quantity).unset(STOCK_SHARDS_FIELD);
+        mongoTemplate.updateFirst(query, update, Product.class);
+    }
+
+    @Override
+    public void setShardedQuantity(String productId, int quantity) {
+        Query query = new Query(Criteria.where("productId").is(productId).and(STOCK_SHARDS_FIELD).exists(true));
+        mongoTemplate.updateFirst(query, new Update().set("quantity", quantity), Product.class);
+    }
+
+    @Override
+    public Optional<Product> findAndRemoveById(String productId) {
+        return Optional.ofNullable(mongoTemplate.findAndRemove(
+                new Query(Criteria.where("productId").is(productId)), Product.class));
+    }
+
+    @Override
+    public <T> List<T> findPageAfter(String afterProductId, int limit, Class<T> resultType) {
+        Query query = new Query();
+        if (afterProductId != null) {
+            query.addCriteria(Criteria.where("productId").gt(afterProductId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "productId")).limit(limit);
+        return find(query, resultType);
+    }
+
+    @Override
+    public List<ProductSummary> findAllSummaries() {
+        return find(new Query(), ProductSummary.class);
+    }
+
+    @Override
+    public List<ProductSummary> findSummariesByStoreId(String storeId) {
+        return find(new Query(Criteria.where("storeId").is(storeId)), ProductSummary.class);
+    }
+
+    @Override
+    public Stream<Product> streamAll() {
+        return mongoTemplate.stream(new Query().cursorBatchSize(STREAM_BATCH_SIZE), Product.class);
+    }
+
+    @Override
+    public Stream<Document> streamDocuments(String storeId, Collection<String> fields) {
+        Query query = storeId == null ? new Query() : new Query(Criteria.where("storeId").is(storeId));
+        query.fields().include(fields.toArray(String[]::new));
+        if (!fields.contains("_id")) {
+            query.fields().exclude("_id");
+        }
+        return mongoTemplate.stream(query.cursorBatchSize(STREAM_BATCH_SIZE), Document.class, COLLECTION);
+    }
+
+    @Override
+    public Map<Integer, String> bulkInsert(List<Product> products) {
+        if (products.isEmpty()) {
+            return Map.of();
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        bulkOps.insert(products);
+        return executeCollectingErrors(bulkOps);
+    }
+
+    @Override
+    public Map<Integer, String> bulkUpdate(List<Product> products) {
+        if (products.isEmpty()) {
+            return Map.of();
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Product product : products) {
+            Update update = new Update()
+                    .set("name", product.getName())
+                    .set("price", product.getPrice())
+                    .set("description", product.getDescription())
+                    .set("category", product.getCategory())
+                    .set("storeId", product.getStoreId())
+                    .set("quantity", product.getQuantity())
+                    .set("attributes", product.getAttributes())
+                    .set(EVENT_SEQ_FIELD, product.getEventSeq())
+                    .unset(STOCK_SHARDS_FIELD);
+            bulkOps.updateOne(new Query(Criteria.where("productId").is(product.getProductId())), update);
+        }
+        return executeCollectingErrors(bulkOps);
+    }
+
+    @Override
+    public Map<String, Product> findStoreIdsAndEventSeqs(Collection<String> productIds) {
+        Query query = new Query(Criteria.where("productId").in(productIds));
+        query.fields().include("productId", "storeId", EVENT_SEQ_FIELD);
+        Map<String, Product> productsById = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            productsById.put(product.getProductId(), product);
+        }
+        return productsById;
+    }
+
+    /**
+     * Executes an unordered bulk write; the operations that failed are reported instead of thrown.
+     */
+    private static Map<Integer, String> executeCollectingErrors(BulkOperations bulkOps) {
+        try {
+            bulkOps.execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            Map<Integer, String> errors = new HashMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                errors.put(error.getIndex(), error.getMessage());
+            }
+            return errors;
+        }
+    }
+
+    @Override
+    public <T> List<T> search(ProductSearchCriteria criteria, Object afterSortValue, String afterProductId, int limit,
+                              Class<T> resultType) {
+        List<Criteria> filters = new ArrayList<>();
+        if (criteria.getStoreId() != null) {
+            filters.add(Criteria.where("storeId").is(criteria.getStoreId()));
+        }
+        if (criteria.getCategory() != null) {
+            filters.add(Criteria.where("category").is(criteria.getCategory()));
+        }
+        if (criteria.getMinPrice() != null) {
+            filters.add(Criteria.where("price").gte(criteria.getMinPrice()));
+        }
+        if (criteria.getMaxPrice() != null) {
+            filters.add(Criteria.where("price").lte(criteria.getMaxPrice()));
+        }
+        if (criteria.isInStockOnly()) {
+            filters.add(Criteria.where("quantity").gt(0));
+        }
+        criteria.getAttributes().forEach((name, value) ->
+                filters.add(Criteria.where("attributes." + name).in(attributeValues(value))));
+
+        String sortField = criteria.getSortField();
+        boolean descending = criteria.isDescending();
+        if (afterProductId != null) {
+            if ("productId".equals(sortField)) {
+                filters.add(after(Criteria.where("productId"), afterProductId, descending));
+            } else {
+                filters.add(new Criteria().orOperator(
+                        after(Criteria.where(sortField), afterSortValue, descending),
+                        new Criteria().andOperator(
+                                Criteria.where(sortField).is(afterSortValue),
+                                after(Criteria.where("productId"), afterProductId, descending))));
+            }
+        }
+
+        Query query = filters.isEmpty() ? new Query() : new Query(new Criteria().andOperator(filters));
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = "productId".equals(sortField)
+                ? Sort.by(direction, "productId")
+                : Sort.by(direction, sortField).and(Sort.by(direction, "productId"));
+        query.with(sort).limit(limit);
+        return find(query, resultType);
+    }
+
+    /**
+     * Runs a query against the products collection, restricting the fields read to those of a
+     * {@link ProductSummary} when summaries are requested.
+     */
+    private <T> List<T> find(Query query, Class<T> resultType) {
+        if (resultType == ProductSummary.class) {
+            query.fields().include(ProductSummary.FIELDS);
+        }
+        return mongoTemplate.find(query, resultType, COLLECTION);
+    }
+
+    private static Criteria after(Criteria field, Object value, boolean descending) {
+        return descending ? field.lt(value) : field.gt(value);
+    }
+
+    /**
+     * Attribute values arrive as request strings but may be stored as numbers or booleans, so every
+     * plausible typed form of the value is matched. Numeric equality in MongoDB is type-agnostic, so
+     * one numeric form covers int, long and double attributes.
+     */
+    private static List<Object> attributeValues(String value) {
+        List<Object> values = new ArrayList<>(2);
+        values.add(value);
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            values.add(Boolean.parseBoolean(value));
+            return values;
+        }
+        try {
+            values.add(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            try {
+                values.add(Double.parseDouble(value));
+            } catch (NumberFormatException ignored) {
+                // Not numeric; the string form is enough.
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the fields that the nested paths run through, such as {@code attributes} and
+     * {@code attributes.size} for {@code attributes.size.width}.
+     */
+    private static Set<String> parentPathsOf(Collection<String> paths) {
+        Set<String> parents = new LinkedHashSet<>();
+        for (String path : paths) {
+            for (int dot = path.indexOf('.'); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+                parents.add(path.substring(0, dot));
+            }
+        }
+        return parents;
+    }
+}
@@ -0,0 +1,38 @@
+package com.siopa.siopa_products.repositories;
+
+import com.siopa.siopa_products.models.ProductStockShard;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for the {@link ProductStockShard} collection in MongoDB.
+ */
+@Repository
+public interface ProductStockShardRepository extends MongoRepository<ProductStockShard, String>,
+        ProductStockShardRepositoryCustom {
+
+    /**
+     * Finds all stock shards of a product.
+     *
+     * @param productId the unique identifier of the product.
+     * @return the shards of the product, empty if its stock is not sharded.
+     */
+    List<ProductStockShard> findByProductId(String productId);
+
+    /**
+     * Deletes all stock shards of a product.
+     *
+     * @param productId the unique identifier of the product.
+     */
+    void deleteByProductId(String productId);
+
+    /**
+     * Deletes all stock shards of several products.
+     *
+     * @param productIds the unique identifiers of the products.
+     */
+    void deleteByProductIdIn(Collection<String> productIds);
+}
@@ -0,0 +1,59 @@
+package com.siopa.siopa_products.repositories;
+
+import com.siopa.siopa_products.models.ProductStockShard;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Custom repository operations on the {@link ProductStockShard} collection that cannot be expressed as
+ * derived queries.
+ */
+public interface ProductStockShardRepositoryCustom {
+
+    /**
+     * Atomically decrements one stock shard, but only if it holds enough units, and records the order
+     * on the shard in the same write.
+     *
+     * @param productId the unique identifier of the product.
+     * @param shard the number of the shard.
+     * @param amount the number of units to remove.
+     * @param orderId the identifier of the order, or {@code null} to apply it unconditionally; the shard
+     *                is not decremented if it already recorded the order.
+     * @return whether the shard was decremented.
+     */
+    boolean takeFromShard(String productId, int shard, int amount, String orderId);
+
+    /**
+     * @param productId the unique identifier of the product.
+     * @param orderId the identifier of an order.
+     * @return whether one of the product's shards recorded the order as taken.
+     */
+    boolean hasAppliedOrder(String productId, String orderId);
+
+    /**
+     * Atomically empties one stock shard.
+     *
+     * @param productId the unique identifier of the product.
+     * @param shard the number of the shard.
+     * @return the number of units the shard held, {@code 0} if it does not exist.
+     */
+    int drainShard(String productId, int shard);
+
+    /**
+     * Adds units to one stock shard, creating it if it does not exist.
+     *
+     * @param productId the unique identifier of the product.
+     * @param shard the number of the shard.
+     * @param amount the number of units to add.
+     */
+    void addToShard(String productId, int shard, int amount);
+
+    /**
+     * Sums the stock shards of several products in one aggregation.
+     *
+     * @param productIds the unique identifiers of the products.
+     * @return the total stock of each product that has shards, keyed by product identifier.
+     */
+    Map<String, Integer> sumQuantities(Collection<String> productIds);
+}
@@ -0,0 +1,86 @@
+package com.siopa.siopa_products.repositories;
+
+import com.siopa.siopa_products.models.ProductStockShard;
+import io.micrometer.core.annotation.Timed;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link MongoTemplate} backed implementation of {@link ProductStockShardRepositoryCustom}.
+ * <p>
+ * Each query is timed in {@code siopa.products.repository}, tagged with the {@code method} name.
+ */
+@Timed(value = "siopa.products.repository", histogram = true)
+public class ProductStockShardRepositoryCustomImpl implements ProductStockShardRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final int appliedOrdersKept;
+
+    /**
+     * @param appliedOrdersKept how many applied order identifiers each shard keeps; see
+     *                          {@link ProductRepositoryCustomImpl} for how the window is sized.
+     */
+    public ProductStockShardRepositoryCustomImpl(MongoTemplate mongoTemplate,
+                                                 @Value("${siopa.kafka.order.dedupe.applied-window:512}") int appliedOrdersKept) {
+        this.mongoTemplate = mongoTemplate;
+        this.appliedOrdersKept = appliedOrdersKept;
+    }
+
+    @Override
+    public boolean takeFromShard(String productId, int shard, int amount, String orderId) {
+        Criteria criteria = Criteria.where("id").is(ProductStockShard.idOf(productId, shard))
+                .and("quantity").gte(amount);
+        Update update = new Update().inc("quantity", -amount);
+        if (orderId != null) {
+            criteria.and("appliedOrderIds").ne(orderId);
+            update.push("appliedOrderIds").slice(-appliedOrdersKept).each(orderId);
+        }
+        return mongoTemplate.updateFirst(new Query(criteria), update, ProductStockShard.class)
+                .getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean hasAppliedOrder(String productId, String orderId) {
+        Query query = new Query(Criteria.where("productId").is(productId).and("appliedOrderIds").is(orderId));
+        return mongoTemplate.exists(query, ProductStockShard.class);
+    }
+
+    @Override
+    public int drainShard(String productId, int shard) {
+        Query query = new Query(Criteria.where("id").is(ProductStockShard.idOf(productId, shard)));
+        ProductStockShard previous = mongoTemplate.findAndModify(query, new Update().set("quantity", 0),
+                FindAndModifyOptions.options().returnNew(false), ProductStockShard.class);
+        return previous == null ? 0 : previous.getQuantity();
+    }
+
+    @Override
+    public void addToShard(String productId, int shard, int amount) {
+        Query query = new Query(Criteria.where("id").is(ProductStockShard.idOf(productId, shard)));
+        Update update = new Update().inc("quantity", amount)
+                .setOnInsert("productId", productId)
+                .setOnInsert("shard", shard);
+        mongoTemplate.upsert(query, update, ProductStockShard.class);
+    }
+
+    @Override
+    public Map<String, Integer> sumQuantities(Collection<String> productIds) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("productId").in(productIds)),
+                Aggregation.group("productId").sum("quantity").as("quantity"));
+        Map<String, Integer> totals = new HashMap<>();
+        for (Document total : mongoTemplate.aggregate(aggregation, ProductStockShard.class, Document.class)) {
+            totals.put(total.getString("_id"), total.get("quantity", Number.class).intValue());
+        }
+        return totals;
+    }
+}
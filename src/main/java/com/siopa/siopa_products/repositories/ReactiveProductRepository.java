@@ -0,0 +1,37 @@
+package com.siopa.siopa_products.repositories;
+
+import com.siopa.siopa_products.models.Product;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking repository for reading the {@link Product} collection in MongoDB.
+ * <p>
+ * Queries run on the reactive driver and emit documents as the cursor delivers them, so no thread is
+ * held while a query is in flight. The result type of the projecting queries may be {@link Product}
+ * or a DTO such as {@link com.siopa.siopa_products.dto.ProductSummary}, in which case only the DTO's
+ * fields are read.
+ */
+@Repository
+public interface ReactiveProductRepository extends ReactiveMongoRepository<Product, String> {
+
+    /**
+     * Finds all products associated with a specific store.
+     *
+     * @param storeId the unique identifier of the store.
+     * @param type the type to read each product as.
+     * @param <T> the type of the results.
+     * @return the products belonging to the specified store.
+     */
+    <T> Flux<T> findByStoreId(String storeId, Class<T> type);
+
+    /**
+     * Finds all products.
+     *
+     * @param type the type to read each product as.
+     * @param <T> the type of the results.
+     * @return all products.
+     */
+    <T> Flux<T> findAllBy(Class<T> type);
+}
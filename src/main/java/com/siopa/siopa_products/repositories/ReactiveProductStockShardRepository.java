@@ -0,0 +1,38 @@
+package com.siopa.siopa_products.repositories;
+
+import com.siopa.siopa_products.models.ProductStockShard;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * Non-blocking repository for reading the {@link ProductStockShard} collection in MongoDB.
+ */
+@Repository
+public interface ReactiveProductStockShardRepository extends ReactiveMongoRepository<ProductStockShard, String> {
+
+    /**
+     * Sums the shards of several products.
+     *
+     * @param productIds the unique identifiers of the products.
+     * @return the total stock of each product that has shards.
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'productId': { '$in': ?0 } } }",
+            "{ '$group': { '_id': '$productId', 'total': { '$sum': '$quantity' } } }"
+    })
+    Flux<ShardTotal> sumQuantities(Collection<String> productIds);
+
+    /**
+     * The total stock of one sharded product.
+     *
+     * @param productId the unique identifier of the product.
+     * @param total the sum of the quantities of its shards.
+     */
+    record ShardTotal(@Id String productId, int total) {
+    }
+}
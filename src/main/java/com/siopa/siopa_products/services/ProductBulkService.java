@@ -0,0 +1,240 @@
+package com.siopa.siopa_products.services;
+
+import com.siopa.siopa_products.cache.ProductCache;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.dto.BulkItemResult;
+import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductUpdateRequest;
+import com.siopa.siopa_products.exceptions.BulkRequestTooLargeException;
+import com.siopa.siopa_products.inventory.InventoryLedger;
+import com.siopa.siopa_products.inventory.StockShards;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.outbox.ProductOutbox;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import org.bson.types.ObjectId;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Service class for creating and updating many products in a single call.
+ * <p>
+ * The whole request is validated in one pass and the valid items are written in unordered bulk
+ * operations of {@code siopa.products.bulk.chunk-size} items, so one bad item never blocks the rest.
+ * Every item gets its own {@link BulkItemResult}.
+ * <p>
+ * With the {@link ProductOutbox} enabled, the change events of a chunk's written items are recorded in
+ * the same transaction as its bulk write. A failed item aborts that transaction, so the chunk is then
+ * written again without its failed items.
+ */
+@Service
+@Timed(value = "siopa.products.service", histogram = true)
+public class ProductBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductBulkService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductRequestValidator productRequestValidator;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @Autowired(required = false)
+    private InventoryLedger inventoryLedger;
+
+    @Autowired(required = false)
+    private StockShards stockShards;
+
+    @Autowired(required = false)
+    private ProductOutbox productOutbox;
+
+    @Value("${siopa.products.bulk.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${siopa.products.bulk.max-items:10000}")
+    private int maxItems = 10000;
+
+    /**
+     * Creates many products at once.
+     *
+     * @param productRequests the products to create.
+     * @return one result per request item, in request order.
+     * @throws BulkRequestTooLargeException if the request has more than {@code siopa.products.bulk.max-items} items.
+     */
+    public List<BulkItemResult> createProducts(List<ProductRequest> productRequests) {
+        checkSize(productRequests.size());
+        logger.info("Bulk creating {} products", productRequests.size());
+
+        BulkItemResult[] results = new BulkItemResult[productRequests.size()];
+        List<Product> products = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < productRequests.size(); i++) {
+            ProductRequest productRequest = productRequests.get(i);
+            List<String> errors = productRequestValidator.validate(productRequest);
+            if (!errors.isEmpty()) {
+                results[i] = new BulkItemResult(i, null, BulkItemResult.Status.INVALID, errors);
+                continue;
+            }
+            Product product = new Product();
+            product.setProductId(new ObjectId().toHexString());
+            ProductService.applyRequest(product, productRequest);
+            product.setEventSeq(product.nextEventSeq());
+            products.add(product);
+            indexes.add(i);
+        }
+
+        Set<String> touchedStoreIds = new HashSet<>();
+        for (int from = 0; from < products.size(); from += chunkSize) {
+            List<Product> chunk = products.subList(from, Math.min(from + chunkSize, products.size()));
+            Map<Integer, String> failures = recordedEach(chunk, productRepository::bulkInsert,
+                    ProductChangeEvent.Type.CREATED);
+            for (int j = 0; j < chunk.size(); j++) {
+                Product product = chunk.get(j);
+                int index = indexes.get(from + j);
+                String failure = failures.get(j);
+                if (failure != null) {
+                    results[index] = new BulkItemResult(index, product.getProductId(), BulkItemResult.Status.FAILED, List.of(failure));
+                    continue;
+                }
+                results[index] = new BulkItemResult(index, product.getProductId(), BulkItemResult.Status.CREATED, List.of());
+                productCache.put(product);
+                touchedStoreIds.add(product.getStoreId());
+            }
+        }
+        touchedStoreIds.forEach(storeCatalogSnapshots::invalidate);
+
+        logger.info("Bulk created {} of {} products", countSucceeded(results), productRequests.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Updates many existing products at once, setting the fields of their requests.
+     *
+     * @param updateRequests the new state of the products, each addressed by its product identifier.
+     * @return one result per request item, in request order.
+     * @throws BulkRequestTooLargeException if the request has more than {@code siopa.products.bulk.max-items} items.
+     */
+    public List<BulkItemResult> updateProducts(List<ProductUpdateRequest> updateRequests) {
+        checkSize(updateRequests.size());
+        logger.info("Bulk updating {} products", updateRequests.size());
+
+        BulkItemResult[] results = new BulkItemResult[updateRequests.size()];
+        List<Product> products = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < updateRequests.size(); i++) {
+            ProductUpdateRequest updateRequest = updateRequests.get(i);
+            List<String> errors = productRequestValidator.validate(updateRequest);
+            if (!errors.isEmpty()) {
+                results[i] = new BulkItemResult(i, updateRequest == null ? null : updateRequest.getProductId(),
+                        BulkItemResult.Status.INVALID, errors);
+                continue;
+            }
+            Product product = new Product();
+            product.setProductId(updateRequest.getProductId());
+            ProductService.applyRequest(product, updateRequest);
+            products.add(product);
+            indexes.add(i);
+        }
+
+        Set<String> touchedStoreIds = new HashSet<>();
+        for (int from = 0; from < products.size(); from += chunkSize) {
+            List<Product> chunk = products.subList(from, Math.min(from + chunkSize, products.size()));
+            Map<String, Product> existing = productRepository.findStoreIdsAndEventSeqs(
+                    chunk.stream().map(Product::getProductId).toList());
+
+            List<Product> found = new ArrayList<>(chunk.size());
+            List<Integer> foundIndexes = new ArrayList<>(chunk.size());
+            for (int j = 0; j < chunk.size(); j++) {
+                Product product = chunk.get(j);
+                int index = indexes.get(from + j);
+                Product existingProduct = existing.get(product.getProductId());
+                if (existingProduct == null) {
+                    results[index] = new BulkItemResult(index, product.getProductId(), BulkItemResult.Status.NOT_FOUND,
+                            List.of("Product not found"));
+                    continue;
+                }
+                if (inventoryLedger != null) {
+                    inventoryLedger.release(product.getProductId());
+                }
+                product.setEventSeq(existingProduct.nextEventSeq());
+                found.add(product);
+                foundIndexes.add(index);
+            }
+
+            Map<Integer, String> failures = recordedEach(found, productRepository::bulkUpdate,
+                    ProductChangeEvent.Type.UPDATED);
+            List<String> updatedProductIds = new ArrayList<>(found.size());
+            for (int j = 0; j < found.size(); j++) {
+                Product product = found.get(j);
+                int index = foundIndexes.get(j);
+                String failure = failures.get(j);
+                if (failure != null) {
+                    results[index] = new BulkItemResult(index, product.getProductId(), BulkItemResult.Status.FAILED, List.of(failure));
+                    continue;
+                }
+                results[index] = new BulkItemResult(index, product.getProductId(), BulkItemResult.Status.UPDATED, List.of());
+                updatedProductIds.add(product.getProductId());
+                productCache.put(product);
+                touchedStoreIds.add(existing.get(product.getProductId()).getStoreId());
+                touchedStoreIds.add(product.getStoreId());
+            }
+            // An updated product keeps its stock in its own quantity again.
+            if (stockShards != null && !updatedProductIds.isEmpty()) {
+                stockShards.discardAll(updatedProductIds);
+            }
+        }
+        touchedStoreIds.forEach(storeCatalogSnapshots::invalidate);
+
+        logger.info("Bulk updated {} of {} products", countSucceeded(results), updateRequests.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Performs a bulk write, recording an event of the given type for every product written in the
+     * same transaction when the outbox is enabled.
+     *
+     * @return the failures, keyed by index into {@code products}.
+     */
+    private Map<Integer, String> recordedEach(List<Product> products,
+                                              Function<List<Product>, Map<Integer, String>> write,
+                                              ProductChangeEvent.Type type) {
+        if (productOutbox == null) {
+            return write.apply(products);
+        }
+        return productOutbox.writeEach(products, write, written -> written.stream()
+                .map(product -> ProductChangeEvent.of(type, product))
+                .toList());
+    }
+
+    private void checkSize(int size) {
+        if (size > maxItems) {
+            logger.error("Rejecting bulk request of {} items, the maximum is {}", size, maxItems);
+            throw new BulkRequestTooLargeException(size, maxItems);
+        }
+    }
+
+    private static long countSucceeded(BulkItemResult[] results) {
+        return Arrays.stream(results)
+                .filter(result -> result.getStatus() == BulkItemResult.Status.CREATED
+                        || result.getStatus() == BulkItemResult.Status.UPDATED)
+                .count();
+    }
+}
@@ -0,0 +1,228 @@
+package com.siopa.siopa_products.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.exceptions.InvalidExportException;
+import com.siopa.siopa_products.exceptions.TooManyExportsException;
+import com.siopa.siopa_products.inventory.StockShards;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service class for exporting a store's catalog, or the whole catalog, as gzip-compressed NDJSON.
+ * <p>
+ * Products are read as raw documents from a database cursor, limited to the requested fields, and
+ * written one line at a time through the compressor, so memory use does not grow with the catalog and
+ * no {@code Product} objects are built. At most {@code siopa.products.export.max-concurrent} exports
+ * run at once; further ones are rejected rather than queued, so feed generation cannot take more CPU
+ * from live traffic than that. An export that is still writing after
+ * {@code siopa.products.export.timeout} stops itself between chunks, so the response is only ever
+ * written by the export.
+ */
+@Service
+public class ProductExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductExportService.class);
+
+    /**
+     * The fields an export may select, in the order they are written.
+     */
+    public static final List<String> EXPORT_FIELDS =
+            List.of("productId", "storeId", "name", "price", "description", "category", "quantity", "attributes");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of documents written together, matching the cursor's batch size, so the shard totals of
+     * their sharded products are read with one query.
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private StockShards stockShards;
+
+    @Value("${siopa.products.export.max-concurrent:2}")
+    private int maxConcurrent = 2;
+
+    @Value("${siopa.products.export.compression-level:1}")
+    private int compressionLevel = 1;
+
+    @Value("${siopa.products.export.timeout:30m}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    private Semaphore slots;
+
+    @PostConstruct
+    void start() {
+        slots = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Reserves one of the {@code siopa.products.export.max-concurrent} export slots. It must be
+     * released once the export has been written, or has failed.
+     *
+     * @return releases the slot; only the first call has an effect.
+     * @throws TooManyExportsException if every slot is taken.
+     */
+    public Runnable reserveSlot() {
+        if (!slots.tryAcquire()) {
+            logger.warn("Rejecting export, {} exports already running", maxConcurrent);
+            throw new TooManyExportsException(maxConcurrent);
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        };
+    }
+
+    /**
+     * Resolves the fields of an export.
+     *
+     * @param requested the requested fields, or {@code null} or empty for all of them.
+     * @return the fields to write, in {@link #EXPORT_FIELDS} order.
+     * @throws InvalidExportException if a requested field cannot be exported.
+     */
+    public List<String> resolveFields(List<String> requested) {
+        if (requested == null || requested.isEmpty()) {
+            return EXPORT_FIELDS;
+        }
+        for (String field : requested) {
+            if (!EXPORT_FIELDS.contains(field)) {
+                throw new InvalidExportException("Unsupported export field: " + field);
+            }
+        }
+        return EXPORT_FIELDS.stream().filter(requested::contains).toList();
+    }
+
+    /**
+     * Writes products as gzip-compressed NDJSON, one JSON object per line, and closes the stream.
+     *
+     * @param storeId the unique identifier of the store to export, or {@code null} for all products.
+     * @param fields the fields to write, as returned by {@link #resolveFields(List)}.
+     * @param out receives the compressed export.
+     * @throws IOException if the export cannot be written, or is still writing after
+     * {@code siopa.products.export.timeout}.
+     */
+    @Timed(value = "siopa.products.service", histogram = true)
+    public void exportProducts(String storeId, List<String> fields, OutputStream out) throws IOException {
+        logger.info("Exporting {} with fields {}", storeId == null ? "all products" : "Store ID " + storeId, fields);
+        boolean withQuantity = fields.contains("quantity") && stockShards != null;
+        Set<String> readFields = new LinkedHashSet<>();
+        for (String field : fields) {
+            readFields.add("productId".equals(field) ? "_id" : field);
+        }
+        if (withQuantity) {
+            // Sharded products hold their stock in the shards; their id is needed to sum them.
+            readFields.add("_id");
+            readFields.add("stockShards");
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long count = 0;
+        try (OutputStream gzip = new LeveledGzipOutputStream(out, compressionLevel);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip);
+             Stream<Document> documents = productRepository.streamDocuments(storeId, readFields)) {
+            generator.setRootValueSeparator(null);
+            List<Document> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                chunk.add(document);
+                if (chunk.size() == CHUNK_SIZE) {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new IOException("Export did not finish within " + timeout + ", stopped after "
+                                + count + " products");
+                    }
+                    writeChunk(generator, chunk, fields, withQuantity);
+                    count += chunk.size();
+                    chunk.clear();
+                }
+            }
+            writeChunk(generator, chunk, fields, withQuantity);
+            count += chunk.size();
+        }
+        logger.info("Exported {} products", count);
+    }
+
+    private void writeChunk(JsonGenerator generator, List<Document> chunk, List<String> fields, boolean withQuantity)
+            throws IOException {
+        Map<String, Integer> shardTotals = withQuantity ? shardTotalsOf(chunk) : Map.of();
+        for (Document document : chunk) {
+            writeLine(generator, document, fields, shardTotals);
+        }
+    }
+
+    /**
+     * @return the stock of the chunk's sharded products summed over their shards, keyed by product identifier.
+     */
+    private Map<String, Integer> shardTotalsOf(List<Document> chunk) {
+        Set<String> sharded = new HashSet<>();
+        for (Document document : chunk) {
+            if (document.get("stockShards") != null) {
+                sharded.add(String.valueOf(idOf(document.get("_id"))));
+            }
+        }
+        return sharded.isEmpty() ? Map.of() : stockShards.totals(sharded);
+    }
+
+    private void writeLine(JsonGenerator generator, Document document, List<String> fields,
+                           Map<String, Integer> shardTotals) throws IOException {
+        generator.writeStartObject();
+        for (String field : fields) {
+            Object value = "productId".equals(field) ? document.get("_id") : document.get(field);
+            if ("quantity".equals(field) && document.get("stockShards") != null) {
+                value = shardTotals.getOrDefault(String.valueOf(idOf(document.get("_id"))), 0);
+            }
+            if (value != null) {
+                generator.writeFieldName(field);
+                generator.writeObject(idOf(value));
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static Object idOf(Object value) {
+        return value instanceof ObjectId objectId ? objectId.toHexString() : value;
+    }
+
+    /**
+     * A gzip stream with a configurable compression level; the fastest level costs a fraction of the
+     * default's CPU for a slightly larger file.
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.siopa.siopa_products.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.exceptions.ImportJobNotFoundException;
+import com.siopa.siopa_products.exceptions.TooManyImportsException;
+import com.siopa.siopa_products.imports.ImportFormat;
+import com.siopa.siopa_products.imports.ImportJob;
+import com.siopa.siopa_products.imports.ImportJobs;
+import com.siopa.siopa_products.imports.ProductImportReader;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.outbox.ProductOutbox;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Service class for importing a catalog file of any size.
+ * <p>
+ * The file is read from the request body one row at a time, validated with the
+ * {@link ProductRequestValidator} and inserted in unordered bulk writes of
+ * {@code siopa.products.import.batch-size} rows. One batch is written while the next is read, and
+ * reading waits for the previous write to finish, so a slow database slows the upload down instead of
+ * buffering it: memory use is bounded by two batches whatever the size of the file. At most
+ * {@code siopa.products.import.max-concurrent} imports run at once.
+ * <p>
+ * Imported products are not put in the product cache, which the import would only churn. With the
+ * {@link ProductOutbox} enabled, each batch records its change events in the same transaction as its
+ * bulk write, as {@link ProductBulkService} does.
+ */
+@Service
+@Timed(value = "siopa.products.service", histogram = true)
+public class ProductImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductRequestValidator productRequestValidator;
+
+    @Autowired
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @Autowired
+    private ImportJobs importJobs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private ProductOutbox productOutbox;
+
+    @Value("${siopa.products.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${siopa.products.import.max-concurrent:4}")
+    private int maxConcurrent = 4;
+
+    private Semaphore permits;
+    private ExecutorService writers;
+
+    @PostConstruct
+    void start() {
+        permits = new Semaphore(maxConcurrent);
+        writers = Executors.newFixedThreadPool(maxConcurrent, new CustomizableThreadFactory("product-import-"));
+    }
+
+    @PreDestroy
+    void stop() {
+        writers.shutdown();
+    }
+
+    /**
+     * Imports every row of a catalog file, returning once the whole file has been read.
+     * <p>
+     * Invalid rows and rows the database rejects are counted and reported in the returned job without
+     * stopping the import. The import fails if the file becomes unreadable, keeping the rows imported
+     * before that point.
+     *
+     * @param body the file contents.
+     * @param format the file format.
+     * @return the finished import.
+     * @throws TooManyImportsException if {@code siopa.products.import.max-concurrent} imports are already running.
+     */
+    public ImportJob importProducts(InputStream body, ImportFormat format) {
+        if (!permits.tryAcquire()) {
+            logger.warn("Rejecting {} import, {} imports already running", format, maxConcurrent);
+            throw new TooManyImportsException(maxConcurrent);
+        }
+        ImportJob job = importJobs.start(format);
+        logger.info("Starting {} import {}", format, job.getImportId());
+        Set<String> touchedStoreIds = ConcurrentHashMap.newKeySet();
+        try (ProductImportReader reader = ProductImportReader.open(body, format, objectMapper)) {
+            readAndWrite(job, reader, touchedStoreIds);
+            job.complete();
+            logger.info("Import {} completed: {} rows read, {} imported, {} invalid, {} failed", job.getImportId(),
+                    job.getRowsRead(), job.getImported(), job.getInvalid(), job.getFailed());
+        } catch (IOException | RuntimeException e) {
+            job.fail(e.getMessage());
+            logger.error("Import {} failed after {} rows", job.getImportId(), job.getRowsRead(), e);
+        } finally {
+            permits.release();
+            touchedStoreIds.forEach(storeCatalogSnapshots::invalidate);
+        }
+        return job;
+    }
+
+    /**
+     * @param importId the unique identifier of an import.
+     * @return the import's progress or outcome.
+     * @throws ImportJobNotFoundException if the import is unknown or no longer retained.
+     */
+    public ImportJob getImport(String importId) {
+        return importJobs.get(importId).orElseThrow(() -> new ImportJobNotFoundException(importId));
+    }
+
+    /**
+     * @return the retained imports of this instance, most recently started first.
+     */
+    public List<ImportJob> getImports() {
+        return importJobs.list();
+    }
+
+    private void readAndWrite(ImportJob job, ProductImportReader reader, Set<String> touchedStoreIds)
+            throws IOException {
+        CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+        List<Product> batch = new ArrayList<>(batchSize);
+        List<Long> rowNumbers = new ArrayList<>(batchSize);
+        try {
+            ProductImportReader.Row row;
+            while ((row = reader.next()) != null) {
+                job.rowRead();
+                if (row.error() != null) {
+                    job.rowInvalid(row.number(), List.of(row.error()));
+                    continue;
+                }
+                List<String> errors = productRequestValidator.validate(row.request());
+                if (!errors.isEmpty()) {
+                    job.rowInvalid(row.number(), errors);
+                    continue;
+                }
+                Product product = new Product();
+                product.setProductId(new ObjectId().toHexString());
+                ProductService.applyRequest(product, row.request());
+                product.setEventSeq(product.nextEventSeq());
+                batch.add(product);
+                rowNumbers.add(row.number());
+
+                if (batch.size() == batchSize) {
+                    await(inFlight);
+                    List<Product> full = batch;
+                    List<Long> fullRowNumbers = rowNumbers;
+                    inFlight = CompletableFuture.runAsync(() -> write(job, full, fullRowNumbers, touchedStoreIds), writers);
+                    batch = new ArrayList<>(batchSize);
+                    rowNumbers = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Let the batch being written finish before the import is reported as failed.
+            inFlight.exceptionally(failure -> null).join();
+            throw e;
+        }
+        await(inFlight);
+        if (!batch.isEmpty()) {
+            write(job, batch, rowNumbers, touchedStoreIds);
+        }
+    }
+
+    private void write(ImportJob job, List<Product> batch, List<Long> rowNumbers, Set<String> touchedStoreIds) {
+        Map<Integer, String> failures = productOutbox == null
+                ? productRepository.bulkInsert(batch)
+                : productOutbox.writeEach(batch, productRepository::bulkInsert, written -> written.stream()
+                        .map(product -> ProductChangeEvent.of(ProductChangeEvent.Type.CREATED, product))
+                        .toList());
+        for (int i = 0; i < batch.size(); i++) {
+            String failure = failures.get(i);
+            if (failure != null) {
+                job.rowFailed(rowNumbers.get(i), failure);
+                continue;
+            }
+            Product product = batch.get(i);
+            touchedStoreIds.add(product.getStoreId());
+        }
+        job.rowsImported(batch.size() - failures.size());
+        logger.debug("Import {} wrote a batch of {} products", job.getImportId(), batch.size());
+    }
+
+    /**
+     * Waits for the previous batch's write, rethrowing its failure.
+     */
+    private static void await(CompletableFuture<Void> inFlight) {
+        try {
+            inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
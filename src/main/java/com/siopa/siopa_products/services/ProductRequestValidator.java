@@ -0,0 +1,66 @@
+package com.siopa.siopa_products.services;
+
+import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductUpdateRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validates {@link ProductRequest}s that arrive in bulk rather than as a single request body.
+ * <p>
+ * Applies the same rules, with the same messages, as the constraint annotations on
+ * {@link ProductRequest} and {@link ProductUpdateRequest}, so a whole batch can be checked in one
+ * pass and every invalid item reported instead of failing the request on the first one.
+ */
+@Component
+public class ProductRequestValidator {
+
+    /**
+     * Validates the fields shared by create and update requests.
+     *
+     * @param request the request to validate.
+     * @return the validation errors; empty if the request is valid.
+     */
+    public List<String> validate(ProductRequest request) {
+        List<String> errors = new ArrayList<>();
+        if (request == null) {
+            errors.add("Product is required");
+            return errors;
+        }
+        if (isBlank(request.getName())) {
+            errors.add("Name is required");
+        }
+        if (request.getPrice() == null) {
+            errors.add("Price is required");
+        } else if (request.getPrice() < 0) {
+            errors.add("Price must be a positive number");
+        }
+        if (isBlank(request.getCategory())) {
+            errors.add("Category is required");
+        }
+        if (isBlank(request.getStoreId())) {
+            errors.add("Store is required");
+        }
+        return errors;
+    }
+
+    /**
+     * Validates an update request, including the identifier of the product to update.
+     *
+     * @param request the request to validate.
+     * @return the validation errors; empty if the request is valid.
+     */
+    public List<String> validate(ProductUpdateRequest request) {
+        List<String> errors = validate((ProductRequest) request);
+        if (request != null && isBlank(request.getProductId())) {
+            errors.add("Product ID is required");
+        }
+        return errors;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
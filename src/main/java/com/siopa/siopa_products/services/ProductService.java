@@ -1,27 +1,98 @@
 package com.siopa.siopa_products.services;
 
+import com.siopa.siopa_products.cache.ProductCache;
+import com.siopa.siopa_products.cache.RequestCoalescer;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshot;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.dto.ProductPage;
+import com.siopa.siopa_products.dto.ProductPatch;
 import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.dto.StockReductionResult;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.InvalidCursorException;
+import com.siopa.siopa_products.exceptions.InvalidPatchException;
+import com.siopa.siopa_products.exceptions.InvalidSearchException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.exceptions.StockShardingConflictException;
+import com.siopa.siopa_products.exceptions.StockShardingDisabledException;
+import com.siopa.siopa_products.inventory.InventoryLedger;
+import com.siopa.siopa_products.inventory.StockShards;
 import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.models.ProductListing;
+import com.siopa.siopa_products.outbox.ProductOutbox;
 import com.siopa.siopa_products.repositories.ProductRepository;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing product-related operations.
+ * <p>
+ * Every public method is timed in {@code siopa.products.service} with a percentile histogram, tagged
+ * with the {@code method} name.
+ * <p>
+ * When the {@link ProductOutbox} is enabled, every write records the events describing it in the
+ * same transaction, except stock decrements: they are frequent and contend on the same products, so
+ * they record their events after the write instead. Events carry the event sequence number that the
+ * write they describe gave the product.
  */
 @Service
+@Timed(value = "siopa.products.service", histogram = true)
 public class ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
 
+    private static final Pattern ATTRIBUTE_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @Autowired(required = false)
+    private InventoryLedger inventoryLedger;
+
+    @Autowired(required = false)
+    private StockShards stockShards;
+
+    @Autowired(required = false)
+    private ProductOutbox productOutbox;
+
+    @Value("${siopa.products.page.max-size:200}")
+    private int maxPageSize = 200;
+
     /**
      * Retrieves all products from the database.
      *
@@ -29,20 +100,155 @@ public class ProductService {
      */
     public List<Product> getAllProducts() {
         logger.info("Fetching all products");
-        List<Product> products = productRepository.findAll();
+        List<Product> products = withShardedStock(productRepository.findAll());
         logger.debug("Retrieved {} products from database", products.size());
         return products;
     }
 
+    /**
+     * Retrieves the summaries of all products, reading only the summary fields from the database.
+     *
+     * @return the summaries of all products.
+     */
+    public List<ProductSummary> getAllProductSummaries() {
+        logger.info("Fetching all product summaries");
+        List<ProductSummary> summaries = withShardedStock(productRepository.findAllSummaries());
+        logger.debug("Retrieved {} product summaries from database", summaries.size());
+        return summaries;
+    }
+
+    /**
+     * Retrieves a page of products ordered by product identifier.
+     * <p>
+     * Pages are addressed by keyset rather than offset: the cursor encodes the last identifier of the
+     * previous page, so every page is a single indexed range scan regardless of how deep it is.
+     *
+     * @param cursor the continuation token returned with the previous page, or {@code null} for the first page.
+     * @param limit the requested page size, capped at {@code siopa.products.page.max-size}.
+     * @return the requested page and the cursor for the next one.
+     * @throws InvalidCursorException if the cursor cannot be decoded.
+     */
+    public ProductPage<Product> getProductsPage(String cursor, int limit) {
+        return page(cursor, limit, Product.class);
+    }
+
+    /**
+     * Retrieves a page of product summaries ordered by product identifier.
+     *
+     * @param cursor the continuation token returned with the previous page, or {@code null} for the first page.
+     * @param limit the requested page size, capped at {@code siopa.products.page.max-size}.
+     * @return the requested page and the cursor for the next one.
+     * @throws InvalidCursorException if the cursor cannot be decoded.
+     * @see #getProductsPage(String, int)
+     */
+    public ProductPage<ProductSummary> getProductSummariesPage(String cursor, int limit) {
+        return page(cursor, limit, ProductSummary.class);
+    }
+
+    /**
+     * Searches products, pushing every filter and the sort order down to the database.
+     * <p>
+     * Results are paged by keyset on the sort field with the product identifier as tie-breaker, so
+     * only the requested slice of the matching products is read. Products with sharded stock are filtered
+     * and sorted on the copy of their total kept on the product, which may run ahead of their shards,
+     * and returned with the sum of their shards.
+     *
+     * @param criteria the filters and sort order of the search.
+     * @param cursor the continuation token returned with the previous page, or {@code null} for the first page.
+     * @param limit the requested page size, capped at {@code siopa.products.page.max-size}.
+     * @return the requested page of matching products and the cursor for the next one.
+     * @throws InvalidSearchException if the criteria contain an unsupported filter or sort field.
+     * @throws InvalidCursorException if the cursor cannot be decoded or belongs to a different sort order.
+     */
+    public ProductPage<Product> searchProducts(ProductSearchCriteria criteria, String cursor, int limit) {
+        return search(criteria, cursor, limit, Product.class);
+    }
+
+    /**
+     * Searches products and returns their summaries.
+     *
+     * @param criteria the filters and sort order of the search.
+     * @param cursor the continuation token returned with the previous page, or {@code null} for the first page.
+     * @param limit the requested page size, capped at {@code siopa.products.page.max-size}.
+     * @return the requested page of matching product summaries and the cursor for the next one.
+     * @throws InvalidSearchException if the criteria contain an unsupported filter or sort field.
+     * @throws InvalidCursorException if the cursor cannot be decoded or belongs to a different sort order.
+     * @see #searchProducts(ProductSearchCriteria, String, int)
+     */
+    public ProductPage<ProductSummary> searchProductSummaries(ProductSearchCriteria criteria, String cursor, int limit) {
+        return search(criteria, cursor, limit, ProductSummary.class);
+    }
+
+    private <T extends ProductListing> ProductPage<T> page(String cursor, int limit, Class<T> resultType) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        String afterProductId = cursor == null ? null : decodeCursor(cursor);
+        logger.info("Fetching page of {} products after ID: {}", pageSize, afterProductId);
+
+        List<T> items = withShardedStock(productRepository.findPageAfter(afterProductId, pageSize + 1, resultType));
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            nextCursor = encodeCursor(items.get(pageSize - 1).getProductId());
+        }
+        logger.debug("Retrieved {} products, more available: {}", items.size(), nextCursor != null);
+        return new ProductPage<>(items, nextCursor);
+    }
+
+    private <T extends ProductListing> ProductPage<T> search(ProductSearchCriteria criteria, String cursor, int limit, Class<T> resultType) {
+        validateSearch(criteria);
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        String sortField = criteria.getSortField();
+
+        Object afterSortValue = null;
+        String afterProductId = null;
+        if (cursor != null) {
+            String[] position = decodeCursor(cursor).split("\\|", 3);
+            if (position.length != 3 || !position[0].equals(sortField)) {
+                throw new InvalidCursorException(cursor);
+            }
+            afterSortValue = parseSortValue(sortField, position[1], cursor);
+            afterProductId = position[2];
+        }
+        logger.info("Searching {} products with {}", pageSize, criteria);
+
+        List<T> items = productRepository.search(criteria, afterSortValue, afterProductId, pageSize + 1, resultType);
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            // Taken before the shards are summed: the search sorted on the stored quantity.
+            T last = items.get(pageSize - 1);
+            nextCursor = encodeCursor(sortField + "|" + sortValueOf(last, sortField) + "|" + last.getProductId());
+        }
+        withShardedStock(items);
+        logger.debug("Search returned {} products, more available: {}", items.size(), nextCursor != null);
+        return new ProductPage<>(items, nextCursor);
+    }
+
+    /**
+     * Streams every product to the given sink straight from a database cursor, without collecting
+     * the catalog in memory.
+     *
+     * @param sink receives each product in turn.
+     */
+    public void streamAllProducts(Consumer<Product> sink) {
+        logger.info("Streaming all products");
+        try (Stream<Product> products = productRepository.streamAll()) {
+            products.forEach(sink);
+        }
+    }
+
     /**
      * Retrieves a product by its unique identifier.
+     * <p>
+     * Served from the {@link ProductCache} when possible. Concurrent cache misses for the same product
+     * are coalesced into a single database call.
      *
      * @param id the unique identifier of the product.
      * @return an {@link Optional} containing the product if found, otherwise empty.
      */
     public Optional<Product> getProductById(String id) {
         logger.info("Fetching product with ID: {}", id);
-        Optional<Product> product = productRepository.findById(id);
+        Optional<Product> product = productCache.get(id, this::loadProduct);
         if (product.isPresent()) {
             logger.debug("Product found: {}", product.get());
         } else {
@@ -51,19 +257,71 @@ public class ProductService {
         return product;
     }
 
+    /**
+     * Loads a product with its sharded stock, or the stock held by the {@link InventoryLedger}, on a
+     * cache miss, sharing the database call between concurrent misses.
+     */
+    private Optional<Product> loadProduct(String id) {
+        return requestCoalescer.coalesce("getProductById", id,
+                () -> productRepository.findById(id).map(found -> withLedgerStock(withShardedStock(List.of(found)).get(0))));
+    }
+
+    /**
+     * @return a copy of the product carrying its stock in the {@link InventoryLedger} if the ledger holds
+     * it, which is newer than the last flush; otherwise the product itself.
+     */
+    private Product withLedgerStock(Product product) {
+        if (inventoryLedger == null) {
+            return product;
+        }
+        OptionalInt held = inventoryLedger.quantityOf(product.getProductId());
+        return held.isPresent() ? product.withQuantity(held.getAsInt()) : product;
+    }
+
     /**
      * Retrieves all products belonging to a specific store.
+     * <p>
+     * Concurrent requests for the same store share a single database call; the returned list must
+     * therefore be treated as read-only.
      *
      * @param storeId the unique identifier of the store.
      * @return a list of products associated with the specified store.
      */
     public List<Product> getProductsByStoreId(String storeId) {
         logger.info("Fetching products for Store ID: {}", storeId);
-        List<Product> products = productRepository.findByStoreId(storeId);
+        List<Product> products = requestCoalescer.coalesce("getProductsByStoreId", storeId,
+                () -> withShardedStock(productRepository.findByStoreId(storeId)));
         logger.debug("Found {} products for Store ID: {}", products.size(), storeId);
         return products;
     }
 
+    /**
+     * Retrieves the pre-serialized product listing of a store.
+     * <p>
+     * The snapshot is only rebuilt after a product of the store has been written, so repeated polls of
+     * an unchanged catalog neither query the database nor re-serialize the products.
+     *
+     * @param storeId the unique identifier of the store.
+     * @return the current catalog snapshot of the store.
+     */
+    public StoreCatalogSnapshot getStoreCatalog(String storeId) {
+        logger.info("Fetching catalog snapshot for Store ID: {}", storeId);
+        return storeCatalogSnapshots.get(storeId, ProductView.FULL, () -> getProductsByStoreId(storeId));
+    }
+
+    /**
+     * Retrieves the pre-serialized product summary listing of a store.
+     *
+     * @param storeId the unique identifier of the store.
+     * @return the current catalog summary snapshot of the store.
+     * @see #getStoreCatalog(String)
+     */
+    public StoreCatalogSnapshot getStoreCatalogSummary(String storeId) {
+        logger.info("Fetching catalog summary snapshot for Store ID: {}", storeId);
+        return storeCatalogSnapshots.get(storeId, ProductView.SUMMARY,
+                () -> withShardedStock(productRepository.findSummariesByStoreId(storeId)));
+    }
+
     /**
      * Creates a new product in the database.
      *
@@ -74,15 +332,13 @@ public class ProductService {
         logger.info("Creating a new product: {}", productRequest.getName());
 
         Product product = new Product();
-        product.setName(productRequest.getName());
-        product.setPrice(productRequest.getPrice());
-        product.setCategory(productRequest.getCategory());
-        product.setDescription(productRequest.getDescription());
-        product.setStoreId(productRequest.getStoreId());
-        product.setQuantity(productRequest.getQuantity());
-        product.setAttributes(productRequest.getAttributes());
+        applyRequest(product, productRequest);
+        product.setEventSeq(product.nextEventSeq());
 
-        Product savedProduct = productRepository.save(product);
+        Product savedProduct = recorded(() -> productRepository.save(product),
+                saved -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.CREATED, saved)));
+        productCache.put(savedProduct);
+        storeCatalogSnapshots.invalidate(savedProduct.getStoreId());
         logger.info("Product created successfully with ID: {}", savedProduct.getProductId());
 
         return savedProduct;
@@ -94,26 +350,32 @@ public class ProductService {
      * @param id the unique identifier of the product to be updated.
      * @param productRequest the request object containing updated product details.
      * @return the updated product.
-     * @throws RuntimeException if the product is not found.
+     * @throws ProductNotFoundException if the product is not found.
      */
     public Product updateProduct(String id, ProductRequest productRequest) {
         logger.info("Updating product with ID: {}", id);
+        releaseFromLedger(id);
 
         return productRepository.findById(id).map(existingProduct -> {
-            existingProduct.setName(productRequest.getName());
-            existingProduct.setPrice(productRequest.getPrice());
-            existingProduct.setCategory(productRequest.getCategory());
-            existingProduct.setDescription(productRequest.getDescription());
-            existingProduct.setStoreId(productRequest.getStoreId());
-            existingProduct.setQuantity(productRequest.getQuantity());
-            existingProduct.setAttributes(productRequest.getAttributes());
-
-            Product updatedProduct = productRepository.save(existingProduct);
+            String previousStoreId = existingProduct.getStoreId();
+            applyRequest(existingProduct, productRequest);
+            existingProduct.setEventSeq(existingProduct.nextEventSeq());
+            Integer shards = existingProduct.getStockShards();
+
+            Product updatedProduct = recorded(() -> {
+                if (shards != null && stockShards != null) {
+                    stockShards.assign(id, shards, productRequest.getQuantity());
+                }
+                return withShardedStock(List.of(productRepository.save(existingProduct))).get(0);
+            }, saved -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.UPDATED, saved)));
+            productCache.put(updatedProduct);
+            storeCatalogSnapshots.invalidate(previousStoreId);
+            storeCatalogSnapshots.invalidate(updatedProduct.getStoreId());
             logger.info("Product ID {} updated successfully", id);
             return updatedProduct;
         }).orElseThrow(() -> {
             logger.error("Product with ID {} not found for update", id);
-            return new RuntimeException("Product not found");
+            return new ProductNotFoundException(id);
         });
     }
 
@@ -124,57 +386,493 @@ public class ProductService {
      */
     public void deleteProduct(String id) {
         logger.warn("Deleting product with ID: {}", id);
-        productRepository.deleteById(id);
+        releaseFromLedger(id);
+        recorded(() -> productRepository.findAndRemoveById(id).map(ProductService::removed), deleted -> deleted
+                .map(product -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.DELETED, product)))
+                .orElse(List.of())).ifPresent(deletedProduct -> {
+            if (deletedProduct.getStockShards() != null && stockShards != null) {
+                stockShards.discard(id);
+            }
+            storeCatalogSnapshots.invalidate(deletedProduct.getStoreId());
+        });
+        productCache.evict(id);
         logger.info("Product with ID {} deleted successfully", id);
     }
 
     /**
-     * Updates the quantity of a product.
+     * Applies a JSON merge patch to a product.
+     * <p>
+     * Only the supplied fields are written, in a single update without reading the product first, so
+     * the patch neither rewrites unchanged fields nor overwrites concurrent stock decrements unless it
+     * sets the quantity itself. The quantity of a product with sharded stock is written to its shards,
+     * in the same transaction when the outbox is enabled; either way the patch is recorded as one event.
+     *
+     * @param id the unique identifier of the product to be patched.
+     * @param mergePatch the merge patch document.
+     * @return the patched product.
+     * @throws InvalidPatchException if the patch names an unknown field, supplies an invalid value or
+     * sets an attribute under a value that is not an object.
+     * @throws ProductNotFoundException if the product is not found.
+     */
+    public Product patchProduct(String id, Map<String, Object> mergePatch) {
+        ProductPatch patch = ProductPatch.fromMergePatch(mergePatch);
+        logger.info("Patching product with ID: {}, setting {}, removing {}", id, patch.set().keySet(), patch.unset());
+        if (patch.isEmpty()) {
+            return getProductById(id).orElseThrow(() -> new ProductNotFoundException(id));
+        }
+
+        Integer quantity = (Integer) patch.set().get("quantity");
+        if (quantity != null) {
+            releaseFromLedger(id);
+        }
+        PatchedProduct patched = recorded(() -> {
+            Optional<Product> previous = productRepository.patchFields(id, patch.set(), patch.unset());
+            Long eventSeq = previous.map(Product::nextEventSeq).orElse(null);
+            if (previous.isEmpty() && quantity != null) {
+                // The stock may be sharded, in which case the quantity is written to the shards instead.
+                Map<String, Object> otherFields = new LinkedHashMap<>(patch.set());
+                otherFields.remove("quantity");
+                previous = otherFields.isEmpty() && patch.unset().isEmpty()
+                        ? productRepository.findById(id)
+                        : productRepository.patchFields(id, otherFields, patch.unset());
+                if (previous.isPresent()) {
+                    eventSeq = writeRejectedQuantity(previous.get(), quantity);
+                }
+            }
+
+            Product previousProduct = previous.orElseThrow(() -> patchRejected(id));
+            String previousStoreId = previousProduct.getStoreId();
+            Product patchedProduct = patch.applyTo(previousProduct);
+            patchedProduct.setEventSeq(eventSeq);
+            return new PatchedProduct(previousStoreId,
+                    quantity != null ? patchedProduct : withShardedStock(List.of(patchedProduct)).get(0));
+        }, result -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.UPDATED, result.product())));
+
+        Product updatedProduct = patched.product();
+        productCache.put(updatedProduct);
+        storeCatalogSnapshots.invalidate(patched.previousStoreId());
+        storeCatalogSnapshots.invalidate(updatedProduct.getStoreId());
+        logger.info("Product ID {} patched successfully", id);
+        return updatedProduct;
+    }
+
+    /**
+     * Tells why a patch matched no product: the product does not exist, or it does but one of the
+     * attribute paths the patch sets runs through a value that is not an object.
+     */
+    private RuntimeException patchRejected(String id) {
+        if (!productRepository.existsById(id)) {
+            logger.error("Product with ID {} not found for patch", id);
+            return new ProductNotFoundException(id);
+        }
+        logger.warn("Patch of Product ID {} sets an attribute under a value that is not an object", id);
+        return new InvalidPatchException("Patch sets an attribute under a value that is not an object");
+    }
+
+    /**
+     * Updates the quantity of a product with a single write, without reading it first.
+     * <p>
+     * The quantity of a product with sharded stock is spread across its shards instead.
      *
      * @param productId the unique identifier of the product.
      * @param quantity the new quantity to be updated.
      * @return the updated product with the new quantity.
-     * @throws RuntimeException if the product is not found.
+     * @throws ProductNotFoundException if the product is not found.
+     * @throws StockShardingDisabledException if the product is sharded but sharding is disabled.
      */
     public Product updateProductQuantity(String productId, int quantity) {
         logger.info("Updating quantity for Product ID: {} to {}", productId, quantity);
+        releaseFromLedger(productId);
 
-        return productRepository.findById(productId).map(product -> {
+        Product updatedProduct = recorded(() -> productRepository.setQuantity(productId, quantity).orElseGet(() -> {
+            Product product = productRepository.findById(productId).orElseThrow(() -> {
+                logger.error("Product with ID {} not found for quantity update", productId);
+                return new ProductNotFoundException(productId);
+            });
+            product.setEventSeq(writeRejectedQuantity(product, quantity));
             product.setQuantity(quantity);
-            Product updatedProduct = productRepository.save(product);
-            logger.info("Product ID {} quantity updated to {}", productId, quantity);
-            return updatedProduct;
-        }).orElseThrow(() -> {
-            logger.error("Product with ID {} not found for quantity update", productId);
-            return new RuntimeException("Product not found");
-        });
+            return product;
+        }), product -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product)));
+        productCache.put(updatedProduct);
+        storeCatalogSnapshots.invalidate(updatedProduct.getStoreId());
+        logger.info("Product ID {} quantity updated to {}", productId, quantity);
+        return updatedProduct;
+    }
+
+    /**
+     * Writes a quantity that the direct update of a product rejected: to the shards of a product with
+     * sharded stock, or once more to the product itself if its stock was merged back from its shards
+     * since the update was attempted.
+     *
+     * @param product the product as read after the rejected update.
+     * @return the product's event sequence number after the write.
+     * @throws StockShardingDisabledException if the product is sharded but sharding is disabled.
+     * @throws StockShardingConflictException if the product was sharded again in the meantime.
+     * @throws ProductNotFoundException if the product was deleted in the meantime.
+     */
+    private Long writeRejectedQuantity(Product product, int quantity) {
+        String productId = product.getProductId();
+        if (product.getStockShards() == null) {
+            return productRepository.setQuantity(productId, quantity)
+                    .orElseThrow(() -> new StockShardingConflictException(productId))
+                    .getEventSeq();
+        }
+        if (stockShards == null) {
+            throw new StockShardingDisabledException();
+        }
+        stockShards.assign(productId, product.getStockShards(), quantity);
+        logger.info("Product ID {} sharded quantity set to {}", productId, quantity);
+        return productRepository.nextEventSeq(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+    }
+
+    /**
+     * Splits a product's stock across several shards so concurrent orders for it do not all update the
+     * same document, or merges it back into the product.
+     *
+     * @param productId the unique identifier of the product.
+     * @param shards the number of shards, or {@code 0} to stop sharding.
+     * @return the product, with its quantity summed over the new shards.
+     * @throws StockShardingDisabledException if {@code siopa.inventory.shards.enabled} is not set.
+     * @throws ProductNotFoundException if the product is not found.
+     * @see StockShards#reshard(String, int)
+     */
+    public Product updateStockShards(String productId, int shards) {
+        if (stockShards == null) {
+            throw new StockShardingDisabledException();
+        }
+        logger.info("Splitting stock of Product ID {} across {} shards", productId, shards);
+        releaseFromLedger(productId);
+        stockShards.reshard(productId, shards);
+        productCache.evict(productId);
+        Product product = getProductById(productId).orElseThrow(() -> new ProductNotFoundException(productId));
+        storeCatalogSnapshots.invalidate(product.getStoreId());
+        return product;
     }
 
     /**
      * Reduces the quantity of a product when an item is purchased or reserved.
+     * <p>
+     * The stock check and the decrement happen in a single atomic database operation, so concurrent
+     * orders for the same product cannot oversell it. The existence check only runs when the
+     * decrement is rejected, to tell a missing product apart from an out-of-stock one.
      *
      * @param productId the unique identifier of the product.
      * @param quantity the amount to reduce from the current stock.
      * @return the updated product after reducing the quantity.
-     * @throws RuntimeException if the product is not found or if there is insufficient stock.
+     * @throws ProductNotFoundException if the product is not found.
+     * @throws InsufficientStockException if there is insufficient stock.
      */
     public Product reduceProductQuantity(String productId, int quantity) {
-        logger.info("Reducing quantity for Product ID: {} by {}", productId, quantity);
+        return reduceProductQuantity(productId, quantity, null);
+    }
 
-        return productRepository.findById(productId).map(product -> {
-            if (product.getQuantity() < quantity) {
-                logger.error("Insufficient stock for Product ID: {}. Available: {}, Requested: {}",
-                        productId, product.getQuantity(), quantity);
-                throw new RuntimeException("Insufficient stock for product: " + productId);
+    /**
+     * Reduces the quantity of a product for an identified order, at most once per order.
+     * <p>
+     * The product records the identifiers of its most recently applied orders in the same write as the
+     * decrement. A redelivered order leaves the stock untouched and returns the product as it is.
+     * <p>
+     * Products held by the {@link InventoryLedger} are decremented in memory instead, at most once per
+     * order as well, and products with {@link StockShards sharded stock} in one of their shards, which
+     * record the order on the shard they take it from.
+     *
+     * @param productId the unique identifier of the product.
+     * @param quantity the amount to reduce from the current stock.
+     * @param orderId the identifier of the order, or {@code null} to apply it unconditionally.
+     * @return the updated product, or the current product if the order was already applied.
+     * @throws ProductNotFoundException if the product is not found.
+     * @throws InsufficientStockException if there is insufficient stock.
+     */
+    public Product reduceProductQuantity(String productId, int quantity, String orderId) {
+        logger.info("Reducing quantity for Product ID: {} by {}", productId, quantity);
+        if (inventoryLedger != null && inventoryLedger.manages(productId)) {
+            return reduceInLedger(productId, quantity, orderId);
+        }
+        if (stockShards != null && stockShards.manages(productId)) {
+            if (orderId != null && stockShards.hasApplied(productId, orderId)) {
+                logger.info("Order {} was already applied to Product ID {}, skipping", orderId, productId);
+                return getProductById(productId).orElseThrow(() -> new ProductNotFoundException(productId));
             }
+            Optional<Product> reduced = recorded(
+                    () -> withRemainingStock(productId, stockShards.reduce(productId, quantity, orderId))
+                            .map(this::withNextEventSeq),
+                    ProductService::stockChanged);
+            if (reduced.isPresent()) {
+                return reducedInShards(reduced.get(), quantity);
+            }
+        }
 
-            product.setQuantity(product.getQuantity() - quantity);
-            Product updatedProduct = productRepository.save(product);
-            logger.info("Product ID {} quantity reduced by {}. New quantity: {}", productId, quantity, product.getQuantity());
+        Optional<Product> decremented = recorded(
+                () -> productRepository.decrementQuantityIfAvailable(productId, quantity, orderId),
+                ProductService::stockChanged);
+        return decremented.map(updatedProduct -> {
+            // Evicted rather than cached: concurrent decrements can finish in either order.
+            productCache.evict(productId);
+            storeCatalogSnapshots.invalidate(updatedProduct.getStoreId());
+            logger.info("Product ID {} quantity reduced by {}. New quantity: {}",
+                    productId, quantity, updatedProduct.getQuantity());
             return updatedProduct;
+        }).or(() -> {
+            if (orderId == null) {
+                return Optional.empty();
+            }
+            Optional<Product> alreadyApplied = productRepository.findByProductIdAndAppliedOrderIds(productId, orderId);
+            alreadyApplied.ifPresent(product ->
+                    logger.info("Order {} was already applied to Product ID {}, skipping", orderId, productId));
+            return alreadyApplied;
         }).orElseThrow(() -> {
-            logger.error("Product with ID {} not found for quantity reduction", productId);
-            return new RuntimeException("Product not found");
+            if (!productRepository.existsById(productId)) {
+                logger.error("Product with ID {} not found for quantity reduction", productId);
+                return new ProductNotFoundException(productId);
+            }
+            logger.error("Insufficient stock for Product ID: {}. Requested: {}", productId, quantity);
+            return new InsufficientStockException(productId);
         });
     }
+
+    /**
+     * Reduces product quantities for a batch of orders.
+     * <p>
+     * Orders are merged per product and applied with a single bulk write. When a product's merged
+     * decrement cannot be applied as a whole, its orders fall back to individual atomic decrements
+     * in their original order, so as many of them as the remaining stock allows still succeed.
+     * Identified orders are applied at most once, as in {@link #reduceProductQuantity(String, int, String)};
+     * an order that was already applied is reported as applied. Orders for products held by the
+     * {@link InventoryLedger} or with sharded stock skip the bulk write and are applied individually.
+     *
+     * @param orders the orders to apply, in the order they were received.
+     * @return one result per order, in the same order as {@code orders}.
+     */
+    public List<StockReductionResult> reduceProductQuantities(List<ProductOrderMessage> orders) {
+        logger.info("Reducing quantities for a batch of {} orders", orders.size());
+
+        Map<String, Integer> decrements = new LinkedHashMap<>();
+        Map<String, List<String>> orderIds = new HashMap<>();
+        for (ProductOrderMessage order : orders) {
+            if (inventoryLedger != null && inventoryLedger.manages(order.getProductId())
+                    || stockShards != null && stockShards.manages(order.getProductId())) {
+                continue;
+            }
+            decrements.merge(order.getProductId(), order.getQuantity(), Integer::sum);
+            if (order.getOrderId() != null) {
+                orderIds.computeIfAbsent(order.getProductId(), id -> new ArrayList<>()).add(order.getOrderId());
+            }
+        }
+        List<Product> applied = decrements.isEmpty() ? List.of() : recorded(
+                () -> productRepository.bulkDecrementQuantities(decrements, orderIds),
+                products -> products.stream()
+                        .map(product -> ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product))
+                        .toList());
+        Set<String> appliedProductIds = new HashSet<>();
+        Set<String> appliedStoreIds = new HashSet<>();
+        for (Product product : applied) {
+            appliedProductIds.add(product.getProductId());
+            appliedStoreIds.add(product.getStoreId());
+        }
+        productCache.evictAll(appliedProductIds);
+        appliedStoreIds.forEach(storeCatalogSnapshots::invalidate);
+        logger.debug("Bulk decrement applied to {} of {} products", appliedProductIds.size(), decrements.size());
+
+        List<StockReductionResult> results = new ArrayList<>(orders.size());
+        for (ProductOrderMessage order : orders) {
+            if (appliedProductIds.contains(order.getProductId())) {
+                results.add(new StockReductionResult(order, StockReductionResult.Outcome.APPLIED));
+            } else {
+                results.add(reduceIndividually(order));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reduces the quantity of a product held by the {@link InventoryLedger}.
+     *
+     * @return a copy of the product carrying the remaining stock.
+     */
+    private Product reduceInLedger(String productId, int quantity, String orderId) {
+        Product updatedProduct = inventoryLedger.reduce(productId, quantity, orderId);
+        productCache.evict(productId);
+        storeCatalogSnapshots.invalidate(updatedProduct.getStoreId());
+        logger.info("Product ID {} quantity reduced by {} in the inventory ledger. New quantity: {}",
+                productId, quantity, updatedProduct.getQuantity());
+        return updatedProduct;
+    }
+
+    /**
+     * Copies a product whose stock was just reduced in its shards, carrying the remaining total. The
+     * other fields come from the cache, as the shards do not touch the product document.
+     *
+     * @return the copy, or empty if the product is not sharded after all or no longer exists.
+     */
+    private Optional<Product> withRemainingStock(String productId, OptionalInt remaining) {
+        if (remaining.isEmpty()) {
+            return Optional.empty();
+        }
+        return productCache.get(productId, this::loadProduct)
+                .map(product -> product.withQuantity(remaining.getAsInt()));
+    }
+
+    /**
+     * Evicts a product whose stock was just reduced in its shards, so the next read sums them again.
+     */
+    private Product reducedInShards(Product updatedProduct, int quantity) {
+        productCache.evict(updatedProduct.getProductId());
+        storeCatalogSnapshots.invalidate(updatedProduct.getStoreId());
+        logger.info("Product ID {} quantity reduced by {} in its stock shards. New quantity: {}",
+                updatedProduct.getProductId(), quantity, updatedProduct.getQuantity());
+        return updatedProduct;
+    }
+
+    /**
+     * Replaces the stored quantity of sharded products with the sum of their shards.
+     *
+     * @param items products or product summaries; updated in place.
+     * @return {@code items}.
+     */
+    private <T extends ProductListing> List<T> withShardedStock(List<T> items) {
+        if (stockShards == null || items.isEmpty()) {
+            return items;
+        }
+        Map<String, T> sharded = new HashMap<>();
+        for (T item : items) {
+            if (item.getStockShards() != null) {
+                sharded.put(item.getProductId(), item);
+            }
+        }
+        if (!sharded.isEmpty()) {
+            stockShards.totals(sharded.keySet())
+                    .forEach((productId, total) -> sharded.get(productId).setQuantity(total));
+        }
+        return items;
+    }
+
+    /**
+     * Performs a write, recording the events describing it in the {@link ProductOutbox} in the same
+     * transaction when the outbox is enabled. Concurrent decrements of one product abort each other's
+     * transactions; the outbox runs them again.
+     */
+    private <T> T recorded(Supplier<T> write, Function<? super T, List<ProductChangeEvent>> events) {
+        return productOutbox == null ? write.get() : productOutbox.write(write, events);
+    }
+
+    /**
+     * Gives a product whose stock was reduced in its shards the next event sequence number of its
+     * document when the outbox is enabled, so its event is ordered among the product's other events.
+     * This writes the product document on every sharded decrement, but only while events are recorded.
+     */
+    private Product withNextEventSeq(Product product) {
+        if (productOutbox != null) {
+            productRepository.nextEventSeq(product.getProductId()).ifPresent(product::setEventSeq);
+        }
+        return product;
+    }
+
+    /**
+     * @return the removed product, carrying the event sequence number of its removal.
+     */
+    private static Product removed(Product product) {
+        product.setEventSeq(product.nextEventSeq());
+        return product;
+    }
+
+    private static List<ProductChangeEvent> stockChanged(Optional<Product> updated) {
+        return updated.map(product -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product)))
+                .orElse(List.of());
+    }
+
+    /**
+     * Hands a product's stock back to the database before it is written directly.
+     */
+    private void releaseFromLedger(String productId) {
+        if (inventoryLedger != null) {
+            inventoryLedger.release(productId);
+        }
+    }
+
+    /**
+     * Applies a single order, translating the failure exceptions into a result.
+     */
+    private StockReductionResult reduceIndividually(ProductOrderMessage order) {
+        try {
+            reduceProductQuantity(order.getProductId(), order.getQuantity(), order.getOrderId());
+            return new StockReductionResult(order, StockReductionResult.Outcome.APPLIED);
+        } catch (ProductNotFoundException e) {
+            return new StockReductionResult(order, StockReductionResult.Outcome.NOT_FOUND);
+        } catch (InsufficientStockException e) {
+            return new StockReductionResult(order, StockReductionResult.Outcome.INSUFFICIENT_STOCK);
+        }
+    }
+
+    /**
+     * Copies every field of a request onto a product.
+     *
+     * @param product the product to update.
+     * @param productRequest the request containing the product details.
+     */
+    static void applyRequest(Product product, ProductRequest productRequest) {
+        product.setName(productRequest.getName());
+        product.setPrice(productRequest.getPrice());
+        product.setCategory(productRequest.getCategory());
+        product.setDescription(productRequest.getDescription());
+        product.setStoreId(productRequest.getStoreId());
+        product.setQuantity(productRequest.getQuantity());
+        product.setAttributes(productRequest.getAttributes());
+    }
+
+    /**
+     * The result of a patch: the product after it and the store it belonged to before.
+     */
+    private record PatchedProduct(String previousStoreId, Product product) {
+    }
+
+    private static void validateSearch(ProductSearchCriteria criteria) {
+        if (!ProductSearchCriteria.SORTABLE_FIELDS.contains(criteria.getSortField())) {
+            throw new InvalidSearchException("Unsupported sort field: " + criteria.getSortField());
+        }
+        if (criteria.getMinPrice() != null && criteria.getMaxPrice() != null
+                && criteria.getMinPrice() > criteria.getMaxPrice()) {
+            throw new InvalidSearchException("minPrice must not be greater than maxPrice");
+        }
+        for (String attribute : criteria.getAttributes().keySet()) {
+            if (!ATTRIBUTE_NAME.matcher(attribute).matches()) {
+                throw new InvalidSearchException("Unsupported attribute name: " + attribute);
+            }
+        }
+    }
+
+    /**
+     * Reads the value of a supported sort field from a product or product summary.
+     */
+    private static Object sortValueOf(ProductListing item, String sortField) {
+        return switch (sortField) {
+            case "price" -> item.getPrice();
+            case "quantity" -> item.getQuantity();
+            default -> item.getProductId();
+        };
+    }
+
+    private static Object parseSortValue(String sortField, String value, String cursor) {
+        try {
+            return switch (sortField) {
+                case "price" -> Double.parseDouble(value);
+                case "quantity" -> Integer.parseInt(value);
+                default -> value;
+            };
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    private static String encodeCursor(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package com.siopa.siopa_products.services;
+
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.exceptions.BulkRequestTooLargeException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductListing;
+import com.siopa.siopa_products.repositories.ReactiveProductRepository;
+import com.siopa.siopa_products.repositories.ReactiveProductStockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-blocking read operations on products, for callers that fan out to many lookups at once.
+ * <p>
+ * Reads go straight to the database; they do not consult or populate the in-process product cache,
+ * which belongs to the blocking read path. With {@code siopa.inventory.shards.enabled=true} the quantity
+ * of sharded products is filled in from their shards, {@value #SHARD_LOOKUP_BATCH} products per lookup,
+ * as on the blocking path. Products held by the {@code InventoryLedger} are read as last flushed to the
+ * database, so like catalog listings their quantity lags the ledger by up to one flush interval.
+ */
+@Service
+public class ReactiveProductService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveProductService.class);
+
+    /**
+     * Number of products whose shards are summed in one aggregation.
+     */
+    static final int SHARD_LOOKUP_BATCH = 100;
+
+    @Autowired
+    private ReactiveProductRepository reactiveProductRepository;
+
+    @Autowired
+    private ReactiveProductStockShardRepository reactiveProductStockShardRepository;
+
+    @Value("${siopa.inventory.shards.enabled:false}")
+    private boolean stockShardsEnabled;
+
+    @Value("${siopa.products.bulk.max-items:10000}")
+    private int maxIds;
+
+    /**
+     * Retrieves a product by its unique identifier.
+     *
+     * @param id the unique identifier of the product.
+     * @return the product.
+     * @throws ProductNotFoundException signalled if no product has the identifier.
+     */
+    public Mono<Product> getProductById(String id) {
+        logger.debug("Reactively fetching product with ID: {}", id);
+        return withShardedStock(reactiveProductRepository.findById(id).flux())
+                .next()
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException(id)));
+    }
+
+    /**
+     * Retrieves the products with the given identifiers in a single query.
+     * Identifiers that match no product are skipped.
+     *
+     * @param ids the unique identifiers of the products.
+     * @return the products found, in no particular order.
+     * @throws BulkRequestTooLargeException if more than {@code siopa.products.bulk.max-items} identifiers are given.
+     */
+    public Flux<Product> getProductsByIds(Collection<String> ids) {
+        if (ids.size() > maxIds) {
+            throw new BulkRequestTooLargeException(ids.size(), maxIds);
+        }
+        logger.debug("Reactively fetching {} products by ID", ids.size());
+        return withShardedStock(reactiveProductRepository.findAllById(ids));
+    }
+
+    /**
+     * Retrieves all products belonging to a specific store.
+     *
+     * @param storeId the unique identifier of the store.
+     * @param view the representation to read the products in.
+     * @return the store's products.
+     */
+    public Flux<?> getProductsByStoreId(String storeId, ProductView view) {
+        logger.debug("Reactively fetching {} products for Store ID: {}", view, storeId);
+        return withShardedStock(reactiveProductRepository.findByStoreId(storeId, typeOf(view)));
+    }
+
+    /**
+     * Retrieves all products.
+     *
+     * @param view the representation to read the products in.
+     * @return all products.
+     */
+    public Flux<?> getAllProducts(ProductView view) {
+        logger.debug("Reactively fetching all {} products", view);
+        return withShardedStock(reactiveProductRepository.findAllBy(typeOf(view)));
+    }
+
+    /**
+     * Replaces the stored quantity of sharded products with the sum of their shards, looking the shards
+     * up for a batch of products at a time.
+     */
+    private <T extends ProductListing> Flux<T> withShardedStock(Flux<T> products) {
+        if (!stockShardsEnabled) {
+            return products;
+        }
+        return products.buffer(SHARD_LOOKUP_BATCH).concatMap(batch -> {
+            Map<String, T> sharded = new HashMap<>();
+            for (T product : batch) {
+                if (product.getStockShards() != null) {
+                    sharded.put(product.getProductId(), product);
+                }
+            }
+            if (sharded.isEmpty()) {
+                return Flux.fromIterable(batch);
+            }
+            return reactiveProductStockShardRepository.sumQuantities(sharded.keySet())
+                    .doOnNext(total -> sharded.get(total.productId()).setQuantity(total.total()))
+                    .thenMany(Flux.fromIterable(batch));
+        });
+    }
+
+    private static Class<? extends ProductListing> typeOf(ProductView view) {
+        return switch (view) {
+            case FULL -> Product.class;
+            case SUMMARY -> ProductSummary.class;
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.siopa.siopa_products.actuator;
+
+import com.mongodb.ExplainVerbosity;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.models.Product;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductQueryPlanEndpoint}.
+ */
+class ProductQueryPlanEndpointTest {
+
+    /**
+     * Tests that every query shape constrains the leading key of an index declared on {@link Product},
+     * so none of them is planned as a collection scan.
+     */
+    @Test
+    void queryShapes_ShouldEachBeServedByDeclaredIndex() {
+        List<String> leadingKeys = new ArrayList<>(List.of("_id"));
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(new MongoMappingContext());
+        for (IndexDefinition index : resolver.resolveIndexFor(Product.class)) {
+            leadingKeys.add(index.getIndexKeys().keySet().iterator().next());
+        }
+
+        for (ProductQueryPlanEndpoint.QueryShape shape : ProductQueryPlanEndpoint.QUERY_SHAPES) {
+            Set<String> filtered = new HashSet<>();
+            collectFields(shape.filter().toBsonDocument(), filtered);
+            assertTrue(leadingKeys.stream().anyMatch(filtered::contains),
+                    shape.name() + " filters on " + filtered + " but no index leads with any of them: " + leadingKeys);
+        }
+    }
+
+    /**
+     * Tests that a search shape with every search filter set exists for each sortable field, each with
+     * the product identifier as tie-breaker.
+     */
+    @Test
+    void queryShapes_ShouldCoverEverySearchSort() {
+        Set<String> sorts = new HashSet<>();
+        for (ProductQueryPlanEndpoint.QueryShape shape : ProductQueryPlanEndpoint.QUERY_SHAPES) {
+            if (!shape.name().startsWith("search") || shape.sort() == null) {
+                continue;
+            }
+            Set<String> filtered = new HashSet<>();
+            collectFields(shape.filter().toBsonDocument(), filtered);
+            if (!filtered.containsAll(Set.of("category", "price", "quantity", "attributes.color"))) {
+                continue;
+            }
+            List<String> sortKeys = new ArrayList<>(shape.sort().toBsonDocument().keySet());
+            assertEquals("_id", sortKeys.get(sortKeys.size() - 1), shape.name() + " has no identifier tie-breaker");
+            sorts.add("_id".equals(sortKeys.get(0)) ? "productId" : sortKeys.get(0));
+        }
+        assertEquals(ProductSearchCriteria.SORTABLE_FIELDS, sorts);
+    }
+
+    /**
+     * Tests that a winning plan containing a collection scan is flagged, with the indexes of the other
+     * stages reported.
+     */
+    @Test
+    void queryPlans_ShouldFlagCollectionScan_WhenWinningPlanScansCollection() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class, RETURNS_DEEP_STUBS);
+        Document indexPlan = new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN").append("indexName", "storeId_category"));
+        Document scanPlan = new Document("stage", "SORT")
+                .append("inputStage", new Document("stage", "COLLSCAN"));
+        when(mongoTemplate.getCollection("products").find(any(Bson.class)).sort(any()).explain(ExplainVerbosity.QUERY_PLANNER))
+                .thenReturn(new Document("queryPlanner", new Document("winningPlan", indexPlan)))
+                .thenReturn(new Document("queryPlanner", new Document("winningPlan", scanPlan)));
+
+        List<QueryPlanReport> reports = new ProductQueryPlanEndpoint(mongoTemplate).queryPlans();
+
+        assertEquals(ProductQueryPlanEndpoint.QUERY_SHAPES.size(), reports.size());
+        assertFalse(reports.get(0).collectionScan());
+        assertEquals(List.of("FETCH", "IXSCAN"), reports.get(0).stages());
+        assertEquals(List.of("storeId_category"), reports.get(0).indexes());
+        assertTrue(reports.get(1).collectionScan());
+    }
+
+    private static void collectFields(BsonDocument filter, Set<String> fields) {
+        for (String key : filter.keySet()) {
+            if (key.equals("$and")) {
+                for (BsonValue clause : filter.getArray(key)) {
+                    collectFields(clause.asDocument(), fields);
+                }
+            } else {
+                fields.add(key);
+            }
+        }
+    }
+}
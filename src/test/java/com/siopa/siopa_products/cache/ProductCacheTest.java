@@ -0,0 +1,105 @@
+package com.siopa.siopa_products.cache;
+
+import com.siopa.siopa_products.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ProductCache}.
+ */
+class ProductCacheTest {
+
+    private ProductCache productCache;
+
+    /**
+     * Sets up an empty cache before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        productCache = new ProductCache(100, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Tests that a loaded product is cached and served without calling the loader again.
+     */
+    @Test
+    void get_ShouldCacheLoadedProduct_WhenProductExists() {
+        AtomicInteger loads = new AtomicInteger();
+
+        productCache.get("p1", id -> {
+            loads.incrementAndGet();
+            return Optional.of(product(id));
+        });
+        Optional<Product> cached = productCache.get("p1", id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertTrue(cached.isPresent());
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Tests that a missing product is not cached.
+     */
+    @Test
+    void get_ShouldNotCacheMissingProduct_WhenLoaderReturnsEmpty() {
+        assertTrue(productCache.get("p1", id -> Optional.empty()).isEmpty());
+
+        assertTrue(productCache.getIfPresent("p1").isEmpty());
+    }
+
+    /**
+     * Tests that an eviction racing an in-flight load removes the loaded value instead of being
+     * overwritten by it.
+     */
+    @Test
+    void get_ShouldNotCacheStaleLoad_WhenEvictedDuringLoad() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        Thread evicter = new Thread(() -> {
+            await(loadStarted);
+            productCache.evict("p1");
+        });
+        evicter.start();
+
+        Thread loader = new Thread(() -> productCache.get("p1", id -> {
+            loadStarted.countDown();
+            // Hold the stale value until the eviction has either completed or is waiting on this load.
+            while (evicter.getState() != Thread.State.BLOCKED && evicter.getState() != Thread.State.TERMINATED) {
+                Thread.onSpinWait();
+            }
+            return Optional.of(product(id));
+        }));
+        loader.start();
+
+        loader.join(TimeUnit.SECONDS.toMillis(5));
+        evicter.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertFalse(loader.isAlive());
+        assertFalse(evicter.isAlive());
+        assertTrue(productCache.getIfPresent("p1").isEmpty());
+    }
+
+    private static Product product(String productId) {
+        Product product = new Product();
+        product.setProductId(productId);
+        return product;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.siopa.siopa_products.cache;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductStockShard;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductChangeStreamWatcher#apply}, with change events built as the stream
+ * delivers them: no looked-up document for updates and only the projected {@code storeId} fields.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductChangeStreamWatcherApplyTest {
+
+    private static final String PRODUCT_ID = "p1";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    private ProductCache productCache;
+    private ProductChangeStreamWatcher watcher;
+
+    /**
+     * Sets up a watcher that is not started, so events are only applied by the test.
+     */
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(Product.class)).thenReturn("products");
+        when(mongoTemplate.getCollectionName(ProductStockShard.class)).thenReturn("product_stock_shards");
+        productCache = new ProductCache(100, Duration.ofMinutes(1));
+        watcher = new ProductChangeStreamWatcher(mongoTemplate, productCache, storeCatalogSnapshots,
+                "test", false, Duration.ofSeconds(5));
+    }
+
+    /**
+     * Tests that an update of a cached product evicts it and invalidates its store.
+     */
+    @Test
+    void apply_ShouldEvictAndInvalidateCachedStore_WhenProductUpdated() {
+        productCache.put(product("store-1"));
+
+        watcher.apply(event("update", null, null, updated(new BsonDocument("quantity", new BsonString("5")))));
+
+        assertTrue(productCache.getIfPresent(PRODUCT_ID).isEmpty());
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that an update of a product that is not cached invalidates the store whose snapshot listed it.
+     */
+    @Test
+    void apply_ShouldInvalidateListingStore_WhenProductNotCached() {
+        when(storeCatalogSnapshots.storeOf(PRODUCT_ID)).thenReturn(Optional.of("store-1"));
+
+        watcher.apply(event("update", null, null, updated(new BsonDocument("quantity", new BsonString("5")))));
+
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that an update of a product no local snapshot lists does not invalidate any snapshot.
+     */
+    @Test
+    void apply_ShouldNotInvalidateAnyStore_WhenProductUnknown() {
+        when(storeCatalogSnapshots.storeOf(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        watcher.apply(event("update", null, null, updated(new BsonDocument("quantity", new BsonString("5")))));
+
+        verify(storeCatalogSnapshots).invalidate(null);
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that a store change invalidates the old store from the cache and the new one from the event.
+     */
+    @Test
+    void apply_ShouldInvalidateBothStores_WhenProductMovesStore() {
+        productCache.put(product("store-1"));
+
+        watcher.apply(event("update", null, null, updated(new BsonDocument("storeId", new BsonString("store-2")))));
+
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots).invalidate("store-2");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that the pre-image takes precedence over the cached product for the old store.
+     */
+    @Test
+    void apply_ShouldUsePreImage_WhenEventCarriesIt() {
+        productCache.put(product("stale-store"));
+
+        watcher.apply(event("delete", null, new Document("storeId", "store-1"), null));
+
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots, never()).invalidate("stale-store");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that deleting a product from an unknown store invalidates all snapshots.
+     */
+    @Test
+    void apply_ShouldInvalidateAll_WhenProductLeavesUnknownStore() {
+        when(storeCatalogSnapshots.storeOf(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        watcher.apply(event("delete", null, null, null));
+
+        verify(storeCatalogSnapshots).invalidateAll();
+    }
+
+    /**
+     * Tests that an insert invalidates the store from the inserted document.
+     */
+    @Test
+    void apply_ShouldInvalidateNewStore_WhenProductInserted() {
+        when(storeCatalogSnapshots.storeOf(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        watcher.apply(event("insert", new Document("storeId", "store-1"), null, null));
+
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that a decrement of a stock shard evicts its product and invalidates the product's store.
+     */
+    @Test
+    void apply_ShouldEvictProduct_WhenStockShardUpdated() {
+        productCache.put(product("store-1"));
+
+        watcher.apply(new ChangeStreamDocument<>("update", new BsonDocument("_data", new BsonString("token")),
+                namespace("product_stock_shards"), null, null, null,
+                new BsonDocument("_id", new BsonString(PRODUCT_ID + ":3")),
+                null, updated(new BsonDocument("quantity", new BsonString("4"))), null, null, null, null, null));
+
+        assertTrue(productCache.getIfPresent(PRODUCT_ID).isEmpty());
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that deleting the shards of a product from an unknown store does not invalidate all snapshots.
+     */
+    @Test
+    void apply_ShouldNotInvalidateAll_WhenStockShardDeleted() {
+        when(storeCatalogSnapshots.storeOf(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        watcher.apply(new ChangeStreamDocument<>("delete", new BsonDocument("_data", new BsonString("token")),
+                namespace("product_stock_shards"), null, null, null,
+                new BsonDocument("_id", new BsonString(PRODUCT_ID + ":0")),
+                null, null, null, null, null, null, null));
+
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    private static ChangeStreamDocument<Document> event(String operationType, Document fullDocument,
+                                                        Document preImage, UpdateDescription updateDescription) {
+        return new ChangeStreamDocument<>(operationType, new BsonDocument("_data", new BsonString("token")),
+                namespace("products"), null, fullDocument, preImage,
+                new BsonDocument("_id", new BsonString(PRODUCT_ID)),
+                null, updateDescription, null, null, null, null, null);
+    }
+
+    private static BsonDocument namespace(String collection) {
+        return new BsonDocument("db", new BsonString("test")).append("coll", new BsonString(collection));
+    }
+
+    private static UpdateDescription updated(BsonDocument updatedFields) {
+        return new UpdateDescription(null, updatedFields, null, null);
+    }
+
+    private static Product product(String storeId) {
+        Product product = new Product();
+        product.setProductId(PRODUCT_ID);
+        product.setStoreId(storeId);
+        product.setName("Test Product");
+        return product;
+    }
+}
@@ -0,0 +1,128 @@
+package com.siopa.siopa_products.cache;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.siopa.siopa_products.models.Product;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for {@link ProductChangeStreamWatcher} against a real replica set.
+ * <p>
+ * Run with {@code SIOPA_TEST_MONGO_URI} pointing at a replica set, for example a local single-node
+ * one started with {@code mongod --replSet rs0} and initiated with {@code rs.initiate()}:
+ * {@code SIOPA_TEST_MONGO_URI=mongodb://localhost:27017/?replicaSet=rs0}.
+ */
+@EnabledIfEnvironmentVariable(named = "SIOPA_TEST_MONGO_URI", matches = ".+")
+class ProductChangeStreamWatcherTest {
+
+    private static final String DATABASE = "siopa-products-change-stream-test";
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private ProductCache productCache;
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+    private ProductChangeStreamWatcher watcher;
+
+    /**
+     * Starts a watcher on an empty test database before each test case.
+     */
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        mongoClient = MongoClients.create(System.getenv("SIOPA_TEST_MONGO_URI"));
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        mongoTemplate.getDb().drop();
+        mongoTemplate.createCollection(Product.class);
+        productCache = new ProductCache(100, Duration.ofHours(1));
+        storeCatalogSnapshots = mock(StoreCatalogSnapshots.class);
+        watcher = new ProductChangeStreamWatcher(mongoTemplate, productCache, storeCatalogSnapshots,
+                "test", false, Duration.ofMillis(100));
+        watcher.start();
+        // The stream starts from the present, so only write once it is open.
+        assertTrue(watcher.awaitOpen(Duration.ofSeconds(10)));
+    }
+
+    /**
+     * Stops the watcher and drops the test database after each test case.
+     */
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        watcher.stop();
+        mongoTemplate.getDb().drop();
+        mongoClient.close();
+    }
+
+    /**
+     * Tests that a write by another node evicts the product and invalidates its store.
+     */
+    @Test
+    void watch_ShouldEvictProductAndInvalidateStore_WhenProductUpdated() {
+        Product product = product("store-1");
+        mongoTemplate.insert(product);
+        verify(storeCatalogSnapshots, timeout(10_000)).invalidate("store-1");
+        productCache.put(product);
+        reset(storeCatalogSnapshots);
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("productId").is(product.getProductId())),
+                new Update().set("quantity", 5), Product.class);
+
+        verify(storeCatalogSnapshots, timeout(10_000)).invalidate("store-1");
+        assertTrue(productCache.getIfPresent(product.getProductId()).isEmpty());
+    }
+
+    /**
+     * Tests that moving a cached product to another store invalidates both stores.
+     */
+    @Test
+    void watch_ShouldInvalidateBothStores_WhenProductMovesStore() {
+        Product product = product("store-1");
+        mongoTemplate.insert(product);
+        verify(storeCatalogSnapshots, timeout(10_000)).invalidate("store-1");
+        productCache.put(product);
+        reset(storeCatalogSnapshots);
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("productId").is(product.getProductId())),
+                new Update().set("storeId", "store-2"), Product.class);
+
+        verify(storeCatalogSnapshots, timeout(10_000)).invalidate("store-2");
+        verify(storeCatalogSnapshots).invalidate("store-1");
+        verify(storeCatalogSnapshots, never()).invalidateAll();
+    }
+
+    /**
+     * Tests that the resume token is saved for the instance.
+     */
+    @Test
+    void watch_ShouldSaveResumeToken() throws InterruptedException {
+        mongoTemplate.insert(product("store-1"));
+        verify(storeCatalogSnapshots, timeout(10_000)).invalidate("store-1");
+
+        watcher.stop();
+
+        assertNotNull(mongoTemplate.getCollection("product_change_stream_tokens")
+                .find(new Document("_id", "test")).first());
+    }
+
+    private static Product product(String storeId) {
+        Product product = new Product();
+        product.setProductId(new ObjectId().toHexString());
+        product.setStoreId(storeId);
+        product.setName("Test Product");
+        product.setCategory("Electronics");
+        product.setQuantity(10);
+        return product;
+    }
+}
@@ -0,0 +1,103 @@
+package com.siopa.siopa_products.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RequestCoalescer}.
+ */
+class RequestCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestCoalescer requestCoalescer;
+
+    /**
+     * Sets up a fresh coalescer before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(meterRegistry);
+    }
+
+    /**
+     * Tests that concurrent lookups of the same key share a single call.
+     */
+    @Test
+    void coalesce_ShouldShareInFlightCall_ForSameKey() throws Exception {
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> leader = executor.submit(() -> requestCoalescer.coalesce("lookup", "key", () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(releaseLoader);
+                return "value";
+            }));
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() -> requestCoalescer.coalesce("lookup", "key", () -> {
+                loads.incrementAndGet();
+                return "other";
+            }));
+            while (meterRegistry.counter("siopa.products.lookups", "operation", "lookup", "result", "coalesced").count() < 1) {
+                Thread.onSpinWait();
+            }
+            releaseLoader.countDown();
+
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that sequential lookups each run their own call.
+     */
+    @Test
+    void coalesce_ShouldNotRetainResults_AfterCallCompletes() {
+        AtomicInteger loads = new AtomicInteger();
+
+        requestCoalescer.coalesce("lookup", "key", loads::incrementAndGet);
+        requestCoalescer.coalesce("lookup", "key", loads::incrementAndGet);
+
+        assertEquals(2, loads.get());
+        assertEquals(2.0, meterRegistry.counter("siopa.products.lookups",
+                "operation", "lookup", "result", "executed").count());
+    }
+
+    /**
+     * Tests that a failed call propagates its exception and does not poison later calls.
+     */
+    @Test
+    void coalesce_ShouldPropagateFailure() {
+        assertThrows(IllegalStateException.class, () -> requestCoalescer.coalesce("lookup", "key", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals("ok", requestCoalescer.coalesce("lookup", "key", () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.siopa.siopa_products.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link StoreCatalogSnapshots}.
+ */
+class StoreCatalogSnapshotsTest {
+
+    private static final String STORE_ID = "store123";
+
+    private StoreCatalogSnapshots snapshots;
+    private Product product;
+    private AtomicInteger loads;
+
+    /**
+     * Sets up test data before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        snapshots = new StoreCatalogSnapshots(new ObjectMapper(), 100, 1000, Duration.ofMinutes(1));
+        product = new Product();
+        product.setProductId("123");
+        product.setStoreId(STORE_ID);
+        product.setName("Test Product");
+        loads = new AtomicInteger();
+    }
+
+    /**
+     * Tests that an unchanged catalog is served from the snapshot.
+     */
+    @Test
+    void get_ShouldReuseSnapshot_WhileVersionUnchanged() {
+        StoreCatalogSnapshot first = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+        StoreCatalogSnapshot second = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Tests that invalidating a store rebuilds its snapshot and changes the ETag when the data changed.
+     */
+    @Test
+    void get_ShouldRebuildSnapshot_AfterInvalidate() {
+        StoreCatalogSnapshot first = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+
+        product.setName("Renamed Product");
+        snapshots.invalidate(STORE_ID);
+        StoreCatalogSnapshot second = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(first.version() + 1, second.version());
+        assertNotEquals(first.etag(), second.etag());
+    }
+
+    /**
+     * Tests that identical catalog contents produce identical ETags.
+     */
+    @Test
+    void get_ShouldProduceSameETag_ForSameContent() {
+        StoreCatalogSnapshot first = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+
+        snapshots.invalidate(STORE_ID);
+        StoreCatalogSnapshot second = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+
+        assertEquals(first.etag(), second.etag());
+    }
+
+    /**
+     * Tests that each view of a store is snapshotted separately and invalidated together.
+     */
+    @Test
+    void get_ShouldKeepSeparateSnapshotsPerView() {
+        StoreCatalogSnapshot full = snapshots.get(STORE_ID, ProductView.FULL, this::load);
+        StoreCatalogSnapshot summary = snapshots.get(STORE_ID, ProductView.SUMMARY, this::load);
+
+        assertNotSame(full, summary);
+        assertEquals(2, loads.get());
+
+        snapshots.invalidate(STORE_ID);
+        snapshots.get(STORE_ID, ProductView.SUMMARY, this::load);
+
+        assertEquals(3, loads.get());
+    }
+
+    /**
+     * Tests that a snapshot built from a read that raced with a write is not served afterwards.
+     */
+    @Test
+    void get_ShouldRebuildSnapshot_WhenInvalidatedDuringLoad() {
+        snapshots.get(STORE_ID, ProductView.FULL, () -> {
+            snapshots.invalidate(STORE_ID);
+            return load();
+        });
+        snapshots.get(STORE_ID, ProductView.FULL, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    private List<Product> load() {
+        loads.incrementAndGet();
+        return List.of(product);
+    }
+}
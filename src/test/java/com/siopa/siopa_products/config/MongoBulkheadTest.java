@@ -0,0 +1,117 @@
+package com.siopa.siopa_products.config;
+
+import com.siopa.siopa_products.exceptions.DatabaseBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link MongoBulkhead}.
+ */
+@ExtendWith(MockitoExtension.class)
+class MongoBulkheadTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private ProceedingJoinPoint nestedJoinPoint;
+
+    @Mock
+    private Signature signature;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MongoBulkhead bulkhead;
+
+    /**
+     * Sets up a bulkhead with a single permit before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new MongoBulkhead(meterRegistry, 1, Duration.ofMillis(50));
+    }
+
+    /**
+     * Tests that a call is rejected with a 503 when every permit stays taken for the maximum wait.
+     */
+    @Test
+    void limit_ShouldRejectWithServiceUnavailable_WhenNoPermitFree() throws Throwable {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProceedingJoinPoint slowCall = mock(ProceedingJoinPoint.class);
+        when(slowCall.proceed()).thenAnswer(invocation -> {
+            holding.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkhead.limit(slowCall);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(signature.getName()).thenReturn("findById");
+
+        try {
+            DatabaseBusyException exception = assertThrows(DatabaseBusyException.class, () -> bulkhead.limit(joinPoint));
+
+            assertTrue(exception.getMessage().contains("findById"));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                    AnnotationUtils.findAnnotation(DatabaseBusyException.class, ResponseStatus.class).value());
+            verify(joinPoint, never()).proceed();
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    /**
+     * Tests that the permit is released when the call throws, so the next call is not rejected.
+     */
+    @Test
+    void limit_ShouldReleasePermit_WhenCallThrows() throws Throwable {
+        when(joinPoint.proceed())
+                .thenThrow(new DataAccessResourceFailureException("Connection reset"))
+                .thenReturn("ok");
+
+        assertThrows(DataAccessResourceFailureException.class, () -> bulkhead.limit(joinPoint));
+
+        assertEquals(1.0, meterRegistry.get("siopa.mongo.bulkhead.available").gauge().value());
+        assertEquals("ok", bulkhead.limit(joinPoint));
+    }
+
+    /**
+     * Tests that a template call made inside a repository call runs under the permit already held,
+     * instead of waiting for a second one.
+     */
+    @Test
+    void limit_ShouldReuseHeldPermit_WhenCallsAreNested() throws Throwable {
+        when(nestedJoinPoint.proceed()).thenReturn("nested");
+        when(joinPoint.proceed()).thenAnswer(invocation -> bulkhead.limit(nestedJoinPoint));
+
+        assertEquals("nested", bulkhead.limit(joinPoint));
+
+        assertEquals(1.0, meterRegistry.get("siopa.mongo.bulkhead.available").gauge().value());
+    }
+}
@@ -1,7 +1,15 @@
 package com.siopa.siopa_products.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshot;
+import com.siopa.siopa_products.dto.BulkItemResult;
+import com.siopa.siopa_products.dto.ProductPage;
 import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.exceptions.DatabaseBusyException;
 import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.services.ProductBulkService;
 import com.siopa.siopa_products.services.ProductService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,15 +17,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,6 +47,12 @@ class ProductControllerTest {
     @Mock
     private ProductService productService;
 
+    @Mock
+    private ProductBulkService productBulkService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private ProductController productController;
 
@@ -82,6 +102,114 @@ class ProductControllerTest {
         verify(productService, times(1)).getAllProducts();
     }
 
+    /**
+     * Tests retrieving product summaries with the summary view.
+     */
+    @Test
+    void getAllProducts_ShouldReturnSummaries_WhenSummaryViewRequested() throws Exception {
+        ProductSummary summary = new ProductSummary();
+        summary.setProductId(PRODUCT_ID);
+        summary.setName("Test Product");
+        when(productService.getAllProductSummaries()).thenReturn(List.of(summary));
+
+        mockMvc.perform(get("/api/products").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Test Product"))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+
+        verify(productService, never()).getAllProducts();
+    }
+
+    /**
+     * Tests that an unknown view is rejected.
+     */
+    @Test
+    void getAllProducts_ShouldReturnBadRequest_WhenViewUnsupported() throws Exception {
+        mockMvc.perform(get("/api/products").param("view", "compact"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(productService);
+    }
+
+    /**
+     * Tests that a request rejected by the database bulkhead is answered with 503.
+     */
+    @Test
+    void getProductById_ShouldReturnServiceUnavailable_WhenDatabaseBusy() throws Exception {
+        when(productService.getProductById(PRODUCT_ID)).thenThrow(new DatabaseBusyException("findById"));
+
+        mockMvc.perform(get("/api/products/" + PRODUCT_ID))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    /**
+     * Tests retrieving a keyset-paginated page of products.
+     */
+    @Test
+    void getProductsPage_ShouldReturnItemsAndNextCursor() throws Exception {
+        when(productService.getProductsPage("abc", 10)).thenReturn(new ProductPage<>(List.of(product), "next"));
+
+        mockMvc.perform(get("/api/products/page").param("cursor", "abc").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.size()").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+
+        verify(productService, times(1)).getProductsPage("abc", 10);
+    }
+
+    /**
+     * Tests that search parameters, including attribute filters, are passed to the service.
+     */
+    @Test
+    void searchProducts_ShouldBuildCriteriaFromParameters() throws Exception {
+        when(productService.searchProducts(any(ProductSearchCriteria.class), isNull(), eq(20)))
+                .thenReturn(new ProductPage<>(List.of(product), null));
+
+        mockMvc.perform(get("/api/products/search")
+                        .param("category", "Electronics")
+                        .param("minPrice", "10")
+                        .param("inStock", "true")
+                        .param("sort", "price")
+                        .param("order", "desc")
+                        .param("attr.color", "red")
+                        .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.size()").value(1));
+
+        verify(productService).searchProducts(argThat(criteria ->
+                "Electronics".equals(criteria.getCategory())
+                        && criteria.getMinPrice() == 10.0
+                        && criteria.isInStockOnly()
+                        && "price".equals(criteria.getSortField())
+                        && criteria.isDescending()
+                        && criteria.getAttributes().equals(Map.of("color", "red"))), isNull(), eq(20));
+    }
+
+    /**
+     * Tests streaming all products as newline-delimited JSON.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamAllProducts_ShouldWriteOneProductPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Product> sink = invocation.getArgument(0);
+            sink.accept(product);
+            sink.accept(product);
+            return null;
+        }).when(productService).streamAllProducts(any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(2, body.lines().count());
+        assertTrue(body.lines().allMatch(line -> line.contains("\"name\":\"Test Product\"")));
+    }
+
     /**
      * Tests retrieving a product by ID.
      */
@@ -102,13 +230,26 @@ class ProductControllerTest {
     @Test
     void getProductsByStoreId_ShouldReturnListOfProducts() throws Exception {
         List<Product> products = Arrays.asList(product);
-        when(productService.getProductsByStoreId(STORE_ID)).thenReturn(products);
+        when(productService.getStoreCatalog(STORE_ID)).thenReturn(catalogOf(products));
 
         mockMvc.perform(get("/api/products/store/{storeId}", STORE_ID))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
                 .andExpect(jsonPath("$.size()").value(products.size()));
 
-        verify(productService, times(1)).getProductsByStoreId(STORE_ID);
+        verify(productService, times(1)).getStoreCatalog(STORE_ID);
+    }
+
+    /**
+     * Tests that an unchanged store catalog is answered with 304 Not Modified.
+     */
+    @Test
+    void getProductsByStoreId_ShouldReturnNotModified_WhenETagMatches() throws Exception {
+        when(productService.getStoreCatalog(STORE_ID)).thenReturn(catalogOf(List.of(product)));
+
+        mockMvc.perform(get("/api/products/store/{storeId}", STORE_ID).header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
     }
 
     /**
@@ -127,6 +268,25 @@ class ProductControllerTest {
         verify(productService, times(1)).createProduct(any(ProductRequest.class));
     }
 
+    /**
+     * Tests creating products in bulk.
+     */
+    @Test
+    void createProducts_ShouldReturnPerItemResults() throws Exception {
+        when(productBulkService.createProducts(anyList())).thenReturn(List.of(
+                new BulkItemResult(0, PRODUCT_ID, BulkItemResult.Status.CREATED, List.of()),
+                new BulkItemResult(1, null, BulkItemResult.Status.INVALID, List.of("Name is required"))));
+
+        mockMvc.perform(post("/api/products/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{ \"name\": \"Test Product\", \"price\": 29.99, \"category\": \"Electronics\", \"storeId\": \"store123\" }, { \"price\": 1.0 }]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[1].errors[0]").value("Name is required"));
+
+        verify(productBulkService, times(1)).createProducts(argThat(requests -> requests.size() == 2));
+    }
+
     /**
      * Tests updating an existing product.
      */
@@ -170,4 +330,8 @@ class ProductControllerTest {
 
         verify(productService, times(1)).updateProductQuantity(PRODUCT_ID, 50);
     }
+
+    private StoreCatalogSnapshot catalogOf(List<Product> products) throws Exception {
+        return new StoreCatalogSnapshot(1, objectMapper.writeValueAsBytes(products), "\"v1\"");
+    }
 }
@@ -0,0 +1,129 @@
+package com.siopa.siopa_products.controllers;
+
+import com.siopa.siopa_products.dto.ProductView;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.services.ReactiveProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Unit tests for {@link ReactiveProductController}.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveProductControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private ReactiveProductService reactiveProductService;
+
+    @InjectMocks
+    private ReactiveProductController reactiveProductController;
+
+    private Product product;
+    private final String PRODUCT_ID = "123";
+    private final String STORE_ID = "store123";
+
+    /**
+     * Sets up test data before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(reactiveProductController).build();
+
+        product = new Product();
+        product.setProductId(PRODUCT_ID);
+        product.setStoreId(STORE_ID);
+        product.setName("Test Product");
+        product.setPrice(29.99);
+        product.setCategory("Electronics");
+        product.setQuantity(100);
+    }
+
+    /**
+     * Tests retrieving a product by ID.
+     */
+    @Test
+    void getProductById_ShouldReturnProduct_WhenFound() throws Exception {
+        when(reactiveProductService.getProductById(PRODUCT_ID)).thenReturn(Mono.just(product));
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/products/{id}", PRODUCT_ID))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Test Product"));
+    }
+
+    /**
+     * Tests that a missing product is answered with 404.
+     */
+    @Test
+    void getProductById_ShouldReturnNotFound_WhenMissing() throws Exception {
+        when(reactiveProductService.getProductById(PRODUCT_ID))
+                .thenReturn(Mono.error(new ProductNotFoundException(PRODUCT_ID)));
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/products/{id}", PRODUCT_ID))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests streaming a store's products as newline-delimited JSON.
+     */
+    @Test
+    void getProductsByStoreId_ShouldStreamOneProductPerLine() throws Exception {
+        doReturn(Flux.just(product, product)).when(reactiveProductService)
+                .getProductsByStoreId(STORE_ID, ProductView.FULL);
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/products/store/{storeId}", STORE_ID)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(2, body.lines().count());
+    }
+
+    /**
+     * Tests collecting a listing into a JSON array when JSON is requested.
+     */
+    @Test
+    void getAllProducts_ShouldReturnArray_WhenJsonRequested() throws Exception {
+        doReturn(Flux.just(product)).when(reactiveProductService).getAllProducts(ProductView.SUMMARY);
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/products").param("view", "summary")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(1));
+    }
+}
@@ -0,0 +1,95 @@
+package com.siopa.siopa_products.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ProductImportReader}.
+ */
+class ProductImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Tests that CSV columns are mapped to request fields and {@code attr.} columns to attributes.
+     */
+    @Test
+    void next_ShouldMapCsvColumns_WhenHeaderNamesFields() throws IOException {
+        String csv = """
+                name,price,category,storeId,quantity,attr.color,attr.size
+                "Mug, large",4.5,Kitchen,store123,7,red,
+                """;
+
+        try (ProductImportReader reader = open(csv, ImportFormat.CSV)) {
+            ProductImportReader.Row row = reader.next();
+
+            assertEquals(1, row.number());
+            assertNull(row.error());
+            assertEquals("Mug, large", row.request().getName());
+            assertEquals(4.5, row.request().getPrice());
+            assertEquals("store123", row.request().getStoreId());
+            assertEquals(7, row.request().getQuantity());
+            assertEquals(Map.of("color", "red"), row.request().getAttributes());
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * Tests that a CSV row with a non-numeric price is returned with an error and the next row is still read.
+     */
+    @Test
+    void next_ShouldReturnRowError_WhenCsvNumberIsInvalid() throws IOException {
+        String csv = """
+                name,price,category,storeId
+                Mug,cheap,Kitchen,store123
+                Plate,2.0,Kitchen,store123
+                """;
+
+        try (ProductImportReader reader = open(csv, ImportFormat.CSV)) {
+            ProductImportReader.Row invalid = reader.next();
+            ProductImportReader.Row valid = reader.next();
+
+            assertNull(invalid.request());
+            assertEquals("Column price must be a number: cheap", invalid.error());
+            assertEquals(2, valid.number());
+            assertEquals("Plate", valid.request().getName());
+        }
+    }
+
+    /**
+     * Tests that a malformed NDJSON line is reported and blank lines are skipped without being counted.
+     */
+    @Test
+    void next_ShouldReportMalformedLine_WhenNdjsonLineIsNotJson() throws IOException {
+        String ndjson = """
+                {"name":"Mug","price":4.5,"category":"Kitchen","storeId":"store123"}
+
+                {"name":
+                {"name":"Plate","price":2.0,"category":"Kitchen","storeId":"store123"}
+                """;
+
+        try (ProductImportReader reader = open(ndjson, ImportFormat.NDJSON)) {
+            assertEquals("Mug", reader.next().request().getName());
+            ProductImportReader.Row malformed = reader.next();
+            ProductImportReader.Row plate = reader.next();
+
+            assertEquals(2, malformed.number());
+            assertTrue(malformed.error().startsWith("Malformed JSON"));
+            assertEquals(3, plate.number());
+            assertEquals("Plate", plate.request().getName());
+            assertNull(reader.next());
+        }
+    }
+
+    private ProductImportReader open(String contents, ImportFormat format) throws IOException {
+        return ProductImportReader.open(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)),
+                format, objectMapper);
+    }
+}
@@ -0,0 +1,266 @@
+package com.siopa.siopa_products.inventory;
+
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.dto.LedgerDelta;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.outbox.ProductOutbox;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link InventoryLedger}.
+ */
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerTest {
+
+    private static final String PRODUCT_ID = "123";
+    private static final String STORE_ID = "store123";
+    private static final String ORDER_TOPIC = "orders";
+
+    @TempDir
+    Path journalDirectory;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @Mock
+    private ObjectProvider<ProductOutbox> productOutbox;
+
+    @Mock
+    private Consumer<?, ?> consumer;
+
+    private final List<InventoryLedger> started = new ArrayList<>();
+
+    /**
+     * Stops the ledgers started by a test case.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        for (InventoryLedger ledger : started) {
+            ledger.stop();
+        }
+    }
+
+    /**
+     * Tests that a decrement is approved in memory without writing to the database.
+     */
+    @Test
+    void reduce_ShouldDecrementInMemory_WithoutWritingDatabase() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        InventoryLedger ledger = start();
+
+        Product reduced = ledger.reduce(PRODUCT_ID, 3, "order-1");
+
+        assertEquals(7, reduced.getQuantity());
+        assertEquals(STORE_ID, reduced.getStoreId());
+        assertEquals(4, ledger.reduce(PRODUCT_ID, 3, "order-2").getQuantity());
+        verify(productRepository, times(1)).findById(PRODUCT_ID);
+        verify(productRepository, never()).applyLedgerDeltas(any());
+    }
+
+    /**
+     * Tests that a decrement larger than the remaining stock is rejected and leaves the stock as it was.
+     */
+    @Test
+    void reduce_ShouldThrowInsufficientStock_WhenStockTooLow() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        InventoryLedger ledger = start();
+
+        assertThrows(InsufficientStockException.class, () -> ledger.reduce(PRODUCT_ID, 11, "order-1"));
+
+        assertEquals(0, ledger.reduce(PRODUCT_ID, 10, "order-1").getQuantity());
+    }
+
+    /**
+     * Tests that an order already applied, before the product was loaded or since, is skipped.
+     */
+    @Test
+    void reduce_ShouldSkipOrder_WhenAlreadyApplied() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, List.of("order-0"))));
+        InventoryLedger ledger = start();
+
+        assertEquals(10, ledger.reduce(PRODUCT_ID, 3, "order-0").getQuantity());
+        assertEquals(7, ledger.reduce(PRODUCT_ID, 3, "order-1").getQuantity());
+        assertEquals(7, ledger.reduce(PRODUCT_ID, 3, "order-1").getQuantity());
+    }
+
+    /**
+     * Tests that a flush writes the net decrement of a product with its order identifiers and invalidates
+     * the store's catalog snapshot.
+     */
+    @Test
+    void flush_ShouldWriteNetDecrementWithOrderIds() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        when(productRepository.applyLedgerDeltas(any())).thenReturn(1L);
+        InventoryLedger ledger = start();
+        ledger.reduce(PRODUCT_ID, 3, "order-1");
+        ledger.reduce(PRODUCT_ID, 2, "order-2");
+
+        ledger.flush();
+
+        verify(productRepository).applyLedgerDeltas(
+                List.of(new LedgerDelta(PRODUCT_ID, 5, 2, List.of("order-1", "order-2"))));
+        verify(storeCatalogSnapshots).invalidate(STORE_ID);
+    }
+
+    /**
+     * Tests that decrements that could not be flushed are replayed from the journal, with their order
+     * identifiers, when the ledger starts again.
+     */
+    @Test
+    void start_ShouldReplayUnflushedDecrements() throws Exception {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        doThrow(new DataAccessResourceFailureException("Connection refused"))
+                .doReturn(1L)
+                .when(productRepository).applyLedgerDeltas(any());
+        InventoryLedger crashed = start();
+        crashed.reduce(PRODUCT_ID, 3, "order-1");
+        crashed.reduce(PRODUCT_ID, 2, null);
+        started.remove(crashed);
+        crashed.stop();
+
+        when(productRepository.findLedgerSeqs(Set.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 0L));
+        start();
+
+        verify(productRepository, times(2)).applyLedgerDeltas(
+                List.of(new LedgerDelta(PRODUCT_ID, 5, 2, List.of("order-1"))));
+    }
+
+    /**
+     * Tests that a product is only held while its order topic partition is assigned, and is flushed
+     * when the partition is revoked.
+     */
+    @Test
+    void manages_ShouldFollowPartitionAssignment() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        doReturn(List.of(partitionInfo(0), partitionInfo(1), partitionInfo(2))).when(consumer).partitionsFor(ORDER_TOPIC);
+        when(productRepository.applyLedgerDeltas(any())).thenReturn(1L);
+        InventoryLedger ledger = start();
+        List<TopicPartition> partitions = List.of(
+                new TopicPartition(ORDER_TOPIC, InventoryLedger.partitionOf(PRODUCT_ID, 3)),
+                new TopicPartition(ORDER_TOPIC + "-retry-1000", InventoryLedger.partitionOf(PRODUCT_ID, 3)));
+        assertFalse(ledger.manages(PRODUCT_ID));
+
+        ledger.onPartitionsAssigned(consumer, partitions);
+        assertTrue(ledger.manages(PRODUCT_ID));
+        assertFalse(ledger.manages("456"));
+        ledger.reduce(PRODUCT_ID, 3, "order-1");
+
+        ledger.onPartitionsRevokedBeforeCommit(consumer, partitions);
+        assertFalse(ledger.manages(PRODUCT_ID));
+        verify(productRepository).applyLedgerDeltas(List.of(new LedgerDelta(PRODUCT_ID, 3, 1, List.of("order-1"))));
+    }
+
+    /**
+     * Tests that a ledger taking over a product stamped by a ledger whose sequence ran further ahead
+     * stamps its own flush above that, so the write is not skipped as already applied.
+     */
+    @Test
+    void flush_ShouldStampAboveStoredSeq_WhenProductHandedOverFromAnotherLedger() throws IOException {
+        Product stampedByPreviousOwner = product(7, List.of("order-1", "order-2"));
+        stampedByPreviousOwner.setLedgerSeq(2L);
+        when(productRepository.findById(PRODUCT_ID))
+                .thenReturn(Optional.of(product(10, null)))
+                .thenReturn(Optional.of(stampedByPreviousOwner));
+        when(productRepository.applyLedgerDeltas(any())).thenReturn(1L);
+        InventoryLedger nextOwner = start(journalDirectory.resolve("next"));
+        InventoryLedger previousOwner = start(journalDirectory.resolve("previous"));
+        previousOwner.reduce(PRODUCT_ID, 1, "order-1");
+        previousOwner.reduce(PRODUCT_ID, 2, "order-2");
+        previousOwner.release(PRODUCT_ID);
+
+        assertEquals(6, nextOwner.reduce(PRODUCT_ID, 1, "order-3").getQuantity());
+        nextOwner.flush();
+
+        verify(productRepository).applyLedgerDeltas(List.of(new LedgerDelta(PRODUCT_ID, 3, 2, List.of("order-1", "order-2"))));
+        verify(productRepository).applyLedgerDeltas(List.of(new LedgerDelta(PRODUCT_ID, 1, 3, List.of("order-3"))));
+    }
+
+    /**
+     * Tests that a flush fails, and keeps its cut for the next flush, when an existing product did not
+     * take its delta because it is stamped ahead of the ledger.
+     */
+    @Test
+    void flush_ShouldFail_WhenProductStampedAheadOfLedger() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        when(productRepository.applyLedgerDeltas(any())).thenReturn(0L);
+        when(productRepository.findLedgerSeqs(Set.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 9L));
+        InventoryLedger ledger = start();
+        ledger.reduce(PRODUCT_ID, 3, "order-1");
+
+        assertThrows(IllegalStateException.class, ledger::flush);
+        assertThrows(IllegalStateException.class, ledger::flush);
+
+        verify(productRepository, times(2)).applyLedgerDeltas(
+                List.of(new LedgerDelta(PRODUCT_ID, 3, 1, List.of("order-1"))));
+    }
+
+    /**
+     * Tests that a retried cut that the database already took, and is stamped at, counts as applied.
+     */
+    @Test
+    void flush_ShouldSucceed_WhenRetriedCutAlreadyApplied() throws IOException {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(10, null)));
+        when(productRepository.applyLedgerDeltas(any())).thenReturn(0L);
+        when(productRepository.findLedgerSeqs(Set.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 1L));
+        InventoryLedger ledger = start();
+        ledger.reduce(PRODUCT_ID, 3, "order-1");
+
+        ledger.flush();
+        ledger.flush();
+
+        verify(productRepository, times(1)).applyLedgerDeltas(any());
+    }
+
+    private InventoryLedger start() throws IOException {
+        return start(journalDirectory);
+    }
+
+    private InventoryLedger start(Path journal) throws IOException {
+        InventoryLedger ledger = new InventoryLedger(productRepository, storeCatalogSnapshots, productOutbox,
+                Set.of(PRODUCT_ID), Duration.ofHours(1), journal, 512, ORDER_TOPIC);
+        ledger.start();
+        started.add(ledger);
+        return ledger;
+    }
+
+    private static Product product(int quantity, List<String> appliedOrderIds) {
+        Product product = new Product();
+        product.setProductId(PRODUCT_ID);
+        product.setStoreId(STORE_ID);
+        product.setQuantity(quantity);
+        product.setAppliedOrderIds(appliedOrderIds);
+        return product;
+    }
+
+    private static PartitionInfo partitionInfo(int partition) {
+        return new PartitionInfo(ORDER_TOPIC, partition, null, null, null);
+    }
+}
@@ -0,0 +1,107 @@
+package com.siopa.siopa_products.inventory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LedgerJournal}.
+ */
+class LedgerJournalTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that synced entries are replayed in order, with their order identifiers, by a new journal on
+     * the same directory.
+     */
+    @Test
+    void replay_ShouldReturnSyncedEntries_WhenJournalReopened() throws IOException {
+        try (LedgerJournal journal = new LedgerJournal(directory)) {
+            journal.roll(1);
+            journal.append(1, "123", 2, null);
+            journal.sync(journal.append(2, "a,b", 3, "order,1"));
+        }
+
+        List<LedgerJournal.Entry> entries = new ArrayList<>();
+        long maxSeq = new LedgerJournal(directory).replay(entries::add);
+
+        assertEquals(2, maxSeq);
+        assertEquals(List.of(new LedgerJournal.Entry(1, "123", 2, null),
+                new LedgerJournal.Entry(2, "a,b", 3, "order,1")), entries);
+    }
+
+    /**
+     * Tests that a torn or corrupted line is skipped on replay.
+     */
+    @Test
+    void replay_ShouldSkipTornLines() throws IOException {
+        try (LedgerJournal journal = new LedgerJournal(directory)) {
+            journal.roll(1);
+            journal.append(1, "123", 2, null);
+        }
+        Path segment = segments().get(0);
+        Files.writeString(segment, "2,123,5,1\n3,12", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<LedgerJournal.Entry> entries = new ArrayList<>();
+        long maxSeq = new LedgerJournal(directory).replay(entries::add);
+
+        assertEquals(1, maxSeq);
+        assertEquals(List.of(new LedgerJournal.Entry(1, "123", 2, null)), entries);
+    }
+
+    /**
+     * Tests that lines written without an order identifier field are still replayed.
+     */
+    @Test
+    void replay_ShouldReadLinesWithoutOrderId() throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update("1,a,b,4".getBytes(StandardCharsets.UTF_8));
+        Files.writeString(directory.resolve("ledger-00000000000000000001.journal"), "1,a,b,4," + crc.getValue() + "\n",
+                StandardCharsets.UTF_8);
+
+        List<LedgerJournal.Entry> entries = new ArrayList<>();
+        new LedgerJournal(directory).replay(entries::add);
+
+        assertEquals(List.of(new LedgerJournal.Entry(1, "a,b", 4, null)), entries);
+    }
+
+    /**
+     * Tests that only the segments before the current one are deleted.
+     */
+    @Test
+    void deleteRolledSegments_ShouldKeepCurrentSegment() throws IOException {
+        try (LedgerJournal journal = new LedgerJournal(directory)) {
+            journal.roll(1);
+            journal.append(1, "123", 2, null);
+            journal.roll(2);
+            journal.sync(journal.append(2, "456", 1, null));
+
+            journal.deleteRolledSegments();
+        }
+
+        List<LedgerJournal.Entry> entries = new ArrayList<>();
+        new LedgerJournal(directory).replay(entries::add);
+
+        assertEquals(1, segments().size());
+        assertEquals(List.of(new LedgerJournal.Entry(2, "456", 1, null)), entries);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.siopa.siopa_products.inventory;
+
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.InvalidShardCountException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import com.siopa.siopa_products.repositories.ProductStockShardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link StockShards}.
+ */
+@ExtendWith(MockitoExtension.class)
+class StockShardsTest {
+
+    private static final String PRODUCT_ID = "123";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductStockShardRepository shardRepository;
+
+    private StockShards stockShards;
+
+    /**
+     * Sets up the shards before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        stockShards = new StockShards(productRepository, shardRepository, 8, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Tests that a decrement is taken from a single shard when one holds enough units.
+     */
+    @Test
+    void reduce_ShouldTakeFromOneShard_WhenShardHasStock() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(4, 0)));
+        when(shardRepository.takeFromShard(eq(PRODUCT_ID), anyInt(), eq(3), eq("order-1"))).thenReturn(true);
+        when(shardRepository.sumQuantities(List.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 9));
+
+        assertEquals(OptionalInt.of(9), stockShards.reduce(PRODUCT_ID, 3, "order-1"));
+
+        verify(shardRepository, times(1)).takeFromShard(eq(PRODUCT_ID), anyInt(), eq(3), eq("order-1"));
+        verify(shardRepository, never()).drainShard(anyString(), anyInt());
+    }
+
+    /**
+     * Tests that the shards are rebalanced when they only cover a decrement together.
+     */
+    @Test
+    void reduce_ShouldRebalance_WhenNoSingleShardCoversAmount() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(2, 0)));
+        when(shardRepository.takeFromShard(eq(PRODUCT_ID), anyInt(), eq(7), eq("order-1"))).thenReturn(false);
+        when(shardRepository.sumQuantities(List.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 10));
+        when(shardRepository.drainShard(PRODUCT_ID, 0)).thenReturn(4);
+        when(shardRepository.drainShard(PRODUCT_ID, 1)).thenReturn(6);
+
+        assertEquals(OptionalInt.of(3), stockShards.reduce(PRODUCT_ID, 7, "order-1"));
+
+        verify(shardRepository).addToShard(PRODUCT_ID, 0, 2);
+        verify(shardRepository).addToShard(PRODUCT_ID, 1, 1);
+        verify(shardRepository).takeFromShard(PRODUCT_ID, 0, 0, "order-1");
+        verify(productRepository).setShardedQuantity(PRODUCT_ID, 3);
+    }
+
+    /**
+     * Tests that the product's copy of the shard total is zeroed once a decrement empties the shards,
+     * and left alone while they still hold stock.
+     */
+    @Test
+    void reduce_ShouldZeroStoredQuantity_WhenShardsEmptied() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(2, 10)));
+        when(shardRepository.takeFromShard(eq(PRODUCT_ID), anyInt(), eq(3), isNull())).thenReturn(true);
+        when(shardRepository.sumQuantities(List.of(PRODUCT_ID)))
+                .thenReturn(Map.of(PRODUCT_ID, 3))
+                .thenReturn(Map.of(PRODUCT_ID, 0));
+
+        assertEquals(OptionalInt.of(3), stockShards.reduce(PRODUCT_ID, 3, null));
+        verify(productRepository, never()).setShardedQuantity(anyString(), anyInt());
+
+        assertEquals(OptionalInt.of(0), stockShards.reduce(PRODUCT_ID, 3, null));
+        verify(productRepository).setShardedQuantity(PRODUCT_ID, 0);
+    }
+
+    /**
+     * Tests that a decrement larger than all shards together is rejected without draining them.
+     */
+    @Test
+    void reduce_ShouldThrowException_WhenShardsHoldTooLittle() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(2, 0)));
+        when(shardRepository.takeFromShard(eq(PRODUCT_ID), anyInt(), eq(7), isNull())).thenReturn(false);
+        when(shardRepository.sumQuantities(List.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 5));
+
+        assertThrows(InsufficientStockException.class, () -> stockShards.reduce(PRODUCT_ID, 7, null));
+
+        verify(shardRepository, never()).drainShard(anyString(), anyInt());
+    }
+
+    /**
+     * Tests that a product without shards is left to the direct decrement.
+     */
+    @Test
+    void reduce_ShouldReturnEmpty_WhenProductNotSharded() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(null, 10)));
+
+        assertTrue(stockShards.reduce(PRODUCT_ID, 3, "order-1").isEmpty());
+
+        verifyNoInteractions(shardRepository);
+    }
+
+    /**
+     * Tests that concurrent decrements of one product share a rebalance lock while it is in use.
+     */
+    @Test
+    void reduce_ShouldSerializeRebalances_WhenProductContended() throws Exception {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(2, 0)));
+        when(shardRepository.takeFromShard(eq(PRODUCT_ID), anyInt(), eq(7), isNull())).thenReturn(false);
+        AtomicInteger inRebalance = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        when(shardRepository.sumQuantities(List.of(PRODUCT_ID))).thenAnswer(invocation -> {
+            if (inRebalance.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            Thread.sleep(20);
+            inRebalance.decrementAndGet();
+            return Map.of(PRODUCT_ID, 5);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> reductions = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                reductions.add(executor.submit(() ->
+                        assertThrows(InsufficientStockException.class, () -> stockShards.reduce(PRODUCT_ID, 7, null))));
+            }
+            for (Future<?> reduction : reductions) {
+                reduction.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, overlaps.get());
+    }
+
+    /**
+     * Tests that an order is only reported as applied when a shard recorded it.
+     */
+    @Test
+    void hasApplied_ShouldDelegateToShards() {
+        when(shardRepository.hasAppliedOrder(PRODUCT_ID, "order-1")).thenReturn(true);
+
+        assertTrue(stockShards.hasApplied(PRODUCT_ID, "order-1"));
+        assertFalse(stockShards.hasApplied(PRODUCT_ID, "order-2"));
+    }
+
+    /**
+     * Tests that splitting a product spreads its quantity evenly before marking it sharded.
+     */
+    @Test
+    void reshard_ShouldSpreadQuantity_WhenProductNotSharded() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product(null, 10)));
+        when(productRepository.markStockSharded(PRODUCT_ID, 10, 3)).thenReturn(true);
+
+        stockShards.reshard(PRODUCT_ID, 3);
+
+        verify(shardRepository).addToShard(PRODUCT_ID, 0, 4);
+        verify(shardRepository).addToShard(PRODUCT_ID, 1, 3);
+        verify(shardRepository).addToShard(PRODUCT_ID, 2, 3);
+        verify(shardRepository, never()).deleteByProductId(anyString());
+        verify(productRepository, never()).setShardedQuantity(anyString(), anyInt());
+    }
+
+    /**
+     * Tests that a shard count above the configured maximum is rejected.
+     */
+    @Test
+    void reshard_ShouldThrowException_WhenCountAboveMax() {
+        assertThrows(InvalidShardCountException.class, () -> stockShards.reshard(PRODUCT_ID, 9));
+
+        verifyNoInteractions(productRepository, shardRepository);
+    }
+
+    private static Product product(Integer shards, int quantity) {
+        Product product = new Product();
+        product.setProductId(PRODUCT_ID);
+        product.setQuantity(quantity);
+        product.setStockShards(shards);
+        return product;
+    }
+}
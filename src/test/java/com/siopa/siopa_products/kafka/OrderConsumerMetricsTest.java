@@ -0,0 +1,95 @@
+package com.siopa.siopa_products.kafka;
+
+import com.siopa.siopa_products.dto.StockReductionResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OrderConsumerMetrics}.
+ */
+class OrderConsumerMetricsTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderConsumerMetrics metrics;
+
+    /**
+     * Sets up metrics backed by a fixed clock before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new OrderConsumerMetrics(meterRegistry, "single",
+                Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+    }
+
+    /**
+     * Tests that failures are counted under their reason.
+     */
+    @Test
+    void recordOutcome_ShouldCountFailuresByReason() {
+        metrics.recordOutcome(StockReductionResult.Outcome.INSUFFICIENT_STOCK);
+        metrics.recordOutcome(StockReductionResult.Outcome.NOT_FOUND);
+        metrics.recordOutcome(StockReductionResult.Outcome.APPLIED);
+        metrics.recordParseError();
+
+        assertEquals(1.0, failures("insufficient_stock"));
+        assertEquals(1.0, failures("not_found"));
+        assertEquals(1.0, failures("parse_error"));
+    }
+
+    /**
+     * Tests that the lag gauge reports the age of the last processed record.
+     */
+    @Test
+    void recordLag_ShouldReportAgeOfRecord() {
+        metrics.recordLag(recordAt(NOW - 250));
+
+        assertEquals(250.0, meterRegistry.get("siopa.orders.lag").tag("mode", "single").gauge().value());
+    }
+
+    /**
+     * Tests that records without a timestamp leave the lag gauge unchanged.
+     */
+    @Test
+    void recordLag_ShouldIgnoreRecord_WhenTimestampMissing() {
+        metrics.recordLag(recordAt(NOW - 250));
+        metrics.recordLag(recordAt(ConsumerRecord.NO_TIMESTAMP));
+
+        assertEquals(250.0, meterRegistry.get("siopa.orders.lag").gauge().value());
+    }
+
+    /**
+     * Tests that dead letters are counted under their reason.
+     */
+    @Test
+    void recordDeadLetter_ShouldCountByReason() {
+        metrics.recordDeadLetter(OrderDeadLetters.NOT_FOUND);
+        metrics.recordDeadLetter(OrderDeadLetters.NOT_FOUND);
+        metrics.recordDeadLetter(OrderDeadLetters.PARSE_ERROR);
+
+        assertEquals(2.0, meterRegistry.get("siopa.orders.dead_lettered").tag("reason", "not_found").counter().count());
+        assertEquals(1.0, meterRegistry.get("siopa.orders.dead_lettered").tag("reason", "parse_error").counter().count());
+    }
+
+    private double failures(String reason) {
+        return meterRegistry.get("siopa.orders.failed").tag("reason", reason).counter().count();
+    }
+
+    private static ConsumerRecord<String, String> recordAt(long timestamp) {
+        return new ConsumerRecord<>("orders", 0, 0L, timestamp, TimestampType.CREATE_TIME, -1, -1,
+                null, "{}", new RecordHeaders(), Optional.empty());
+    }
+}
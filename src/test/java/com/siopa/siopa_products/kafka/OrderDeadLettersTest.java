@@ -0,0 +1,88 @@
+package com.siopa.siopa_products.kafka;
+
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link OrderDeadLetters}.
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderDeadLettersTest {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Mock
+    private OrderConsumerMetrics metrics;
+
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, byte[]>> sent;
+
+    private OrderDeadLetters deadLetters;
+
+    /**
+     * Sets up the publisher before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        deadLetters = new OrderDeadLetters(kafkaTemplate, metrics, "orders");
+    }
+
+    /**
+     * Tests that a dead letter keeps the record and carries its reason and origin.
+     */
+    @Test
+    void publish_ShouldSendRecordWithReasonHeaders() {
+        CompletableFuture<SendResult<String, byte[]>> acknowledged = CompletableFuture.completedFuture(null);
+        when(kafkaTemplate.send(sent.capture())).thenReturn(acknowledged);
+        byte[] value = "{\"productId\":\"123\"}".getBytes(StandardCharsets.UTF_8);
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("orders", 3, 42L, "123", value);
+
+        deadLetters.publish(record, OrderDeadLetters.NOT_FOUND, "Product not found").join();
+
+        ProducerRecord<String, byte[]> deadLetter = sent.getValue();
+        assertEquals("orders-dlt", deadLetter.topic());
+        assertEquals("123", deadLetter.key());
+        assertArrayEquals(value, deadLetter.value());
+        assertEquals("not_found", new String(
+                deadLetter.headers().lastHeader(OrderDeadLetters.REASON_HEADER).value(), StandardCharsets.UTF_8));
+        assertEquals(3, ByteBuffer.wrap(deadLetter.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION).value()).getInt());
+        assertEquals(42L, ByteBuffer.wrap(deadLetter.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET).value()).getLong());
+        verify(metrics).recordDeadLetter(OrderDeadLetters.NOT_FOUND);
+    }
+
+    /**
+     * Tests that failures are classified through the exceptions wrapping them.
+     */
+    @Test
+    void reasonOf_ShouldClassifyWrappedFailures() {
+        assertEquals(OrderDeadLetters.PARSE_ERROR, OrderDeadLetters.reasonOf(
+                new ListenerExecutionFailedException("failed", new OrderMessageParseException(new IOException()))));
+        assertEquals(OrderDeadLetters.NOT_FOUND, OrderDeadLetters.reasonOf(new ProductNotFoundException("123")));
+        assertEquals(OrderDeadLetters.INSUFFICIENT_STOCK, OrderDeadLetters.reasonOf(new InsufficientStockException("123")));
+        assertEquals(OrderDeadLetters.RETRIES_EXHAUSTED,
+                OrderDeadLetters.reasonOf(new DataAccessResourceFailureException("timeout")));
+    }
+}
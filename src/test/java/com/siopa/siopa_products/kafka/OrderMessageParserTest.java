@@ -0,0 +1,89 @@
+package com.siopa.siopa_products.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OrderMessageParser}.
+ */
+class OrderMessageParserTest {
+
+    private OrderMessageParser parser;
+
+    /**
+     * Sets up the parser before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        parser = new OrderMessageParser(new ObjectMapper());
+    }
+
+    /**
+     * Tests parsing a well-formed message, skipping unknown fields.
+     */
+    @Test
+    void parse_ShouldReadOrderFields_WhenMessageValid() throws IOException {
+        ProductOrderMessage message = parser.parse(bytes(
+                "{\"orderId\":\"o-1\",\"productId\":\"123\",\"meta\":{\"a\":[1,2]},\"quantity\":5}"));
+
+        assertEquals("123", message.getProductId());
+        assertEquals(5, message.getQuantity());
+        assertEquals("o-1", message.getOrderId());
+    }
+
+    /**
+     * Tests that a reused holder does not keep fields from the previous message.
+     */
+    @Test
+    void parse_ShouldResetHolder_WhenFieldsMissing() throws IOException {
+        ProductOrderMessage holder = new ProductOrderMessage("123", 5, "o-1");
+
+        parser.parse(bytes("{\"productId\":\"456\"}"), holder);
+
+        assertEquals("456", holder.getProductId());
+        assertEquals(0, holder.getQuantity());
+        assertNull(holder.getOrderId());
+    }
+
+    /**
+     * Tests that scalars are coerced like the object mapper does.
+     */
+    @Test
+    void parse_ShouldCoerceScalars() throws IOException {
+        ProductOrderMessage message = parser.parse(bytes("{\"productId\":123,\"quantity\":\"7\"}"));
+
+        assertEquals("123", message.getProductId());
+        assertEquals(7, message.getQuantity());
+    }
+
+    /**
+     * Tests that an integral floating-point quantity is accepted and a fractional one rejected.
+     */
+    @Test
+    void parse_ShouldAcceptIntegralFloatQuantity_WhenNoFraction() throws IOException {
+        assertEquals(2, parser.parse(bytes("{\"productId\":\"123\",\"quantity\":2.0}")).getQuantity());
+        assertThrows(IOException.class, () -> parser.parse(bytes("{\"quantity\":2.5}")));
+    }
+
+    /**
+     * Tests that malformed and non-object payloads are rejected.
+     */
+    @Test
+    void parse_ShouldThrowException_WhenMessageInvalid() {
+        assertThrows(IOException.class, () -> parser.parse(bytes("{\"productId\":\"123\"")));
+        assertThrows(IOException.class, () -> parser.parse(bytes("[1,2]")));
+        assertThrows(IOException.class, () -> parser.parse(bytes("{\"quantity\":\"many\"}")));
+        assertThrows(IOException.class, () -> parser.parse(null));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package com.siopa.siopa_products.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.services.ProductService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductParallelConsumer}. The two products of these tests, {@code p1} and
+ * {@code p2}, are routed to different lanes.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductParallelConsumerTest {
+
+    private static final int LANES = 4;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private OrderConsumerMetrics metrics;
+
+    @Mock
+    private OrderDeadLetters deadLetters;
+
+    private final Queue<String> appliedOrderIds = new ConcurrentLinkedQueue<>();
+
+    private ProductParallelConsumer consumer;
+
+    /**
+     * Sets up a consumer whose product service records the orders it applies.
+     */
+    @BeforeEach
+    void setUp() {
+        consumer = new ProductParallelConsumer(productService, new OrderMessageParser(new ObjectMapper()),
+                metrics, new ProcessedOrderIds(1000, Duration.ofMinutes(1)), deadLetters, LANES);
+    }
+
+    /**
+     * Shuts the lanes down after each test case.
+     */
+    @AfterEach
+    void tearDown() {
+        consumer.shutdown();
+    }
+
+    /**
+     * Tests that orders for one product are applied in offset order while another product's orders run
+     * in a different lane at the same time.
+     */
+    @Test
+    void consumeOrders_ShouldApplyOrdersPerProductInOffsetOrder_WhenProductsRunInDifferentLanes() {
+        CountDownLatch otherLaneStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            // Only returns once the other lane runs, so the products cannot share a thread.
+            assertTrue(otherLaneStarted.await(5, TimeUnit.SECONDS));
+            return record(invocation.getArgument(2));
+        }).when(productService).reduceProductQuantity(eq("p1"), anyInt(), eq("o1"));
+        doAnswer(invocation -> {
+            otherLaneStarted.countDown();
+            return record(invocation.getArgument(2));
+        }).when(productService).reduceProductQuantity(eq("p2"), anyInt(), eq("o2"));
+        doAnswer(invocation -> record(invocation.getArgument(2)))
+                .when(productService).reduceProductQuantity(anyString(), anyInt(), argThat(id -> !List.of("o1", "o2").contains(id)));
+
+        consumer.consumeOrders(List.of(order(0, "p1", "o1"), order(1, "p2", "o2"), order(2, "p1", "o3"),
+                order(3, "p2", "o4"), order(4, "p1", "o5"), order(5, "p2", "o6")));
+
+        assertEquals(List.of("o1", "o3", "o5"), appliedOf("o1", "o3", "o5"));
+        assertEquals(List.of("o2", "o4", "o6"), appliedOf("o2", "o4", "o6"));
+    }
+
+    /**
+     * Tests that a failed order commits only the records before it, holds back the later orders for the
+     * same product, and that the redelivered poll applies those in order while skipping the orders of
+     * other products that were already applied.
+     */
+    @Test
+    void consumeOrders_ShouldRedeliverFromFailedRecordAndSkipAppliedOrders_WhenOneOrderFails() {
+        doThrow(new DataAccessResourceFailureException("Timed out"))
+                .doAnswer(invocation -> record(invocation.getArgument(2)))
+                .when(productService).reduceProductQuantity(eq("p1"), anyInt(), eq("o2"));
+        doAnswer(invocation -> record(invocation.getArgument(2)))
+                .when(productService).reduceProductQuantity(anyString(), anyInt(), argThat(id -> !"o2".equals(id)));
+        List<ConsumerRecord<String, byte[]>> poll = List.of(order(0, "p2", "o1"), order(1, "p1", "o2"),
+                order(2, "p2", "o3"), order(3, "p1", "o4"));
+
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+                () -> consumer.consumeOrders(poll));
+
+        assertEquals(1, failure.getIndex());
+        assertEquals(List.of("o1", "o3"), new ArrayList<>(appliedOrderIds));
+
+        consumer.consumeOrders(poll.subList(failure.getIndex(), poll.size()));
+
+        assertEquals(List.of("o2", "o4"), appliedOf("o2", "o4"));
+        verify(productService, times(1)).reduceProductQuantity("p2", 1, "o3");
+        verify(productService, times(1)).reduceProductQuantity("p1", 1, "o4");
+        verify(metrics).recordDuplicate();
+    }
+
+    private List<String> appliedOf(String... orderIds) {
+        List<String> wanted = List.of(orderIds);
+        return appliedOrderIds.stream().filter(wanted::contains).toList();
+    }
+
+    private Object record(String orderId) {
+        appliedOrderIds.add(orderId);
+        return null;
+    }
+
+    private static ConsumerRecord<String, byte[]> order(long offset, String productId, String orderId) {
+        String json = "{\"orderId\":\"" + orderId + "\",\"productId\":\"" + productId + "\",\"quantity\":1}";
+        return new ConsumerRecord<>("orders", 0, offset, productId, json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package com.siopa.siopa_products.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for {@link ProductOutboxRelay} against a real MongoDB, with the Kafka producer mocked.
+ * <p>
+ * Run with {@code SIOPA_TEST_MONGO_URI} pointing at a MongoDB instance, for example
+ * {@code SIOPA_TEST_MONGO_URI=mongodb://localhost:27017}.
+ */
+@EnabledIfEnvironmentVariable(named = "SIOPA_TEST_MONGO_URI", matches = ".+")
+class ProductOutboxRelayTest {
+
+    private static final String DATABASE = "siopa-products-outbox-relay-test";
+    private static final String TOPIC = "product-changes";
+    private static final Duration LEASE = Duration.ofMillis(500);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    /**
+     * Starts every test case from an empty outbox and a producer that acknowledges every send.
+     */
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoClient = MongoClients.create(System.getenv("SIOPA_TEST_MONGO_URI"));
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        mongoTemplate.getDb().drop();
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(eq(TOPIC), anyString(), any(byte[].class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Drops the test database after each test case.
+     */
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getDb().drop();
+        mongoClient.close();
+    }
+
+    /**
+     * Tests that another instance takes the lease over once its holder stops renewing it, and that the
+     * former holder then stops relaying.
+     */
+    @Test
+    void relay_ShouldBeTakenOver_WhenLeaseExpires() throws InterruptedException {
+        ProductOutboxRelay holder = relay(10);
+        ProductOutboxRelay standby = relay(10);
+        assertTrue(holder.acquireLease());
+        assertFalse(standby.acquireLease());
+
+        Thread.sleep(LEASE.toMillis() * 2);
+        mongoTemplate.insert(event("p1", 1));
+
+        assertEquals(1, standby.relay());
+        assertEquals(0, holder.relay());
+        verify(kafkaTemplate, times(1)).send(eq(TOPIC), eq("p1"), any(byte[].class));
+    }
+
+    /**
+     * Tests that a batch with a failed send stays in the outbox and is sent again in full, so every
+     * event is delivered at least once.
+     */
+    @Test
+    void relay_ShouldResendBatch_WhenSendFails() {
+        mongoTemplate.insert(event("p1", 1));
+        mongoTemplate.insert(event("p2", 1));
+        when(kafkaTemplate.send(eq(TOPIC), anyString(), any(byte[].class)))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("Broker unavailable")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        ProductOutboxRelay relay = relay(10);
+
+        assertThrows(IllegalStateException.class, relay::relay);
+        assertEquals(2, mongoTemplate.count(new Query(), ProductChangeEvent.class));
+
+        assertEquals(2, relay.relay());
+        assertEquals(0, mongoTemplate.count(new Query(), ProductChangeEvent.class));
+        verify(kafkaTemplate, times(2)).send(eq(TOPIC), eq("p1"), any(byte[].class));
+        verify(kafkaTemplate, times(2)).send(eq(TOPIC), eq("p2"), any(byte[].class));
+    }
+
+    /**
+     * Tests that a product's events are sent in sequence order even when their identifiers are not,
+     * including an event that falls outside the batch it precedes.
+     */
+    @Test
+    void relay_ShouldSendEventsInSequenceOrder_WhenIdentifiersAreNot() throws IOException {
+        String earlierId = new ObjectId().toHexString();
+        String laterId = new ObjectId().toHexString();
+        ProductChangeEvent second = event("p1", 2);
+        second.setEventId(earlierId);
+        ProductChangeEvent first = event("p1", 1);
+        first.setEventId(laterId);
+        mongoTemplate.insert(second);
+        mongoTemplate.insert(first);
+
+        assertEquals(2, relay(1).relay());
+
+        ArgumentCaptor<byte[]> sent = ArgumentCaptor.forClass(byte[].class);
+        verify(kafkaTemplate, times(2)).send(eq(TOPIC), eq("p1"), sent.capture());
+        List<Long> seqs = new ArrayList<>();
+        for (byte[] value : sent.getAllValues()) {
+            seqs.add(objectMapper.readValue(value, ProductChangeEvent.class).getSeq());
+        }
+        assertEquals(List.of(1L, 2L), seqs);
+    }
+
+    private ProductOutboxRelay relay(int batchSize) {
+        return new ProductOutboxRelay(mongoTemplate, kafkaTemplate, objectMapper, new SimpleMeterRegistry(),
+                TOPIC, batchSize, Duration.ofMillis(100), LEASE);
+    }
+
+    private static ProductChangeEvent event(String productId, long seq) {
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setStoreId("store-1");
+        product.setQuantity(10);
+        product.setEventSeq(seq);
+        return ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product);
+    }
+}
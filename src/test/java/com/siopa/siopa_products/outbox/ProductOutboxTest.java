@@ -0,0 +1,161 @@
+package com.siopa.siopa_products.outbox;
+
+import com.mongodb.MongoException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductOutbox}.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductOutboxTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoTransactionManager transactionManager;
+
+    private ProductOutbox productOutbox;
+
+    /**
+     * Sets up the outbox before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        productOutbox = new ProductOutbox(mongoTemplate, transactionManager, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Tests that the events describing a write are inserted in the write's transaction.
+     */
+    @Test
+    void write_ShouldInsertEvents_WhenWriteSucceeds() {
+        ProductChangeEvent event = ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product());
+
+        String result = productOutbox.write(() -> "written", written -> List.of(event));
+
+        assertEquals("written", result);
+        verify(mongoTemplate).insert(List.of(event), ProductChangeEvent.class);
+        verify(transactionManager).commit(any());
+    }
+
+    /**
+     * Tests that a transaction aborted by a write conflict is run again.
+     */
+    @Test
+    void write_ShouldRetry_WhenTransactionIsTransient() {
+        MongoException conflict = new MongoException(112, "WriteConflict");
+        conflict.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        AtomicInteger attempts = new AtomicInteger();
+
+        int result = productOutbox.write(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new UncategorizedMongoDbException("Write conflict", conflict);
+            }
+            return attempts.get();
+        }, written -> List.of());
+
+        assertEquals(2, result);
+        verify(transactionManager).rollback(any());
+        verify(mongoTemplate, never()).insert(anyList(), eq(ProductChangeEvent.class));
+    }
+
+    /**
+     * Tests that a transaction that keeps conflicting is given up once the retry timeout elapsed.
+     */
+    @Test
+    void write_ShouldGiveUp_WhenRetryTimeoutElapsed() {
+        productOutbox = new ProductOutbox(mongoTemplate, transactionManager, Duration.ZERO);
+        MongoException conflict = new MongoException(112, "WriteConflict");
+        conflict.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(UncategorizedMongoDbException.class, () -> productOutbox.write(() -> {
+            attempts.incrementAndGet();
+            throw new UncategorizedMongoDbException("Write conflict", conflict);
+        }, written -> List.of()));
+
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * Tests that a bulk write with failed items is rolled back and written again without them, and
+     * that only the events of the items finally written are recorded.
+     */
+    @Test
+    void writeEach_ShouldRetryWithoutFailedItems_WhenItemsFail() {
+        List<List<String>> attempts = new ArrayList<>();
+
+        Map<Integer, String> failures = productOutbox.writeEach(List.of("a", "b", "c", "d"), items -> {
+            attempts.add(items);
+            Map<Integer, String> failed = new HashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).equals("b") || items.get(i).equals("d")) {
+                    failed.put(i, "Duplicate key");
+                }
+            }
+            return failed;
+        }, written -> written.stream().map(ProductOutboxTest::event).toList());
+
+        assertEquals(Map.of(1, "Duplicate key", 3, "Duplicate key"), failures);
+        assertEquals(List.of(List.of("a", "b", "c", "d"), List.of("a", "c")), attempts);
+        verify(transactionManager).rollback(any());
+        verify(mongoTemplate).insert(argThat((List<ProductChangeEvent> events) -> events.stream()
+                .map(ProductChangeEvent::getProductId)
+                .toList()
+                .equals(List.of("a", "c"))), eq(ProductChangeEvent.class));
+    }
+
+    /**
+     * Tests that a write failing for any other reason is neither retried nor recorded.
+     */
+    @Test
+    void write_ShouldRollBackWithoutRetry_WhenWriteFails() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ProductNotFoundException.class, () -> productOutbox.write(() -> {
+            attempts.incrementAndGet();
+            throw new ProductNotFoundException("123");
+        }, written -> List.of(ProductChangeEvent.of(ProductChangeEvent.Type.STOCK_CHANGED, product()))));
+
+        assertEquals(1, attempts.get());
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private static ProductChangeEvent event(String productId) {
+        Product product = product();
+        product.setProductId(productId);
+        return ProductChangeEvent.of(ProductChangeEvent.Type.CREATED, product);
+    }
+
+    private static Product product() {
+        Product product = new Product();
+        product.setProductId("123");
+        product.setStoreId("store-1");
+        product.setQuantity(8);
+        product.setEventSeq(3L);
+        return product;
+    }
+}
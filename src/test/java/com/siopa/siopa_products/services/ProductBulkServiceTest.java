@@ -0,0 +1,137 @@
+package com.siopa.siopa_products.services;
+
+import com.siopa.siopa_products.cache.ProductCache;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.dto.BulkItemResult;
+import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductUpdateRequest;
+import com.siopa.siopa_products.exceptions.BulkRequestTooLargeException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductBulkService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductBulkServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Spy
+    private ProductRequestValidator productRequestValidator = new ProductRequestValidator();
+
+    @Spy
+    private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(1));
+
+    @Mock
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @InjectMocks
+    private ProductBulkService productBulkService;
+
+    private final String STORE_ID = "store123";
+
+    /**
+     * Uses a small chunk size so that chunking is exercised.
+     */
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(productBulkService, "chunkSize", 2);
+        ReflectionTestUtils.setField(productBulkService, "maxItems", 10);
+    }
+
+    /**
+     * Tests that valid items are inserted in chunks and invalid items are reported individually.
+     */
+    @Test
+    void createProducts_ShouldInsertValidItemsInChunks_AndReportInvalidOnes() {
+        ProductRequest invalid = request("Invalid");
+        invalid.setPrice(-1.0);
+        when(productRepository.bulkInsert(anyList())).thenReturn(Map.of()).thenReturn(Map.of(0, "E11000 duplicate key"));
+
+        List<BulkItemResult> results = productBulkService.createProducts(
+                Arrays.asList(request("A"), invalid, request("B"), request("C")));
+
+        assertEquals(BulkItemResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(BulkItemResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals(List.of("Price must be a positive number"), results.get(1).getErrors());
+        assertEquals(BulkItemResult.Status.CREATED, results.get(2).getStatus());
+        assertEquals(BulkItemResult.Status.FAILED, results.get(3).getStatus());
+        assertNotNull(results.get(0).getProductId());
+        verify(productRepository, times(2)).bulkInsert(anyList());
+        verify(storeCatalogSnapshots, times(1)).invalidate(STORE_ID);
+    }
+
+    /**
+     * Tests that updates of missing products are reported as not found and not written.
+     */
+    @Test
+    void updateProducts_ShouldReportMissingProducts() {
+        ProductUpdateRequest existing = updateRequest("1");
+        ProductUpdateRequest missing = updateRequest("2");
+        Product stored = new Product();
+        stored.setProductId("1");
+        stored.setStoreId("oldStore");
+        stored.setEventSeq(4L);
+        when(productRepository.findStoreIdsAndEventSeqs(List.of("1", "2"))).thenReturn(Map.of("1", stored));
+        when(productRepository.bulkUpdate(anyList())).thenReturn(Map.of());
+
+        List<BulkItemResult> results = productBulkService.updateProducts(Arrays.asList(existing, missing));
+
+        assertEquals(BulkItemResult.Status.UPDATED, results.get(0).getStatus());
+        assertEquals(BulkItemResult.Status.NOT_FOUND, results.get(1).getStatus());
+        verify(productRepository).bulkUpdate(argThat(products -> products.size() == 1
+                && products.get(0).getEventSeq() == 5L));
+        verify(storeCatalogSnapshots).invalidate("oldStore");
+        verify(storeCatalogSnapshots).invalidate(STORE_ID);
+    }
+
+    /**
+     * Tests that requests above the item limit are rejected before anything is written.
+     */
+    @Test
+    void createProducts_ShouldRejectOversizedRequest() {
+        List<ProductRequest> requests = Collections.nCopies(11, request("A"));
+
+        assertThrows(BulkRequestTooLargeException.class, () -> productBulkService.createProducts(requests));
+        verifyNoInteractions(productRepository);
+    }
+
+    private ProductRequest request(String name) {
+        ProductRequest request = new ProductRequest();
+        request.setName(name);
+        request.setPrice(9.99);
+        request.setCategory("Electronics");
+        request.setStoreId(STORE_ID);
+        request.setQuantity(10);
+        return request;
+    }
+
+    private ProductUpdateRequest updateRequest(String productId) {
+        ProductUpdateRequest request = new ProductUpdateRequest();
+        request.setProductId(productId);
+        request.setName("Updated");
+        request.setPrice(19.99);
+        request.setCategory("Electronics");
+        request.setStoreId(STORE_ID);
+        return request;
+    }
+}
@@ -0,0 +1,135 @@
+package com.siopa.siopa_products.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.exceptions.InvalidExportException;
+import com.siopa.siopa_products.exceptions.TooManyExportsException;
+import com.siopa.siopa_products.inventory.StockShards;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductExportService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductExportServiceTest {
+
+    private static final String STORE_ID = "store123";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private StockShards stockShards;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ProductExportService productExportService;
+
+    /**
+     * Tests that only the selected fields are read and written, one compressed JSON line per product,
+     * with the quantity of sharded products summed over their shards.
+     */
+    @Test
+    void exportProducts_ShouldWriteSelectedFieldsAsGzipNdjson() throws IOException {
+        ObjectId plainId = new ObjectId();
+        ObjectId shardedId = new ObjectId();
+        when(productRepository.streamDocuments(STORE_ID, Set.of("_id", "name", "quantity", "stockShards")))
+                .thenReturn(Stream.of(
+                        new Document("_id", plainId).append("name", "Mug").append("quantity", 3),
+                        new Document("_id", shardedId).append("name", "Plate").append("quantity", 0)
+                                .append("stockShards", 4)));
+        when(stockShards.totals(Set.of(shardedId.toHexString()))).thenReturn(Map.of(shardedId.toHexString(), 9));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        productExportService.exportProducts(STORE_ID,
+                productExportService.resolveFields(List.of("quantity", "name", "productId")), out);
+
+        String ndjson;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ndjson = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals("{\"productId\":\"" + plainId.toHexString() + "\",\"name\":\"Mug\",\"quantity\":3}\n"
+                + "{\"productId\":\"" + shardedId.toHexString() + "\",\"name\":\"Plate\",\"quantity\":9}\n", ndjson);
+    }
+
+    /**
+     * Tests that the shard totals of the sharded products read in one cursor batch are looked up together.
+     */
+    @Test
+    void exportProducts_ShouldReadShardTotalsOncePerChunk() throws IOException {
+        ObjectId firstId = new ObjectId();
+        ObjectId secondId = new ObjectId();
+        when(productRepository.streamDocuments(null, Set.of("quantity", "_id", "stockShards")))
+                .thenReturn(Stream.of(
+                        new Document("_id", firstId).append("quantity", 0).append("stockShards", 2),
+                        new Document("_id", secondId).append("quantity", 0).append("stockShards", 4)));
+        when(stockShards.totals(Set.of(firstId.toHexString(), secondId.toHexString())))
+                .thenReturn(Map.of(firstId.toHexString(), 5, secondId.toHexString(), 7));
+
+        productExportService.exportProducts(null, List.of("quantity"), new ByteArrayOutputStream());
+
+        verify(stockShards, times(1)).totals(anyCollection());
+    }
+
+    /**
+     * Tests that an export still writing after the export timeout stops itself between chunks.
+     */
+    @Test
+    void exportProducts_ShouldStop_WhenTimeoutElapsed() {
+        ReflectionTestUtils.setField(productExportService, "timeout", Duration.ZERO);
+        when(productRepository.streamDocuments(null, Set.of("name")))
+                .thenReturn(Stream.generate(() -> new Document("name", "Mug")).limit(2000));
+
+        assertThrows(IOException.class,
+                () -> productExportService.exportProducts(null, List.of("name"), new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Tests that exports beyond the concurrency limit are rejected until a slot is released.
+     */
+    @Test
+    void reserveSlot_ShouldThrowTooManyExports_WhenEverySlotTaken() {
+        productExportService.start();
+        Runnable first = productExportService.reserveSlot();
+        productExportService.reserveSlot();
+
+        assertThrows(TooManyExportsException.class, productExportService::reserveSlot);
+
+        first.run();
+        first.run();
+        productExportService.reserveSlot();
+        assertThrows(TooManyExportsException.class, productExportService::reserveSlot);
+    }
+
+    /**
+     * Tests that selecting a field that is not exportable is rejected.
+     */
+    @Test
+    void resolveFields_ShouldThrow_WhenFieldIsNotExportable() {
+        assertThrows(InvalidExportException.class, () -> productExportService.resolveFields(List.of("appliedOrderIds")));
+    }
+}
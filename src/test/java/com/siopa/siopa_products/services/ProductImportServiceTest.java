@@ -0,0 +1,119 @@
+package com.siopa.siopa_products.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.exceptions.TooManyImportsException;
+import com.siopa.siopa_products.imports.ImportFormat;
+import com.siopa.siopa_products.imports.ImportJob;
+import com.siopa.siopa_products.imports.ImportJobs;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ProductImportService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    private static final String STORE_ID = "store123";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Spy
+    private ProductRequestValidator productRequestValidator = new ProductRequestValidator();
+
+    @Mock
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @Spy
+    private ImportJobs importJobs = new ImportJobs(10, Duration.ofMinutes(1));
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ProductImportService productImportService;
+
+    /**
+     * Uses a small batch size so that batching is exercised.
+     */
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(productImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(productImportService, "maxConcurrent", 1);
+        productImportService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productImportService.stop();
+    }
+
+    /**
+     * Tests that valid rows are written in batches and invalid or rejected rows are counted and reported.
+     */
+    @Test
+    void importProducts_ShouldWriteValidRowsInBatches_AndReportOtherRows() {
+        when(productRepository.bulkInsert(anyList())).thenReturn(Map.of()).thenReturn(Map.of(0, "E11000 duplicate key"));
+        String ndjson = line("A", 1.0) + line("Invalid", -1.0) + line("B", 2.0) + line("C", 3.0);
+
+        ImportJob job = productImportService.importProducts(body(ndjson), ImportFormat.NDJSON);
+
+        assertEquals(ImportJob.State.COMPLETED, job.getState());
+        assertEquals(4, job.getRowsRead());
+        assertEquals(2, job.getImported());
+        assertEquals(1, job.getInvalid());
+        assertEquals(1, job.getFailed());
+        assertEquals(List.of(new ImportJob.RowError(2, List.of("Price must be a positive number")),
+                new ImportJob.RowError(4, List.of("E11000 duplicate key"))), job.getErrors());
+        verify(productRepository, times(2)).bulkInsert(anyList());
+        verify(storeCatalogSnapshots).invalidate(STORE_ID);
+        assertSame(job, productImportService.getImport(job.getImportId()));
+    }
+
+    /**
+     * Tests that an import is rejected while the maximum number of imports is running.
+     */
+    @Test
+    void importProducts_ShouldThrow_WhenTooManyImportsAreRunning() {
+        when(productRepository.bulkInsert(anyList())).thenAnswer(invocation -> {
+            assertThrows(TooManyImportsException.class,
+                    () -> productImportService.importProducts(body(line("B", 2.0)), ImportFormat.NDJSON));
+            return Map.of();
+        });
+
+        ImportJob job = productImportService.importProducts(body(line("A", 1.0)), ImportFormat.NDJSON);
+
+        assertEquals(ImportJob.State.COMPLETED, job.getState());
+        assertEquals(1, job.getImported());
+    }
+
+    private static String line(String name, double price) {
+        return "{\"name\":\"" + name + "\",\"price\":" + price + ",\"category\":\"Kitchen\",\"storeId\":\""
+                + STORE_ID + "\"}\n";
+    }
+
+    private static InputStream body(String contents) {
+        return new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
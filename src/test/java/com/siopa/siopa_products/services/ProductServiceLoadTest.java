@@ -0,0 +1,133 @@
+package com.siopa.siopa_products.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.siopa.siopa_products.cache.ProductCache;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.outbox.ProductOutbox;
+import com.siopa.siopa_products.repositories.ProductRepository;
+import com.siopa.siopa_products.repositories.ProductRepositoryCustomImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Load test for concurrent stock decrements of a single product with the outbox enabled, against a
+ * real MongoDB.
+ * <p>
+ * Run with {@code SIOPA_TEST_MONGO_URI} pointing at a MongoDB instance, for example
+ * {@code SIOPA_TEST_MONGO_URI=mongodb://localhost:27017}.
+ */
+@EnabledIfEnvironmentVariable(named = "SIOPA_TEST_MONGO_URI", matches = ".+")
+class ProductServiceLoadTest {
+
+    private static final String DATABASE = "siopa-products-load-test";
+    private static final String PRODUCT_ID = "hot-sku";
+    private static final int THREADS = 16;
+    private static final int ORDERS_PER_THREAD = 50;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private ProductService productService;
+
+    /**
+     * Wires a product service to the test database, with the outbox enabled and a single product
+     * holding exactly enough stock for every order.
+     */
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create(System.getenv("SIOPA_TEST_MONGO_URI"));
+        SimpleMongoClientDatabaseFactory databaseFactory = new SimpleMongoClientDatabaseFactory(mongoClient, DATABASE);
+        mongoTemplate = new MongoTemplate(databaseFactory);
+        mongoTemplate.getDb().drop();
+
+        ProductRepository productRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(
+                ProductRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new ProductRepositoryCustomImpl(mongoTemplate, 512)));
+        productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(productService, "productCache", new ProductCache(100, Duration.ofMinutes(1)));
+        ReflectionTestUtils.setField(productService, "storeCatalogSnapshots", mock(StoreCatalogSnapshots.class));
+        ReflectionTestUtils.setField(productService, "productOutbox",
+                new ProductOutbox(mongoTemplate, new MongoTransactionManager(databaseFactory), Duration.ofSeconds(30)));
+
+        Product product = new Product();
+        product.setProductId(PRODUCT_ID);
+        product.setStoreId("store-1");
+        product.setName("Hot Product");
+        product.setQuantity(THREADS * ORDERS_PER_THREAD);
+        mongoTemplate.insert(product);
+    }
+
+    /**
+     * Drops the test database after each test case.
+     */
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getDb().drop();
+        mongoClient.close();
+    }
+
+    /**
+     * Tests that concurrent orders for one product all succeed, their outbox transactions being run
+     * again when they conflict, and that their events carry one distinct sequence number per decrement.
+     */
+    @Test
+    void reduceProductQuantity_ShouldApplyEveryOrder_WhenOrdersForOneProductRunConcurrently()
+            throws InterruptedException {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                        productService.reduceProductQuantity(PRODUCT_ID, 1, "order-" + thread + "-" + i);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        int orders = THREADS * ORDERS_PER_THREAD;
+        assertTrue(failures.isEmpty(), () -> "Failed decrements: " + failures);
+        Product product = mongoTemplate.findById(PRODUCT_ID, Product.class);
+        assertEquals(0, product.getQuantity());
+        assertEquals((long) orders, product.getEventSeq());
+        assertEquals(orders, mongoTemplate.count(new Query(), ProductChangeEvent.class));
+        Set<Long> seqs = mongoTemplate.findAll(ProductChangeEvent.class).stream()
+                .map(ProductChangeEvent::getSeq)
+                .collect(Collectors.toSet());
+        assertEquals(LongStream.rangeClosed(1, orders).boxed().collect(Collectors.toSet()), seqs);
+    }
+}
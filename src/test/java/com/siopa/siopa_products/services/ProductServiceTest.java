@@ -1,19 +1,48 @@
 package com.siopa.siopa_products.services;
 
+import com.siopa.siopa_products.cache.ProductCache;
+import com.siopa.siopa_products.cache.RequestCoalescer;
+import com.siopa.siopa_products.cache.StoreCatalogSnapshots;
+import com.siopa.siopa_products.dto.ProductOrderMessage;
+import com.siopa.siopa_products.dto.ProductPage;
 import com.siopa.siopa_products.dto.ProductRequest;
+import com.siopa.siopa_products.dto.ProductSearchCriteria;
+import com.siopa.siopa_products.dto.ProductSummary;
+import com.siopa.siopa_products.dto.StockReductionResult;
+import com.siopa.siopa_products.exceptions.InsufficientStockException;
+import com.siopa.siopa_products.exceptions.InvalidCursorException;
+import com.siopa.siopa_products.exceptions.InvalidPatchException;
+import com.siopa.siopa_products.exceptions.InvalidSearchException;
+import com.siopa.siopa_products.exceptions.ProductNotFoundException;
+import com.siopa.siopa_products.inventory.StockShards;
 import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.models.ProductChangeEvent;
+import com.siopa.siopa_products.outbox.ProductOutbox;
 import com.siopa.siopa_products.repositories.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,6 +56,18 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Spy
+    private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry());
+
+    @Mock
+    private StoreCatalogSnapshots storeCatalogSnapshots;
+
+    @Mock
+    private StockShards stockShards;
+
     @InjectMocks
     private ProductService productService;
 
@@ -73,6 +114,112 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findAll();
     }
 
+    /**
+     * Tests that a full page returns a cursor that resumes after its last product.
+     */
+    @Test
+    void getProductsPage_ShouldReturnNextCursor_WhenMoreProductsAvailable() {
+        Product next = new Product();
+        next.setProductId("456");
+        when(productRepository.findPageAfter(null, 2, Product.class)).thenReturn(Arrays.asList(product, next));
+        when(productRepository.findPageAfter(PRODUCT_ID, 2, Product.class)).thenReturn(List.of(next));
+
+        ProductPage<Product> first = productService.getProductsPage(null, 1);
+        ProductPage<Product> second = productService.getProductsPage(first.getNextCursor(), 1);
+
+        assertEquals(List.of(product), first.getItems());
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of(next), second.getItems());
+        assertNull(second.getNextCursor());
+    }
+
+    /**
+     * Tests that summary pages read summaries and resume after the last summary's identifier.
+     */
+    @Test
+    void getProductSummariesPage_ShouldReturnNextCursor_WhenMoreSummariesAvailable() {
+        ProductSummary summary = new ProductSummary();
+        summary.setProductId(PRODUCT_ID);
+        ProductSummary next = new ProductSummary();
+        next.setProductId("456");
+        when(productRepository.findPageAfter(null, 2, ProductSummary.class)).thenReturn(Arrays.asList(summary, next));
+        when(productRepository.findPageAfter(PRODUCT_ID, 2, ProductSummary.class)).thenReturn(List.of(next));
+
+        ProductPage<ProductSummary> first = productService.getProductSummariesPage(null, 1);
+        ProductPage<ProductSummary> second = productService.getProductSummariesPage(first.getNextCursor(), 1);
+
+        assertEquals(List.of(summary), first.getItems());
+        assertEquals(List.of(next), second.getItems());
+        assertNull(second.getNextCursor());
+        verify(productRepository, never()).findPageAfter(any(), anyInt(), eq(Product.class));
+    }
+
+    /**
+     * Tests that an undecodable cursor is rejected.
+     */
+    @Test
+    void getProductsPage_ShouldThrowException_WhenCursorInvalid() {
+        assertThrows(InvalidCursorException.class, () -> productService.getProductsPage("not base64!", 10));
+    }
+
+    /**
+     * Tests that a search cursor resumes after the last product's sort value and identifier.
+     */
+    @Test
+    void searchProducts_ShouldResumeFromLastSortValue() {
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setCategory("Electronics");
+        criteria.setSortField("price");
+        Product next = new Product();
+        next.setProductId("456");
+        next.setPrice(39.99);
+        when(productRepository.search(criteria, null, null, 2, Product.class)).thenReturn(Arrays.asList(product, next));
+        when(productRepository.search(criteria, 29.99, PRODUCT_ID, 2, Product.class)).thenReturn(List.of(next));
+
+        ProductPage<Product> first = productService.searchProducts(criteria, null, 1);
+        ProductPage<Product> second = productService.searchProducts(criteria, first.getNextCursor(), 1);
+
+        assertEquals(List.of(product), first.getItems());
+        assertEquals(List.of(next), second.getItems());
+        assertNull(second.getNextCursor());
+    }
+
+    /**
+     * Tests that a quantity-sorted search cursor carries the stored quantity of a sharded product, the
+     * value the search sorted on, while the product is returned with the sum of its shards.
+     */
+    @Test
+    void searchProducts_ShouldResumeFromStoredQuantity_WhenLastProductSharded() {
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setSortField("quantity");
+        product.setQuantity(10);
+        product.setStockShards(4);
+        Product next = new Product();
+        next.setProductId("456");
+        next.setQuantity(12);
+        when(productRepository.search(criteria, null, null, 2, Product.class)).thenReturn(Arrays.asList(product, next));
+        when(stockShards.totals(Set.of(PRODUCT_ID))).thenReturn(Map.of(PRODUCT_ID, 4));
+        when(productRepository.search(criteria, 10, PRODUCT_ID, 2, Product.class)).thenReturn(List.of(next));
+
+        ProductPage<Product> first = productService.searchProducts(criteria, null, 1);
+        ProductPage<Product> second = productService.searchProducts(criteria, first.getNextCursor(), 1);
+
+        assertEquals(4, first.getItems().get(0).getQuantity());
+        assertEquals(List.of(next), second.getItems());
+    }
+
+    /**
+     * Tests that unsupported sort fields are rejected.
+     */
+    @Test
+    void searchProducts_ShouldThrowException_WhenSortFieldUnsupported() {
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setSortField("description");
+
+        assertThrows(InvalidSearchException.class, () -> productService.searchProducts(criteria, null, 10));
+        verifyNoInteractions(productRepository);
+    }
+
     /**
      * Tests retrieving a product by ID.
      */
@@ -87,6 +234,46 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findById(PRODUCT_ID);
     }
 
+    /**
+     * Tests that repeated lookups of the same product are served from the cache.
+     */
+    @Test
+    void getProductById_ShouldUseCache_OnRepeatedLookups() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
+
+        productService.getProductById(PRODUCT_ID);
+        Optional<Product> result = productService.getProductById(PRODUCT_ID);
+
+        assertTrue(result.isPresent());
+        verify(productRepository, times(1)).findById(PRODUCT_ID);
+    }
+
+    /**
+     * Tests that missing products are not cached.
+     */
+    @Test
+    void getProductById_ShouldNotCacheMissingProduct() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        productService.getProductById(PRODUCT_ID);
+        productService.getProductById(PRODUCT_ID);
+
+        verify(productRepository, times(2)).findById(PRODUCT_ID);
+    }
+
+    /**
+     * Tests that deleting a product evicts it from the cache.
+     */
+    @Test
+    void deleteProduct_ShouldEvictProductFromCache() {
+        productCache.put(product);
+        when(productRepository.findAndRemoveById(PRODUCT_ID)).thenReturn(Optional.of(product));
+
+        productService.deleteProduct(PRODUCT_ID);
+
+        assertTrue(productCache.getIfPresent(PRODUCT_ID).isEmpty());
+    }
+
     /**
      * Tests retrieving products by store ID.
      */
@@ -150,11 +337,12 @@ class ProductServiceTest {
      */
     @Test
     void deleteProduct_ShouldDeleteProduct_WhenProductExists() {
-        doNothing().when(productRepository).deleteById(PRODUCT_ID);
+        when(productRepository.findAndRemoveById(PRODUCT_ID)).thenReturn(Optional.of(product));
 
         productService.deleteProduct(PRODUCT_ID);
 
-        verify(productRepository, times(1)).deleteById(PRODUCT_ID);
+        verify(productRepository, times(1)).findAndRemoveById(PRODUCT_ID);
+        verify(storeCatalogSnapshots, times(1)).invalidate(STORE_ID);
     }
 
     /**
@@ -162,14 +350,147 @@ class ProductServiceTest {
      */
     @Test
     void updateProductQuantity_ShouldReturnUpdatedProduct() {
+        product.setQuantity(50);
+        when(productRepository.setQuantity(PRODUCT_ID, 50)).thenReturn(Optional.of(product));
+
+        Product result = productService.updateProductQuantity(PRODUCT_ID, 50);
+
+        assertEquals(50, result.getQuantity());
+        verify(productRepository, times(1)).setQuantity(PRODUCT_ID, 50);
+        verify(productRepository, never()).findById(PRODUCT_ID);
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    /**
+     * Tests updating the quantity of a product that does not exist.
+     */
+    @Test
+    void updateProductQuantity_ShouldThrowException_WhenProductNotFound() {
+        when(productRepository.setQuantity(PRODUCT_ID, 50)).thenReturn(Optional.empty());
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ProductNotFoundException.class, () -> productService.updateProductQuantity(PRODUCT_ID, 50));
+    }
+
+    /**
+     * Tests that the quantity of a sharded product is spread across its shards.
+     */
+    @Test
+    void updateProductQuantity_ShouldAssignShards_WhenProductSharded() {
+        product.setStockShards(4);
+        when(productRepository.setQuantity(PRODUCT_ID, 50)).thenReturn(Optional.empty());
         when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
-        when(productRepository.save(any(Product.class))).thenReturn(product);
+        when(productRepository.nextEventSeq(PRODUCT_ID)).thenReturn(OptionalLong.of(2));
 
         Product result = productService.updateProductQuantity(PRODUCT_ID, 50);
 
         assertEquals(50, result.getQuantity());
-        verify(productRepository, times(1)).findById(PRODUCT_ID);
-        verify(productRepository, times(1)).save(product);
+        assertEquals(2L, result.getEventSeq());
+        verify(stockShards).assign(PRODUCT_ID, 4, 50);
+        verify(productRepository, times(1)).setQuantity(PRODUCT_ID, 50);
+    }
+
+    /**
+     * Tests that a merge patch writes only the supplied fields, without reading the product first.
+     */
+    @Test
+    void patchProduct_ShouldWriteOnlySuppliedFields() {
+        product.setAttributes(new HashMap<>(Map.of("color", "blue", "size", "M")));
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("price", 19.99);
+        patch.put("description", null);
+        patch.put("attributes", new HashMap<>(Map.of("color", "red")));
+        when(productRepository.patchFields(eq(PRODUCT_ID), anyMap(), anyCollection())).thenReturn(Optional.of(product));
+
+        Product result = productService.patchProduct(PRODUCT_ID, patch);
+
+        verify(productRepository).patchFields(PRODUCT_ID, Map.of("price", 19.99, "attributes.color", "red"),
+                Set.of("description"));
+        verify(productRepository, never()).findById(PRODUCT_ID);
+        verify(productRepository, never()).save(any(Product.class));
+        assertEquals(19.99, result.getPrice());
+        assertNull(result.getDescription());
+        assertEquals(Map.of("color", "red", "size", "M"), result.getAttributes());
+        assertEquals(100, result.getQuantity());
+        assertEquals(1L, result.getEventSeq());
+    }
+
+    /**
+     * Tests that an empty object nested under the attributes replaces the attribute.
+     */
+    @Test
+    void patchProduct_ShouldReplaceNestedAttribute_WhenEmptyObjectSupplied() {
+        product.setAttributes(new HashMap<>(Map.of("size", new HashMap<>(Map.of("width", 3)))));
+        when(productRepository.patchFields(eq(PRODUCT_ID), anyMap(), anyCollection())).thenReturn(Optional.of(product));
+
+        Product result = productService.patchProduct(PRODUCT_ID, Map.of("attributes", Map.of("size", Map.of())));
+
+        verify(productRepository).patchFields(PRODUCT_ID, Map.of("attributes.size", Map.of()), Set.of());
+        assertEquals(Map.of("size", Map.of()), result.getAttributes());
+    }
+
+    /**
+     * Tests that a merge patch setting an attribute under a value that is not an object is rejected as
+     * an invalid patch.
+     */
+    @Test
+    void patchProduct_ShouldThrowException_WhenAttributeParentNotObject() {
+        when(productRepository.patchFields(PRODUCT_ID, Map.of("attributes.color.shade", "dark"), Set.of()))
+                .thenReturn(Optional.empty());
+        when(productRepository.existsById(PRODUCT_ID)).thenReturn(true);
+
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(PRODUCT_ID,
+                Map.of("attributes", Map.of("color", Map.of("shade", "dark")))));
+        verify(productCache, never()).put(any(Product.class));
+    }
+
+    /**
+     * Tests that patching the quantity of a sharded product writes the other fields to the product and
+     * the quantity to its shards, without a separate quantity update.
+     */
+    @Test
+    void patchProduct_ShouldAssignShards_WhenQuantityOfShardedProductPatched() {
+        product.setStockShards(4);
+        product.setQuantity(0);
+        when(productRepository.patchFields(PRODUCT_ID, Map.of("name", "Renamed", "quantity", 7), Set.of()))
+                .thenReturn(Optional.empty());
+        when(productRepository.patchFields(PRODUCT_ID, Map.of("name", "Renamed"), Set.of()))
+                .thenReturn(Optional.of(product));
+        when(productRepository.nextEventSeq(PRODUCT_ID)).thenReturn(OptionalLong.of(2));
+
+        Map<String, Object> patch = new LinkedHashMap<>();
+        patch.put("name", "Renamed");
+        patch.put("quantity", 7);
+        Product result = productService.patchProduct(PRODUCT_ID, patch);
+
+        verify(stockShards).assign(PRODUCT_ID, 4, 7);
+        verify(productRepository, never()).setQuantity(anyString(), anyInt());
+        verify(productRepository, never()).findById(PRODUCT_ID);
+        assertEquals("Renamed", result.getName());
+        assertEquals(7, result.getQuantity());
+        assertEquals(2L, result.getEventSeq());
+    }
+
+    /**
+     * Tests that a merge patch removing a required field is rejected before anything is written.
+     */
+    @Test
+    void patchProduct_ShouldThrowException_WhenRequiredFieldRemoved() {
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("name", null);
+
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(PRODUCT_ID, patch));
+        verifyNoInteractions(productRepository);
+    }
+
+    /**
+     * Tests that a merge patch naming an unknown field is rejected.
+     */
+    @Test
+    void patchProduct_ShouldThrowException_WhenFieldUnknown() {
+        assertThrows(InvalidPatchException.class,
+                () -> productService.patchProduct(PRODUCT_ID, Map.of("appliedOrderIds", List.of())));
+        verifyNoInteractions(productRepository);
     }
 
     /**
@@ -177,14 +498,34 @@ class ProductServiceTest {
      */
     @Test
     void reduceProductQuantity_ShouldReduceQuantity_WhenSufficientStock() {
-        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
-        when(productRepository.save(any(Product.class))).thenReturn(product);
+        product.setQuantity(90);
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 10, null)).thenReturn(Optional.of(product));
 
         Product result = productService.reduceProductQuantity(PRODUCT_ID, 10);
 
         assertEquals(90, result.getQuantity());
-        verify(productRepository, times(1)).findById(PRODUCT_ID);
-        verify(productRepository, times(1)).save(product);
+        verify(productRepository, times(1)).decrementQuantityIfAvailable(PRODUCT_ID, 10, null);
+        verify(productRepository, never()).findById(PRODUCT_ID);
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    /**
+     * Tests that a decrement evicts the cached product instead of caching its own copy, which a
+     * concurrent decrement finishing first could otherwise be overwritten by.
+     */
+    @Test
+    void reduceProductQuantity_ShouldEvictCachedProduct_WhenQuantityReduced() {
+        productCache.put(product);
+        Product decremented = new Product();
+        decremented.setProductId(PRODUCT_ID);
+        decremented.setStoreId(STORE_ID);
+        decremented.setQuantity(90);
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 10, "order-1")).thenReturn(Optional.of(decremented));
+
+        productService.reduceProductQuantity(PRODUCT_ID, 10, "order-1");
+
+        assertTrue(productCache.getIfPresent(PRODUCT_ID).isEmpty());
+        verify(productCache, never()).put(decremented);
     }
 
     /**
@@ -192,14 +533,16 @@ class ProductServiceTest {
      */
     @Test
     void reduceProductQuantity_ShouldThrowException_WhenInsufficientStock() {
-        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 200, null)).thenReturn(Optional.empty());
+        when(productRepository.existsById(PRODUCT_ID)).thenReturn(true);
 
-        Exception exception = assertThrows(RuntimeException.class, () -> {
+        Exception exception = assertThrows(InsufficientStockException.class, () -> {
             productService.reduceProductQuantity(PRODUCT_ID, 200);
         });
 
         assertEquals("Insufficient stock for product: " + PRODUCT_ID, exception.getMessage());
-        verify(productRepository, times(1)).findById(PRODUCT_ID);
+        verify(productRepository, times(1)).decrementQuantityIfAvailable(PRODUCT_ID, 200, null);
+        verify(productRepository, never()).save(any(Product.class));
     }
 
     /**
@@ -207,13 +550,192 @@ class ProductServiceTest {
      */
     @Test
     void reduceProductQuantity_ShouldThrowException_WhenProductNotFound() {
-        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.empty());
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 10, null)).thenReturn(Optional.empty());
+        when(productRepository.existsById(PRODUCT_ID)).thenReturn(false);
 
-        Exception exception = assertThrows(RuntimeException.class, () -> {
+        Exception exception = assertThrows(ProductNotFoundException.class, () -> {
             productService.reduceProductQuantity(PRODUCT_ID, 10);
         });
 
         assertEquals("Product not found", exception.getMessage());
-        verify(productRepository, times(1)).findById(PRODUCT_ID);
+        verify(productRepository, times(1)).existsById(PRODUCT_ID);
+    }
+
+    /**
+     * Tests that a batch of orders is merged per product into a single bulk decrement.
+     */
+    @Test
+    void reduceProductQuantities_ShouldMergeOrdersPerProduct() {
+        List<ProductOrderMessage> orders = Arrays.asList(
+                new ProductOrderMessage(PRODUCT_ID, 2),
+                new ProductOrderMessage("456", 1),
+                new ProductOrderMessage(PRODUCT_ID, 3));
+        when(productRepository.bulkDecrementQuantities(Map.of(PRODUCT_ID, 5, "456", 1), Map.of()))
+                .thenReturn(List.of(product, otherProduct()));
+
+        List<StockReductionResult> results = productService.reduceProductQuantities(orders);
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(StockReductionResult::isApplied));
+        verify(productRepository, times(1)).bulkDecrementQuantities(anyMap(), anyMap());
+        verify(productRepository, never()).decrementQuantityIfAvailable(anyString(), anyInt(), any());
+        verify(storeCatalogSnapshots, times(1)).invalidate(STORE_ID);
+    }
+
+    /**
+     * Tests that orders of a product whose merged decrement was rejected are applied one by one.
+     */
+    @Test
+    void reduceProductQuantities_ShouldFallBackToIndividualDecrements_WhenMergedDecrementRejected() {
+        List<ProductOrderMessage> orders = Arrays.asList(
+                new ProductOrderMessage(PRODUCT_ID, 60),
+                new ProductOrderMessage(PRODUCT_ID, 60));
+        when(productRepository.bulkDecrementQuantities(Map.of(PRODUCT_ID, 120), Map.of())).thenReturn(List.of());
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 60, null))
+                .thenReturn(Optional.of(product))
+                .thenReturn(Optional.empty());
+        when(productRepository.existsById(PRODUCT_ID)).thenReturn(true);
+
+        List<StockReductionResult> results = productService.reduceProductQuantities(orders);
+
+        assertEquals(StockReductionResult.Outcome.APPLIED, results.get(0).getOutcome());
+        assertEquals(StockReductionResult.Outcome.INSUFFICIENT_STOCK, results.get(1).getOutcome());
+        verify(productRepository, times(2)).decrementQuantityIfAvailable(PRODUCT_ID, 60, null);
+    }
+
+    /**
+     * Tests that a redelivered order leaves the stock untouched and returns the current product.
+     */
+    @Test
+    void reduceProductQuantity_ShouldReturnCurrentProduct_WhenOrderAlreadyApplied() {
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 10, "order-1")).thenReturn(Optional.empty());
+        when(productRepository.findByProductIdAndAppliedOrderIds(PRODUCT_ID, "order-1")).thenReturn(Optional.of(product));
+
+        Product result = productService.reduceProductQuantity(PRODUCT_ID, 10, "order-1");
+
+        assertEquals(100, result.getQuantity());
+        verify(productRepository, never()).existsById(PRODUCT_ID);
+        verify(storeCatalogSnapshots, never()).invalidate(anyString());
+    }
+
+    /**
+     * Tests that the order identifiers of a batch are passed to the bulk decrement per product.
+     */
+    @Test
+    void reduceProductQuantities_ShouldPassOrderIdsPerProduct() {
+        List<ProductOrderMessage> orders = Arrays.asList(
+                new ProductOrderMessage(PRODUCT_ID, 2, "order-1"),
+                new ProductOrderMessage(PRODUCT_ID, 3, "order-2"),
+                new ProductOrderMessage("456", 1));
+        when(productRepository.bulkDecrementQuantities(Map.of(PRODUCT_ID, 5, "456", 1),
+                Map.of(PRODUCT_ID, List.of("order-1", "order-2"))))
+                .thenReturn(List.of(product, otherProduct()));
+
+        List<StockReductionResult> results = productService.reduceProductQuantities(orders);
+
+        assertTrue(results.stream().allMatch(StockReductionResult::isApplied));
+    }
+
+    /**
+     * Tests that a decrement of sharded stock returns the remaining total of the shards without
+     * re-reading the product.
+     */
+    @Test
+    void reduceProductQuantity_ShouldReturnRemainingShardedStock_WhenProductSharded() {
+        product.setStockShards(4);
+        productCache.put(product);
+        when(stockShards.manages(PRODUCT_ID)).thenReturn(true);
+        when(stockShards.reduce(PRODUCT_ID, 10, "order-1")).thenReturn(OptionalInt.of(7));
+
+        Product result = productService.reduceProductQuantity(PRODUCT_ID, 10, "order-1");
+
+        assertEquals(7, result.getQuantity());
+        assertEquals(100, product.getQuantity());
+        verify(productRepository, never()).findById(PRODUCT_ID);
+        verify(productRepository, never()).decrementQuantityIfAvailable(anyString(), anyInt(), any());
+        verify(storeCatalogSnapshots).invalidate(STORE_ID);
+        assertTrue(productCache.getIfPresent(PRODUCT_ID).isEmpty());
+    }
+
+    /**
+     * Tests that a redelivered order already taken from one of the shards leaves the shards untouched.
+     */
+    @Test
+    void reduceProductQuantity_ShouldSkipOrder_WhenShardAlreadyApplied() {
+        product.setStockShards(4);
+        productCache.put(product);
+        when(stockShards.manages(PRODUCT_ID)).thenReturn(true);
+        when(stockShards.hasApplied(PRODUCT_ID, "order-1")).thenReturn(true);
+
+        Product result = productService.reduceProductQuantity(PRODUCT_ID, 10, "order-1");
+
+        assertSame(product, result);
+        verify(stockShards, never()).reduce(anyString(), anyInt(), any());
+        verify(storeCatalogSnapshots, never()).invalidate(anyString());
+    }
+
+    /**
+     * Tests that a decrement records its event in the same outbox transaction as the write, carrying the
+     * event sequence number the write gave the product.
+     */
+    @Test
+    void reduceProductQuantity_ShouldRecordEventInTransaction_WhenOutboxEnabled() {
+        List<ProductChangeEvent> recorded = withOutbox();
+        product.setEventSeq(8L);
+        when(productRepository.decrementQuantityIfAvailable(PRODUCT_ID, 10, "order-1")).thenReturn(Optional.of(product));
+
+        productService.reduceProductQuantity(PRODUCT_ID, 10, "order-1");
+
+        assertEquals(1, recorded.size());
+        assertEquals(ProductChangeEvent.Type.STOCK_CHANGED, recorded.get(0).getType());
+        assertEquals(8L, recorded.get(0).getSeq());
+    }
+
+    /**
+     * Tests that a decrement of sharded stock takes the next event sequence number of the product for
+     * its event, so the event is not sent ahead of the product's earlier ones.
+     */
+    @Test
+    void reduceProductQuantity_ShouldGiveShardedEventNextSeq_WhenOutboxEnabled() {
+        List<ProductChangeEvent> recorded = withOutbox();
+        product.setStockShards(4);
+        product.setEventSeq(3L);
+        productCache.put(product);
+        when(stockShards.manages(PRODUCT_ID)).thenReturn(true);
+        when(stockShards.reduce(PRODUCT_ID, 10, "order-1")).thenReturn(OptionalInt.of(7));
+        when(productRepository.nextEventSeq(PRODUCT_ID)).thenReturn(OptionalLong.of(4));
+
+        Product result = productService.reduceProductQuantity(PRODUCT_ID, 10, "order-1");
+
+        assertEquals(4L, result.getEventSeq());
+        assertEquals(1, recorded.size());
+        assertEquals(4L, recorded.get(0).getSeq());
+        assertEquals(7, recorded.get(0).getQuantity());
+    }
+
+    /**
+     * Enables a mocked outbox that runs each write and keeps the events recorded with it.
+     *
+     * @return the recorded events.
+     */
+    private List<ProductChangeEvent> withOutbox() {
+        ProductOutbox productOutbox = mock(ProductOutbox.class);
+        ReflectionTestUtils.setField(productService, "productOutbox", productOutbox);
+        List<ProductChangeEvent> recorded = new ArrayList<>();
+        when(productOutbox.write(any(), any())).thenAnswer(invocation -> {
+            Supplier<?> write = invocation.getArgument(0);
+            Function<Object, List<ProductChangeEvent>> events = invocation.getArgument(1);
+            Object result = write.get();
+            recorded.addAll(events.apply(result));
+            return result;
+        });
+        return recorded;
+    }
+
+    private Product otherProduct() {
+        Product other = new Product();
+        other.setProductId("456");
+        other.setStoreId(STORE_ID);
+        return other;
     }
 }
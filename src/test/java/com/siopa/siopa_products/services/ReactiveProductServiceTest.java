@@ -0,0 +1,82 @@
+package com.siopa.siopa_products.services;
+
+import com.siopa.siopa_products.exceptions.BulkRequestTooLargeException;
+import com.siopa.siopa_products.models.Product;
+import com.siopa.siopa_products.repositories.ReactiveProductRepository;
+import com.siopa.siopa_products.repositories.ReactiveProductStockShardRepository;
+import com.siopa.siopa_products.repositories.ReactiveProductStockShardRepository.ShardTotal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ReactiveProductService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveProductServiceTest {
+
+    @Mock
+    private ReactiveProductRepository reactiveProductRepository;
+
+    @Mock
+    private ReactiveProductStockShardRepository reactiveProductStockShardRepository;
+
+    @InjectMocks
+    private ReactiveProductService reactiveProductService;
+
+    /**
+     * Sets up the service with sharding enabled and a small ID limit before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reactiveProductService, "stockShardsEnabled", true);
+        ReflectionTestUtils.setField(reactiveProductService, "maxIds", 2);
+    }
+
+    /**
+     * Tests that a lookup of more identifiers than the bulk limit is rejected without querying.
+     */
+    @Test
+    void getProductsByIds_ShouldThrowBulkRequestTooLarge_WhenTooManyIds() {
+        assertThrows(BulkRequestTooLargeException.class,
+                () -> reactiveProductService.getProductsByIds(List.of("1", "2", "3")));
+
+        verifyNoInteractions(reactiveProductRepository);
+    }
+
+    /**
+     * Tests that sharded products report the sum of their shards and unsharded ones their own quantity.
+     */
+    @Test
+    void getProductsByIds_ShouldFillInShardedStock() {
+        Product sharded = product("1", 0, 4);
+        Product unsharded = product("2", 7, null);
+        when(reactiveProductRepository.findAllById(List.of("1", "2"))).thenReturn(Flux.just(sharded, unsharded));
+        when(reactiveProductStockShardRepository.sumQuantities(Set.of("1"))).thenReturn(Flux.just(new ShardTotal("1", 40)));
+
+        List<Product> products = reactiveProductService.getProductsByIds(List.of("1", "2")).collectList().block();
+
+        assertEquals(List.of(sharded, unsharded), products);
+        assertEquals(40, sharded.getQuantity());
+        assertEquals(7, unsharded.getQuantity());
+    }
+
+    private static Product product(String productId, int quantity, Integer stockShards) {
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setQuantity(quantity);
+        product.setStockShards(stockShards);
+        return product;
+    }
+}